@@ -0,0 +1,113 @@
+package com.crm.benchmark;
+
+import com.crm.dto.TransactionDto;
+import com.crm.entity.PaymentType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Детерминированный набор транзакций для бенчмарков: массивы в порядке возрастания даты,
+ * продавцы пронумерованы от 0 до SELLERS - 1.
+ */
+final class BenchmarkData {
+
+    static final int SELLERS = 1000;
+
+    private static final long SEED = 20240101L;
+    private static final int SECONDS_PER_YEAR = 365 * 86_400;
+    private static final int BURSTS = 12;
+
+    final int[] sellers;
+    final LocalDateTime[] dates;
+    final BigDecimal[] amounts;
+    final PaymentType[] paymentTypes;
+
+    private BenchmarkData(int size) {
+        sellers = new int[size];
+        dates = new LocalDateTime[size];
+        amounts = new BigDecimal[size];
+        paymentTypes = new PaymentType[size];
+    }
+
+    // Данные заканчиваются текущим моментом, чтобы периоды DAY/MONTH/YEAR не были пустыми
+    static BenchmarkData generate(int size, SellerDistribution distribution) {
+        Random random = new Random(SEED);
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime start = end.minusDays(365);
+        double[] sellerCdf = distribution == SellerDistribution.SKEWED ? zipfCdf(SELLERS, 1.1) : null;
+        int[] burstStarts = new int[BURSTS];
+        for (int i = 0; i < BURSTS; i++) {
+            burstStarts[i] = random.nextInt(SECONDS_PER_YEAR - 3 * 86_400);
+        }
+
+        long[] offsets = new long[size];
+        for (int i = 0; i < size; i++) {
+            if (distribution == SellerDistribution.SKEWED && random.nextInt(10) < 8) {
+                // 80% продаж приходится на трехдневные всплески
+                offsets[i] = burstStarts[random.nextInt(BURSTS)] + random.nextInt(3 * 86_400);
+            } else {
+                offsets[i] = random.nextInt(SECONDS_PER_YEAR);
+            }
+        }
+        Arrays.sort(offsets);
+
+        BenchmarkData data = new BenchmarkData(size);
+        PaymentType[] types = PaymentType.values();
+        for (int i = 0; i < size; i++) {
+            data.sellers[i] = sellerCdf == null ? random.nextInt(SELLERS) : pick(sellerCdf, random.nextDouble());
+            data.dates[i] = start.plusSeconds(offsets[i]);
+            data.amounts[i] = BigDecimal.valueOf(100 + random.nextInt(1_000_000), 2);
+            data.paymentTypes[i] = types[random.nextInt(types.length)];
+        }
+        return data;
+    }
+
+    int size() {
+        return sellers.length;
+    }
+
+    // Продавец с наибольшим числом продаж
+    int topSeller() {
+        int[] counts = new int[SELLERS];
+        int top = 0;
+        for (int seller : sellers) {
+            if (++counts[seller] > counts[top]) {
+                top = seller;
+            }
+        }
+        return top;
+    }
+
+    List<TransactionDto> toDtos(long[] sellerIds) {
+        List<TransactionDto> dtos = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            dtos.add(new TransactionDto((long) i + 1, sellerIds[sellers[i]], "Продавец " + sellers[i],
+                    amounts[i], paymentTypes[i], dates[i]));
+        }
+        return dtos;
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int pick(double[] cdf, double value) {
+        int index = Arrays.binarySearch(cdf, value);
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
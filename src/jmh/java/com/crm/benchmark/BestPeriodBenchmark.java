@@ -0,0 +1,69 @@
+package com.crm.benchmark;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.service.BestPeriodFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск лучшего периода (BestPeriodFinder) без базы данных: все N транзакций относятся к одному
+ * продавцу, это худший случай для getBestPeriodForSeller.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BestPeriodBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"UNIFORM", "SKEWED"})
+    private SellerDistribution distribution;
+
+    private BenchmarkData data;
+    private List<Transaction> transactions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(size, distribution);
+
+        Seller seller = new Seller("Продавец", null);
+        transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = new Transaction(seller, data.amounts[i], data.paymentTypes[i]);
+            transaction.setTransactionDate(data.dates[i]);
+            transactions.add(transaction);
+        }
+    }
+
+    // Потоковый режим, как при чтении курсором из базы
+    @Benchmark
+    public Optional<AnalyticsDto.BestPeriod> streamed() {
+        BestPeriodFinder finder = new BestPeriodFinder();
+        LocalDateTime[] dates = data.dates;
+        for (int i = 0; i < dates.length; i++) {
+            finder.accept(dates[i], data.amounts[i]);
+        }
+        return finder.result();
+    }
+
+    @Benchmark
+    public Optional<AnalyticsDto.BestPeriod> fromEntities() {
+        return BestPeriodFinder.find(transactions);
+    }
+}
@@ -0,0 +1,67 @@
+package com.crm.benchmark;
+
+import com.crm.util.MoneyUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Суммирование сумм транзакций: BigDecimal.add создает объект на каждое сложение, сумма в копейках
+ * (long) - нет. Разницу в выделении памяти показывает профилировщик gc (gc.alloc.rate.norm):
+ * ./gradlew jmh -PjmhIncludes=MoneySumBenchmark -PjmhProfilers=gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MoneySumBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private BigDecimal[] amounts;
+    private long[] cents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        amounts = BenchmarkData.generate(size, SellerDistribution.UNIFORM).amounts;
+        cents = new long[size];
+        for (int i = 0; i < size; i++) {
+            cents[i] = MoneyUtils.toCents(amounts[i]);
+        }
+    }
+
+    // Прежний вариант: reduce(BigDecimal.ZERO, BigDecimal::add)
+    @Benchmark
+    public BigDecimal bigDecimalReduce() {
+        return Arrays.stream(amounts).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public BigDecimal longCents() {
+        long total = 0;
+        for (long amount : cents) {
+            total = MoneyUtils.add(total, amount);
+        }
+        return MoneyUtils.toAmount(total);
+    }
+
+    // С переводом в копейки на входе, как при чтении BigDecimal из базы
+    @Benchmark
+    public BigDecimal longCentsFromBigDecimal() {
+        long total = 0;
+        for (BigDecimal amount : amounts) {
+            total = MoneyUtils.add(total, MoneyUtils.toCents(amount));
+        }
+        return MoneyUtils.toAmount(total);
+    }
+}
@@ -0,0 +1,12 @@
+package com.crm.benchmark;
+
+/**
+ * Распределение тестовых продаж.
+ *
+ * UNIFORM - продавцы и даты равномерны по всему году.
+ * SKEWED - продавцы по закону Ципфа (несколько продавцов дают большую часть продаж),
+ * а даты собраны в короткие всплески, как при акциях.
+ */
+public enum SellerDistribution {
+    UNIFORM, SKEWED
+}
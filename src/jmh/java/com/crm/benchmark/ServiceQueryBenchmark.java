@@ -0,0 +1,163 @@
+package com.crm.benchmark;
+
+import com.crm.CrmApplication;
+import com.crm.dto.AnalyticsDto;
+import com.crm.dto.TransactionPageDto;
+import com.crm.entity.Seller;
+import com.crm.repository.SellerRepository;
+import com.crm.service.AnalyticsPeriod;
+import com.crm.service.AnalyticsService;
+import com.crm.service.SalesRollupService;
+import com.crm.service.TopSellerLeaderboard;
+import com.crm.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервисные методы поверх базы: приложение поднимается с профилем test (H2 в памяти),
+ * таблица transactions заполняется N строками, после чего пересчитываются дневные итоги и рейтинг.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceQueryBenchmark {
+
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"UNIFORM", "SKEWED"})
+    private SellerDistribution distribution;
+
+    private ConfigurableApplicationContext context;
+    private AnalyticsService analyticsService;
+    private TransactionService transactionService;
+    private SalesRollupService salesRollupService;
+    private Long topSellerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(CrmApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.com.crm=WARN",
+                        "logging.level.org.hibernate.SQL=WARN")
+                .run();
+
+        analyticsService = context.getBean(AnalyticsService.class);
+        transactionService = context.getBean(TransactionService.class);
+        salesRollupService = context.getBean(SalesRollupService.class);
+
+        BenchmarkData data = BenchmarkData.generate(size, distribution);
+        long[] sellerIds = insertSellers(context.getBean(SellerRepository.class));
+        insertTransactions(context.getBean(JdbcTemplate.class), data, sellerIds);
+        topSellerId = sellerIds[data.topSeller()];
+
+        salesRollupService.rebuild();
+        context.getBean(TopSellerLeaderboard.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BigDecimal totalSales() {
+        return analyticsService.getTotalSales();
+    }
+
+    @Benchmark
+    public BigDecimal averageTransactionAmount() {
+        return analyticsService.getAverageTransactionAmount();
+    }
+
+    @Benchmark
+    public BigDecimal totalSalesByPaymentType() {
+        return analyticsService.getTotalSalesByPaymentType("CARD");
+    }
+
+    @Benchmark
+    public Map<Long, BigDecimal> sellerTotalsForQuarter() {
+        LocalDateTime now = LocalDateTime.now();
+        return salesRollupService.getTotalsBySeller(AnalyticsPeriod.QUARTER.startOf(now), now);
+    }
+
+    @Benchmark
+    public Optional<AnalyticsDto.TopSeller> topSellerForMonth() {
+        return transactionService.getTopSellerByPeriod("MONTH");
+    }
+
+    @Benchmark
+    public Optional<AnalyticsDto.BestPeriod> bestPeriodForTopSeller() {
+        return transactionService.getBestPeriodForSeller(topSellerId);
+    }
+
+    @Benchmark
+    public TransactionPageDto firstPage() {
+        return transactionService.getTransactionsPage(100, null);
+    }
+
+    @Benchmark
+    public TransactionPageDto topSellerFirstPage() {
+        return transactionService.getTransactionsPageBySellerId(topSellerId, 100, null);
+    }
+
+    private long[] insertSellers(SellerRepository sellerRepository) {
+        List<Seller> sellers = new ArrayList<>(BenchmarkData.SELLERS);
+        for (int i = 0; i < BenchmarkData.SELLERS; i++) {
+            sellers.add(new Seller("Продавец " + i, "seller" + i + "@mail.com"));
+        }
+
+        List<Seller> saved = sellerRepository.saveAll(sellers);
+        long[] sellerIds = new long[saved.size()];
+        for (int i = 0; i < saved.size(); i++) {
+            sellerIds[i] = saved.get(i).getId();
+        }
+        return sellerIds;
+    }
+
+    // Прямая пакетная вставка: идентификаторы задаются явно, последовательность в бенчмарке не используется
+    private void insertTransactions(JdbcTemplate jdbcTemplate, BenchmarkData data, long[] sellerIds) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < data.size(); i++) {
+            batch.add(new Object[]{
+                    (long) i + 1,
+                    sellerIds[data.sellers[i]],
+                    data.amounts[i],
+                    data.paymentTypes[i].name(),
+                    Timestamp.valueOf(data.dates[i])
+            });
+            if (batch.size() == INSERT_BATCH || i == data.size() - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO transactions (id, seller_id, amount, payment_type, transaction_date) " +
+                        "VALUES (?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+}
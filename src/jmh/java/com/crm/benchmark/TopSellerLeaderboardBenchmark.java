@@ -0,0 +1,95 @@
+package com.crm.benchmark;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.service.AnalyticsPeriod;
+import com.crm.service.SalesRollupService;
+import com.crm.service.SellerCache;
+import com.crm.service.SnapshotBarrier;
+import com.crm.service.TopSellerLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Рейтинг продавцов в памяти: стоимость учета одной транзакции и чтения лидера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopSellerLeaderboardBenchmark {
+
+    private static final int SIZE = 100_000;
+
+    @Param({"UNIFORM", "SKEWED"})
+    private SellerDistribution distribution;
+
+    private BenchmarkData data;
+    private TopSellerLeaderboard leaderboard;
+    private LocalDateTime now;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(SIZE, distribution);
+
+        SalesRollupService emptyRollup = new SalesRollupService() {
+            @Override
+            public Map<AnalyticsPeriod, Map<Long, BigDecimal>> getTotalsBySellerForCurrentPeriods(LocalDateTime now) {
+                Map<AnalyticsPeriod, Map<Long, BigDecimal>> totals = new EnumMap<>(AnalyticsPeriod.class);
+                for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+                    totals.put(period, Collections.emptyMap());
+                }
+                return totals;
+            }
+        };
+        SellerCache names = new SellerCache(null, null, BenchmarkData.SELLERS, Duration.ofHours(1)) {
+            @Override
+            public Optional<String> getName(Long sellerId) {
+                return Optional.of("Продавец " + sellerId);
+            }
+        };
+
+        // Без базы: загрузка выполняется сразу, без транзакции снимка
+        SnapshotBarrier barrier = new SnapshotBarrier(null, null) {
+            @Override
+            public <T> T load(Runnable install, Supplier<T> load) {
+                install.run();
+                return load.get();
+            }
+        };
+
+        leaderboard = new TopSellerLeaderboard(emptyRollup, names, barrier);
+        leaderboard.rebuild();
+        now = LocalDateTime.now();
+        for (int i = 0; i < SIZE; i++) {
+            leaderboard.record((long) data.sellers[i], data.amounts[i], now);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        int i = next++ % SIZE;
+        leaderboard.record((long) data.sellers[i], data.amounts[i], now);
+    }
+
+    @Benchmark
+    public Optional<AnalyticsDto.TopSeller> topSeller() {
+        return leaderboard.getTopSeller(AnalyticsPeriod.MONTH);
+    }
+}
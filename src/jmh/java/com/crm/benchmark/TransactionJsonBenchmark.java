@@ -0,0 +1,85 @@
+package com.crm.benchmark;
+
+import com.crm.dto.TransactionDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация списка TransactionDto в JSON: целым списком (как делает @RestController)
+ * и поэлементно через JsonGenerator (как потоковая выдача GET /api/transactions).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransactionJsonBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"UNIFORM", "SKEWED"})
+    private SellerDistribution distribution;
+
+    private ObjectMapper objectMapper;
+    private List<TransactionDto> transactions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Та же настройка, что у ObjectMapper в Spring Boot (JavaTimeModule, даты строками ISO)
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        long[] sellerIds = new long[BenchmarkData.SELLERS];
+        for (int i = 0; i < sellerIds.length; i++) {
+            sellerIds[i] = i + 1;
+        }
+        transactions = BenchmarkData.generate(size, distribution).toDtos(sellerIds);
+    }
+
+    @Benchmark
+    public long writeList() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        objectMapper.writeValue(out, transactions);
+        return out.count;
+    }
+
+    @Benchmark
+    public long writeStreaming() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (TransactionDto transaction : transactions) {
+                generator.writeObject(transaction);
+            }
+            generator.writeEndArray();
+        }
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.crm.config;
+
+import com.crm.dto.IngestionStatsDto;
+import com.crm.service.AnalyticsExecutor;
+import com.crm.service.SellerCache;
+import com.crm.service.TransactionIngestionQueue;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики для /actuator/prometheus.
+ *
+ * Задержки HTTP по маршрутам (http.server.requests), методов репозиториев (spring.data.repository.invocations)
+ * и ожидания соединения из пула (hikaricp.connections.acquire) Spring Boot снимает сам; здесь включаются
+ * таймеры @Timed на аналитических методах сервисов, счетчики кэша продавцов, очереди записи и пула аналитики.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder sellerCacheMetrics(SellerCache sellerCache) {
+        return registry -> {
+            FunctionCounter.builder("crm.seller.cache.requests", sellerCache, cache -> cache.getStats().hitCount())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("crm.seller.cache.requests", sellerCache, cache -> cache.getStats().missCount())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("crm.seller.cache.evictions", sellerCache, cache -> cache.getStats().evictionCount())
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder ingestionQueueMetrics(TransactionIngestionQueue ingestionQueue) {
+        return registry -> {
+            Gauge.builder("crm.ingestion.queue.depth", ingestionQueue, queue -> queue.getStats().getQueueDepth())
+                    .register(registry);
+            ingestionCounter(registry, ingestionQueue, "accepted", IngestionStatsDto::getAccepted);
+            ingestionCounter(registry, ingestionQueue, "rejected", IngestionStatsDto::getRejected);
+            ingestionCounter(registry, ingestionQueue, "committed", IngestionStatsDto::getCommitted);
+            ingestionCounter(registry, ingestionQueue, "failed", IngestionStatsDto::getFailed);
+            ingestionCounter(registry, ingestionQueue, "dropped", IngestionStatsDto::getDropped);
+
+            // Фиксация групп: количество и суммарное время
+            FunctionTimer.builder("crm.ingestion.group.commit", ingestionQueue,
+                            TransactionIngestionQueue::getGroupCommits,
+                            TransactionIngestionQueue::getCommitNanosTotal,
+                            TimeUnit.NANOSECONDS)
+                    .register(registry);
+        };
+    }
+
+    // Насыщение пула аналитики: занятые потоки и глубина очереди относительно размеров, отказы и таймауты
+    @Bean
+    public MeterBinder analyticsExecutorMetrics(AnalyticsExecutor analyticsExecutor) {
+        return registry -> {
+            Gauge.builder("crm.analytics.executor.active", analyticsExecutor, AnalyticsExecutor::getActiveCount)
+                    .register(registry);
+            Gauge.builder("crm.analytics.executor.pool.size", analyticsExecutor, AnalyticsExecutor::getPoolSize)
+                    .register(registry);
+            Gauge.builder("crm.analytics.executor.queue.depth", analyticsExecutor, AnalyticsExecutor::getQueueDepth)
+                    .register(registry);
+            Gauge.builder("crm.analytics.executor.queue.capacity", analyticsExecutor, AnalyticsExecutor::getQueueCapacity)
+                    .register(registry);
+            FunctionCounter.builder("crm.analytics.executor.tasks", analyticsExecutor, AnalyticsExecutor::getCompleted)
+                    .tag("result", "completed")
+                    .register(registry);
+            FunctionCounter.builder("crm.analytics.executor.tasks", analyticsExecutor, AnalyticsExecutor::getRejected)
+                    .tag("result", "rejected")
+                    .register(registry);
+            FunctionCounter.builder("crm.analytics.executor.tasks", analyticsExecutor, AnalyticsExecutor::getTimedOut)
+                    .tag("result", "timeout")
+                    .register(registry);
+        };
+    }
+
+    private static void ingestionCounter(MeterRegistry registry,
+                                         TransactionIngestionQueue ingestionQueue,
+                                         String result,
+                                         ToDoubleFunction<IngestionStatsDto> value) {
+        FunctionCounter.builder("crm.ingestion.transactions", ingestionQueue, queue -> value.applyAsDouble(queue.getStats()))
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,90 @@
+package com.crm.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Чтение с реплики: включается, если задан crm.datasource.replica.url.
+ *
+ * Основная база настраивается как обычно через spring.datasource, реплика - через crm.datasource.replica.
+ * Приложение получает один источник соединений: запись, миграции Flyway и транзакции без readOnly идут
+ * в основную базу, транзакции @Transactional(readOnly = true) - на реплику, пока она успевает за основной.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "crm.datasource.replica", name = "url")
+public class ReplicaDataSourceConfig {
+
+    // Отставание в секундах; 0, если реплика применила все полученные изменения
+    static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("crm.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${crm.datasource.replica.url}") String url,
+                                              @Value("${crm.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${crm.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${crm.datasource.replica.driver-class-name:${spring.datasource.driver-class-name:}}") String driverClassName) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .driverClassName(driverClassName.isEmpty() ? null : driverClassName)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica,
+            @Value("${crm.datasource.replica.lag-query:" + POSTGRES_LAG_QUERY + "}") String lagQuery,
+            @Value("${crm.datasource.replica.max-lag:5s}") Duration maxLag,
+            @Value("${crm.datasource.replica.lag-check-interval:5s}") Duration checkInterval) {
+        return new ReplicaRoutingDataSource(primary, replica, lagQuery, maxLag, checkInterval);
+    }
+
+    // Физическое соединение берется при первом запросе, когда признак readOnly транзакции уже известен
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public MeterBinder replicaMetrics(ReplicaRoutingDataSource routingDataSource) {
+        return registry -> {
+            Gauge.builder("crm.datasource.replica.available", routingDataSource,
+                            dataSource -> dataSource.isReplicaAvailable() ? 1 : 0)
+                    .register(registry);
+            Gauge.builder("crm.datasource.replica.lag", routingDataSource,
+                            dataSource -> dataSource.getReplicaLagMillis() / 1000.0)
+                    .baseUnit("seconds")
+                    .register(registry);
+        };
+    }
+}
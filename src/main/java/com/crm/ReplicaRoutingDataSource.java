@@ -0,0 +1,113 @@
+package com.crm.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Источник соединений, который направляет транзакции @Transactional(readOnly = true) на реплику,
+ * а все остальные - на основную базу.
+ *
+ * Ключ выбирается при получении физического соединения, поэтому снаружи источник оборачивается
+ * в LazyConnectionDataSourceProxy: к этому моменту признак readOnly транзакции уже установлен.
+ * Отставание реплики периодически проверяется запросом lag-query; пока оно больше max-lag или
+ * реплика недоступна, чтение тоже идет в основную базу. Отставание в пределах max-lag допустимо:
+ * аналитика и списки могут не видеть последние секунды записей.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService lagChecker;
+
+    private volatile boolean replicaAvailable;
+    private volatile long replicaLagMillis = -1;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica,
+                                    String lagQuery, Duration maxLag, Duration checkInterval) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.replicaJdbcTemplate.setQueryTimeout(5);
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLag.toMillis();
+        this.checkIntervalMillis = checkInterval.toMillis();
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // До первой проверки чтение идет в основную базу
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        lagChecker.scheduleWithFixedDelay(this::checkReplica, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        lagChecker.shutdownNow();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaAvailable
+                ? Target.REPLICA
+                : Target.PRIMARY;
+    }
+
+    // Проверка отставания реплики; NULL (реплика еще ничего не применяла или это не standby) считается нулем
+    public void checkReplica() {
+        boolean available;
+        try {
+            BigDecimal lagSeconds = replicaJdbcTemplate.queryForObject(lagQuery, BigDecimal.class);
+            replicaLagMillis = lagSeconds == null ? 0 : lagSeconds.movePointRight(3).longValue();
+            available = replicaLagMillis <= maxLagMillis;
+        } catch (Exception e) {
+            replicaLagMillis = -1;
+            available = false;
+        }
+
+        if (available != replicaAvailable) {
+            if (available) {
+                log.info("Реплика доступна, чтение переключено на реплику (отставание {} мс)", replicaLagMillis);
+            } else {
+                log.warn("Реплика недоступна или отстает больше {} мс, чтение переключено на основную базу", maxLagMillis);
+            }
+        }
+        replicaAvailable = available;
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    // -1, если отставание не удалось получить
+    public long getReplicaLagMillis() {
+        return replicaLagMillis;
+    }
+}
@@ -0,0 +1,118 @@
+package com.crm.controller;
+
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Буферизованная запись CSV в ответ, со сжатием gzip, если клиент принимает gzip (Accept-Encoding).
+ * Ответ открывается только на первой записи, поэтому ошибка проверки параметров до нее еще
+ * обрабатывается GlobalExceptionHandler.
+ */
+class CsvResponseWriter extends Writer {
+
+    static final String CONTENT_TYPE = "text/csv;charset=UTF-8";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HttpServletResponse response;
+    private final String fileName;
+    private final boolean gzip;
+    private Writer writer;
+
+    CsvResponseWriter(HttpServletResponse response, String fileName, String acceptEncoding) {
+        this.response = response;
+        this.fileName = fileName;
+        this.gzip = acceptsGzip(acceptEncoding);
+    }
+
+    /**
+     * Разбор Accept-Encoding с весами q (RFC 7231): gzip с q=0 означает отказ от gzip, а "*"
+     * разрешает gzip, только если gzip не указан отдельно.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return anyQuality != null && anyQuality > 0;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        open().write(buffer, offset, length);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        open().write(c);
+    }
+
+    @Override
+    public void write(String value) throws IOException {
+        open().write(value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        open().flush();
+    }
+
+    // Для gzip закрытие дописывает конец сжатого потока
+    @Override
+    public void close() throws IOException {
+        open().close();
+    }
+
+    private Writer open() throws IOException {
+        if (writer != null) {
+            return writer;
+        }
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        OutputStream output = response.getOutputStream();
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            output = new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        return writer;
+    }
+}
@@ -2,14 +2,22 @@ package com.crm.controller;
 
 import com.crm.dto.SellerDto;
 import com.crm.dto.AnalyticsDto;
+import com.crm.service.AnalyticsExecutor;
+import com.crm.service.AnalyticsResultCache;
+import com.crm.service.CsvExporter;
 import com.crm.service.SellerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,6 +30,15 @@ public class SellerController {
     @Autowired
     private SellerService sellerService;
 
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
+    @Autowired
+    private AnalyticsExecutor analyticsExecutor;
+
+    @Autowired
+    private CsvExporter csvExporter;
+
     @GetMapping
     @Operation(summary = "Получить всех продавцов", description = "Возвращает список всех продавцов в системе")
     public List<SellerDto> getAllSellers() {
@@ -60,11 +77,36 @@ public class SellerController {
 
     @GetMapping("/analytics/low-performance")
     @Operation(summary = "Продавцы с низкой производительностью",
-            description = "Возвращает список продавцов, у которых сумма транзакций за период меньше указанной")
-    public List<AnalyticsDto.SellerWithTotal> getSellersWithLowPerformance(
+            description = "Возвращает список продавцов, у которых сумма транзакций за период меньше указанной. "
+                    + "Период считается целыми днями: с начала дня startDate до конца дня endDate. "
+                    + "Ответ содержит ETag и Last-Modified; повторный запрос без изменений данных получает 304. "
+                    + "Расчет выполняется в отдельном пуле аналитики; при его перегрузке возвращается 429")
+    public DeferredResult<List<AnalyticsDto.SellerWithTotal>> getSellersWithLowPerformance(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam BigDecimal minAmount,
+            WebRequest request) {
+        // Проверка условного запроса не обращается к базе
+        List<Object> key = AnalyticsResultCache.lowPerformanceKey(startDate, endDate, minAmount);
+        if (request.checkNotModified(analyticsResultCache.getETag(key), analyticsResultCache.getLastModified())) {
+            return null;
+        }
+
+        return analyticsExecutor.submit(() -> sellerService.getSellersWithTotalLessThan(startDate, endDate, minAmount));
+    }
+
+    @GetMapping("/analytics/low-performance/export.csv")
+    @Operation(summary = "Выгрузить продавцов с низкой производительностью в CSV",
+            description = "Те же продавцы и суммы, что и в /analytics/low-performance, в виде CSV "
+                    + "(seller_id, seller_name, total_amount); при Accept-Encoding: gzip ответ сжимается")
+    public void exportSellersWithLowPerformance(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
-            @RequestParam BigDecimal minAmount) {
-        return sellerService.getSellersWithTotalLessThan(startDate, endDate, minAmount);
+            @RequestParam BigDecimal minAmount,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        CsvResponseWriter writer = new CsvResponseWriter(response, "low-performance-sellers.csv", acceptEncoding);
+        csvExporter.writeSellersWithTotalLessThan(startDate, endDate, minAmount, writer);
+        writer.close();
     }
-}
\ No newline at end of file
+}
@@ -2,14 +2,43 @@ package com.crm.controller;
 
 import com.crm.dto.TransactionDto;
 import com.crm.dto.AnalyticsDto;
+import com.crm.dto.IngestionStatsDto;
+import com.crm.dto.ReportProgressDto;
+import com.crm.dto.TransactionBatchResultDto;
+import com.crm.dto.TransactionImportResultDto;
+import com.crm.dto.TransactionPageDto;
+import com.crm.exception.ValidationException;
+import com.crm.service.AnalyticsExecutor;
+import com.crm.service.AnalyticsPeriod;
+import com.crm.service.AnalyticsResultCache;
+import com.crm.service.CsvExporter;
+import com.crm.service.CsvImporter;
 import com.crm.service.TransactionService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -19,10 +48,57 @@ public class TransactionController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
+    @Autowired
+    private AnalyticsExecutor analyticsExecutor;
+
+    @Autowired
+    private CsvExporter csvExporter;
+
+    @Autowired
+    private CsvImporter csvImporter;
+
     @GetMapping
-    @Operation(summary = "Получить все транзакции", description = "Возвращает список всех транзакций в системе")
-    public List<TransactionDto> getAllTransactions() {
-        return transactionService.getAllTransactions();
+    @Operation(summary = "Получить все транзакции",
+            description = "Возвращает список всех транзакций в системе. Массив JSON пишется в ответ по мере чтения из базы")
+    public void getAllTransactions(@RequestParam(required = false) String after,
+                                   HttpServletResponse response) throws IOException {
+        if (after != null) {
+            throw ValidationException.forCursorWithoutLimit();
+        }
+
+        JsonArrayWriter<TransactionDto> writer = new JsonArrayWriter<>(response);
+        transactionService.streamAllTransactions(writer);
+        writer.finish();
+    }
+
+    @GetMapping(params = "limit")
+    @Operation(summary = "Получить страницу транзакций",
+            description = "Keyset-пагинация в порядке даты: limit - размер страницы, after - nextCursor предыдущей страницы")
+    public TransactionPageDto getTransactionsPage(@RequestParam int limit,
+                                                  @RequestParam(required = false) String after) {
+        return transactionService.getTransactionsPage(limit, after);
+    }
+
+    @GetMapping("/export.csv")
+    @Operation(summary = "Выгрузить транзакции в CSV",
+            description = "Пишет транзакции в порядке даты в CSV по мере чтения из базы. Фильтры по продавцу, "
+                    + "периоду (startDate, endDate) и типу оплаты необязательны; при Accept-Encoding: gzip ответ сжимается")
+    public void exportTransactions(@RequestParam(required = false) Long sellerId,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                                   @RequestParam(required = false) String paymentType,
+                                   @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                   HttpServletResponse response) throws IOException {
+        // Ответ закрывается только после успешной выгрузки, ошибку проверки обработает GlobalExceptionHandler
+        CsvResponseWriter writer = new CsvResponseWriter(response, "transactions.csv", acceptEncoding);
+        csvExporter.writeTransactions(sellerId, startDate, endDate, paymentType, writer);
+        writer.close();
     }
 
     @GetMapping("/{id}")
@@ -39,27 +115,182 @@ public class TransactionController {
         return transactionService.createTransaction(transactionDto);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Создать пакет транзакций",
+            description = "Создает до 1000 транзакций за один запрос и возвращает результат по каждому элементу")
+    public TransactionBatchResultDto createTransactions(@RequestBody List<TransactionDto> transactionDtos) {
+        return transactionService.createTransactions(transactionDtos);
+    }
+
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Загрузить транзакции из CSV",
+            description = "Строки (продавец: ID или имя, сумма, тип оплаты, дата) проверяются и загружаются порциями; "
+                    + "отклоненные строки записываются в отдельный файл на сервере. Тело может быть сжато gzip")
+    public TransactionImportResultDto importTransactions(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            HttpServletRequest request) throws IOException {
+        InputStream input = request.getInputStream();
+        if (contentEncoding != null && contentEncoding.contains("gzip")) {
+            input = new GZIPInputStream(input, 64 * 1024);
+        }
+        return csvImporter.importCsv(input);
+    }
+
+    @PostMapping("/async")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Принять транзакцию с отложенной записью",
+            description = "Проверяет транзакцию, ставит ее в очередь и сразу возвращает присвоенный ID. "
+                    + "Запись выполняется группами в фоне; при заполненной очереди возвращается 429")
+    public TransactionDto enqueueTransaction(@RequestBody TransactionDto transactionDto) {
+        return transactionService.enqueueTransaction(transactionDto);
+    }
+
+    @GetMapping("/async/stats")
+    @Operation(summary = "Состояние очереди приема",
+            description = "Глубина очереди, счетчики принятых, записанных и отклоненных транзакций, время фиксации групп")
+    public IngestionStatsDto getIngestionStats() {
+        return transactionService.getIngestionStats();
+    }
+
     @GetMapping("/seller/{sellerId}")
     @Operation(summary = "Получить транзакции продавца", description = "Возвращает все транзакции конкретного продавца")
-    public List<TransactionDto> getTransactionsBySeller(@PathVariable Long sellerId) {
-        return transactionService.getTransactionsBySellerId(sellerId);
+    public void getTransactionsBySeller(@PathVariable Long sellerId,
+                                        @RequestParam(required = false) String after,
+                                        HttpServletResponse response) throws IOException {
+        if (after != null) {
+            throw ValidationException.forCursorWithoutLimit();
+        }
+
+        JsonArrayWriter<TransactionDto> writer = new JsonArrayWriter<>(response);
+        transactionService.streamTransactionsBySellerId(sellerId, writer);
+        writer.finish();
+    }
+
+    @GetMapping(value = "/seller/{sellerId}", params = "limit")
+    @Operation(summary = "Получить страницу транзакций продавца",
+            description = "Keyset-пагинация в порядке даты: limit - размер страницы, after - nextCursor предыдущей страницы")
+    public TransactionPageDto getTransactionsPageBySeller(@PathVariable Long sellerId,
+                                                          @RequestParam int limit,
+                                                          @RequestParam(required = false) String after) {
+        return transactionService.getTransactionsPageBySellerId(sellerId, limit, after);
     }
 
     @GetMapping("/analytics/top-seller")
     @Operation(summary = "Самый продуктивный продавец",
-            description = "Возвращает самого продуктивного продавца за указанный период (DAY, MONTH, QUARTER, YEAR)")
-    public ResponseEntity<AnalyticsDto.TopSeller> getTopSeller(@RequestParam String period) {
+            description = "Возвращает самого продуктивного продавца за указанный период (DAY, MONTH, QUARTER, YEAR). "
+                    + "Ответ содержит ETag и Last-Modified; повторный запрос без изменений данных получает 304")
+    public ResponseEntity<AnalyticsDto.TopSeller> getTopSeller(@RequestParam String period, WebRequest request) {
+        // Проверка условного запроса не обращается к базе
+        AnalyticsPeriod analyticsPeriod = AnalyticsPeriod.parse(period);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object> key = AnalyticsResultCache.topSellerKey(analyticsPeriod, now);
+        if (request.checkNotModified(analyticsResultCache.getETag(key),
+                analyticsResultCache.getLastModified(analyticsPeriod.startOf(now)))) {
+            return null;
+        }
+
         return transactionService.getTopSellerByPeriod(period)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/analytics/top-seller/all")
+    @Operation(summary = "Самые продуктивные продавцы за все периоды",
+            description = "Возвращает лидеров за DAY, MONTH, QUARTER и YEAR одним запросом; периоды без продаж "
+                    + "в ответ не попадают. Ответ содержит ETag и Last-Modified")
+    public Map<AnalyticsPeriod, AnalyticsDto.TopSeller> getTopSellersForAllPeriods(WebRequest request) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object> key = AnalyticsResultCache.topSellersKey(now);
+        if (request.checkNotModified(analyticsResultCache.getETag(key),
+                analyticsResultCache.getLastModified(AnalyticsPeriod.DAY.startOf(now)))) {
+            return null;
+        }
+
+        return transactionService.getTopSellersForAllPeriods();
+    }
+
+    @GetMapping("/analytics/top-sellers")
+    @Operation(summary = "Рейтинг продавцов за период",
+            description = "Возвращает первых limit продавцов (от 1 до 100) по сумме продаж за указанный период "
+                    + "в порядке убывания суммы. Ответ содержит ETag и Last-Modified")
+    public List<AnalyticsDto.TopSeller> getTopSellers(@RequestParam String period,
+                                                      @RequestParam(defaultValue = "10") int limit,
+                                                      WebRequest request) {
+        AnalyticsPeriod analyticsPeriod = AnalyticsPeriod.parse(period);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object> key = AnalyticsResultCache.topSellersKey(analyticsPeriod, now, limit);
+        if (request.checkNotModified(analyticsResultCache.getETag(key),
+                analyticsResultCache.getLastModified(analyticsPeriod.startOf(now)))) {
+            return null;
+        }
+
+        return transactionService.getTopSellersByPeriod(period, limit);
+    }
+
+    @GetMapping("/analytics/best-period/report")
+    @Operation(summary = "Лучшие периоды всех продавцов",
+            description = "Строит отчет одним проходом по транзакциям с параллельной обработкой продавцов. "
+                    + "Массив JSON пишется в ответ по мере готовности в порядке id продавца; "
+                    + "если отчет уже строится, возвращается 429")
+    public void getBestPeriodReport(HttpServletResponse response) throws IOException {
+        JsonArrayWriter<AnalyticsDto.SellerBestPeriod> writer = new JsonArrayWriter<>(response);
+        transactionService.streamBestPeriodReport(writer);
+        writer.finish();
+    }
+
+    @GetMapping("/analytics/best-period/report/progress")
+    @Operation(summary = "Ход построения отчета по лучшим периодам",
+            description = "Число обработанных продавцов из общего числа и прочитанных транзакций для текущего или последнего отчета")
+    public ReportProgressDto getBestPeriodReportProgress() {
+        return transactionService.getBestPeriodReportProgress();
+    }
+
     @GetMapping("/analytics/best-period/{sellerId}")
     @Operation(summary = "Лучший период продавца",
-            description = "Возвращает самый продуктивный период времени для конкретного продавца")
-    public ResponseEntity<AnalyticsDto.BestPeriod> getBestPeriodForSeller(@PathVariable Long sellerId) {
-        return transactionService.getBestPeriodForSeller(sellerId)
+            description = "Возвращает самый продуктивный период времени для конкретного продавца. "
+                    + "Запрос выполняется в отдельном пуле аналитики; при его перегрузке возвращается 429")
+    public DeferredResult<ResponseEntity<AnalyticsDto.BestPeriod>> getBestPeriodForSeller(@PathVariable Long sellerId) {
+        return analyticsExecutor.submit(() -> transactionService.getBestPeriodForSeller(sellerId)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElse(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Пишет элементы массива JSON прямо в ответ. Ответ открывается только на первом элементе,
+     * поэтому ошибка проверки до начала чтения еще обрабатывается GlobalExceptionHandler.
+     */
+    private class JsonArrayWriter<T> implements Consumer<T> {
+        private final HttpServletResponse response;
+        private JsonGenerator generator;
+
+        private JsonArrayWriter(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void accept(T item) {
+            try {
+                open();
+                generator.writeObject(item);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void finish() throws IOException {
+            open();
+            generator.writeEndArray();
+            generator.close();
+        }
+
+        private void open() throws IOException {
+            if (generator != null) {
+                return;
+            }
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+            generator.writeStartArray();
+        }
     }
 }
\ No newline at end of file
@@ -85,4 +85,32 @@ public class AnalyticsDto {
         public BigDecimal getTotalAmount() { return totalAmount; }
         public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
     }
-}
\ No newline at end of file
+
+    public static class SellerBestPeriod {
+        private Long sellerId;
+        private String sellerName;
+        private Long transactionCount;
+        private BestPeriod bestPeriod;
+
+        public SellerBestPeriod() {}
+
+        public SellerBestPeriod(Long sellerId, String sellerName, Long transactionCount, BestPeriod bestPeriod) {
+            this.sellerId = sellerId;
+            this.sellerName = sellerName;
+            this.transactionCount = transactionCount;
+            this.bestPeriod = bestPeriod;
+        }
+
+        public Long getSellerId() { return sellerId; }
+        public void setSellerId(Long sellerId) { this.sellerId = sellerId; }
+
+        public String getSellerName() { return sellerName; }
+        public void setSellerName(String sellerName) { this.sellerName = sellerName; }
+
+        public Long getTransactionCount() { return transactionCount; }
+        public void setTransactionCount(Long transactionCount) { this.transactionCount = transactionCount; }
+
+        public BestPeriod getBestPeriod() { return bestPeriod; }
+        public void setBestPeriod(BestPeriod bestPeriod) { this.bestPeriod = bestPeriod; }
+    }
+}
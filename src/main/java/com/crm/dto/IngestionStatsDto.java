@@ -0,0 +1,66 @@
+package com.crm.dto;
+
+public class IngestionStatsDto {
+    private int queueDepth;
+    private int queueCapacity;
+    private long accepted;
+    private long rejected;
+    private long committed;
+    private long failed;
+    private long dropped;
+    private long groupCommits;
+    private double lastCommitMillis;
+    private double averageCommitMillis;
+    private double maxCommitMillis;
+
+    public IngestionStatsDto() {}
+
+    public IngestionStatsDto(int queueDepth, int queueCapacity, long accepted, long rejected,
+                             long committed, long failed, long dropped, long groupCommits,
+                             double lastCommitMillis, double averageCommitMillis, double maxCommitMillis) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.committed = committed;
+        this.failed = failed;
+        this.dropped = dropped;
+        this.groupCommits = groupCommits;
+        this.lastCommitMillis = lastCommitMillis;
+        this.averageCommitMillis = averageCommitMillis;
+        this.maxCommitMillis = maxCommitMillis;
+    }
+
+    public int getQueueDepth() { return queueDepth; }
+    public void setQueueDepth(int queueDepth) { this.queueDepth = queueDepth; }
+
+    public int getQueueCapacity() { return queueCapacity; }
+    public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+    public long getAccepted() { return accepted; }
+    public void setAccepted(long accepted) { this.accepted = accepted; }
+
+    public long getRejected() { return rejected; }
+    public void setRejected(long rejected) { this.rejected = rejected; }
+
+    public long getCommitted() { return committed; }
+    public void setCommitted(long committed) { this.committed = committed; }
+
+    public long getFailed() { return failed; }
+    public void setFailed(long failed) { this.failed = failed; }
+
+    public long getDropped() { return dropped; }
+    public void setDropped(long dropped) { this.dropped = dropped; }
+
+    public long getGroupCommits() { return groupCommits; }
+    public void setGroupCommits(long groupCommits) { this.groupCommits = groupCommits; }
+
+    public double getLastCommitMillis() { return lastCommitMillis; }
+    public void setLastCommitMillis(double lastCommitMillis) { this.lastCommitMillis = lastCommitMillis; }
+
+    public double getAverageCommitMillis() { return averageCommitMillis; }
+    public void setAverageCommitMillis(double averageCommitMillis) { this.averageCommitMillis = averageCommitMillis; }
+
+    public double getMaxCommitMillis() { return maxCommitMillis; }
+    public void setMaxCommitMillis(double maxCommitMillis) { this.maxCommitMillis = maxCommitMillis; }
+}
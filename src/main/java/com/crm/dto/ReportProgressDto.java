@@ -0,0 +1,42 @@
+package com.crm.dto;
+
+import java.time.LocalDateTime;
+
+public class ReportProgressDto {
+    private boolean running;
+    private long sellersTotal;
+    private long sellersProcessed;
+    private long transactionsRead;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public ReportProgressDto() {}
+
+    public ReportProgressDto(boolean running, long sellersTotal, long sellersProcessed, long transactionsRead,
+                             LocalDateTime startedAt, LocalDateTime finishedAt) {
+        this.running = running;
+        this.sellersTotal = sellersTotal;
+        this.sellersProcessed = sellersProcessed;
+        this.transactionsRead = transactionsRead;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+
+    public boolean isRunning() { return running; }
+    public void setRunning(boolean running) { this.running = running; }
+
+    public long getSellersTotal() { return sellersTotal; }
+    public void setSellersTotal(long sellersTotal) { this.sellersTotal = sellersTotal; }
+
+    public long getSellersProcessed() { return sellersProcessed; }
+    public void setSellersProcessed(long sellersProcessed) { this.sellersProcessed = sellersProcessed; }
+
+    public long getTransactionsRead() { return transactionsRead; }
+    public void setTransactionsRead(long transactionsRead) { this.transactionsRead = transactionsRead; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -0,0 +1,50 @@
+package com.crm.dto;
+
+import java.util.List;
+
+public class TransactionBatchResultDto {
+    private int created;
+    private int rejected;
+    private List<Item> items;
+
+    public TransactionBatchResultDto() {}
+
+    public TransactionBatchResultDto(int created, int rejected, List<Item> items) {
+        this.created = created;
+        this.rejected = rejected;
+        this.items = items;
+    }
+
+    public int getCreated() { return created; }
+    public void setCreated(int created) { this.created = created; }
+
+    public int getRejected() { return rejected; }
+    public void setRejected(int rejected) { this.rejected = rejected; }
+
+    public List<Item> getItems() { return items; }
+    public void setItems(List<Item> items) { this.items = items; }
+
+    // Результат по элементу пакета в порядке запроса: созданная транзакция или причина отказа
+    public static class Item {
+        private int index;
+        private TransactionDto transaction;
+        private String error;
+
+        public Item() {}
+
+        public Item(int index, TransactionDto transaction, String error) {
+            this.index = index;
+            this.transaction = transaction;
+            this.error = error;
+        }
+
+        public int getIndex() { return index; }
+        public void setIndex(int index) { this.index = index; }
+
+        public TransactionDto getTransaction() { return transaction; }
+        public void setTransaction(TransactionDto transaction) { this.transaction = transaction; }
+
+        public String getError() { return error; }
+        public void setError(String error) { this.error = error; }
+    }
+}
@@ -1,5 +1,6 @@
 package com.crm.dto;
 
+import com.crm.entity.PaymentType;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -30,6 +31,11 @@ public class TransactionDto {
         this.transactionDate = transactionDate;
     }
 
+    // Используется в JPQL-выражениях SELECT new ... без загрузки сущностей
+    public TransactionDto(Long id, Long sellerId, String sellerName, BigDecimal amount,
+                          PaymentType paymentType, LocalDateTime transactionDate) {
+        this(id, sellerId, sellerName, amount, paymentType.name(), transactionDate);
+    }
 
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     public Long getId() { return id; }
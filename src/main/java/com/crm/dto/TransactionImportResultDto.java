@@ -0,0 +1,30 @@
+package com.crm.dto;
+
+public class TransactionImportResultDto {
+    private long imported;
+    private long rejected;
+    private String rejectsFile;
+    private long durationMillis;
+
+    public TransactionImportResultDto() {}
+
+    public TransactionImportResultDto(long imported, long rejected, String rejectsFile, long durationMillis) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.rejectsFile = rejectsFile;
+        this.durationMillis = durationMillis;
+    }
+
+    public long getImported() { return imported; }
+    public void setImported(long imported) { this.imported = imported; }
+
+    public long getRejected() { return rejected; }
+    public void setRejected(long rejected) { this.rejected = rejected; }
+
+    // Путь к CSV с отклоненными строками на сервере; null, если отклоненных строк нет
+    public String getRejectsFile() { return rejectsFile; }
+    public void setRejectsFile(String rejectsFile) { this.rejectsFile = rejectsFile; }
+
+    public long getDurationMillis() { return durationMillis; }
+    public void setDurationMillis(long durationMillis) { this.durationMillis = durationMillis; }
+}
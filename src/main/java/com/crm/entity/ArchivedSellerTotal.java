@@ -0,0 +1,72 @@
+package com.crm.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+@Entity
+@Table(name = "transaction_archive_totals")
+@IdClass(ArchivedSellerTotal.Key.class)
+public class ArchivedSellerTotal {
+    @Id
+    @Column(name = "seller_id")
+    private Long sellerId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_type")
+    private PaymentType paymentType;
+
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    public ArchivedSellerTotal() {}
+
+    public ArchivedSellerTotal(Long sellerId, PaymentType paymentType, long transactionCount, BigDecimal totalAmount) {
+        this.sellerId = sellerId;
+        this.paymentType = paymentType;
+        this.transactionCount = transactionCount;
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getSellerId() { return sellerId; }
+    public void setSellerId(Long sellerId) { this.sellerId = sellerId; }
+
+    public PaymentType getPaymentType() { return paymentType; }
+    public void setPaymentType(PaymentType paymentType) { this.paymentType = paymentType; }
+
+    public long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(long transactionCount) { this.transactionCount = transactionCount; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+
+    public static class Key implements Serializable {
+        private Long sellerId;
+        private PaymentType paymentType;
+
+        public Key() {}
+
+        public Key(Long sellerId, PaymentType paymentType) {
+            this.sellerId = sellerId;
+            this.paymentType = paymentType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(sellerId, key.sellerId) && paymentType == key.paymentType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sellerId, paymentType);
+        }
+    }
+}
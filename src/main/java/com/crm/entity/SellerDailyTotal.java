@@ -0,0 +1,86 @@
+package com.crm.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+@Entity
+@Table(name = "seller_daily_totals")
+@IdClass(SellerDailyTotal.Key.class)
+public class SellerDailyTotal {
+    @Id
+    @Column(name = "seller_id")
+    private Long sellerId;
+
+    @Id
+    @Column(name = "day")
+    private LocalDate day;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_type")
+    private PaymentType paymentType;
+
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    public SellerDailyTotal() {}
+
+    public SellerDailyTotal(Long sellerId, LocalDate day, PaymentType paymentType,
+                            long transactionCount, BigDecimal totalAmount) {
+        this.sellerId = sellerId;
+        this.day = day;
+        this.paymentType = paymentType;
+        this.transactionCount = transactionCount;
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getSellerId() { return sellerId; }
+    public void setSellerId(Long sellerId) { this.sellerId = sellerId; }
+
+    public LocalDate getDay() { return day; }
+    public void setDay(LocalDate day) { this.day = day; }
+
+    public PaymentType getPaymentType() { return paymentType; }
+    public void setPaymentType(PaymentType paymentType) { this.paymentType = paymentType; }
+
+    public long getTransactionCount() { return transactionCount; }
+    public void setTransactionCount(long transactionCount) { this.transactionCount = transactionCount; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+
+    public static class Key implements Serializable {
+        private Long sellerId;
+        private LocalDate day;
+        private PaymentType paymentType;
+
+        public Key() {}
+
+        public Key(Long sellerId, LocalDate day, PaymentType paymentType) {
+            this.sellerId = sellerId;
+            this.day = day;
+            this.paymentType = paymentType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(sellerId, key.sellerId)
+                    && Objects.equals(day, key.day)
+                    && paymentType == key.paymentType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sellerId, day, paymentType);
+        }
+    }
+}
@@ -5,10 +5,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+// Схема и индексы задаются миграциями db/migration/{vendor}
 @Table(name = "transactions")
 public class Transaction {
+    // Последовательность с пулом идентификаторов: IDENTITY не позволяет Hibernate группировать INSERT в пакеты
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
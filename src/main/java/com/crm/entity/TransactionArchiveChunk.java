@@ -0,0 +1,65 @@
+package com.crm.entity;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Порция архивных транзакций одного месяца: строки id,seller_id,amount,payment_type,transaction_date в CSV, сжатом gzip
+@Entity
+@Table(name = "transaction_archive_chunks")
+public class TransactionArchiveChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDateTime periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDateTime periodEnd;
+
+    @Column(name = "row_count", nullable = false)
+    private int rowCount;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    public TransactionArchiveChunk() {}
+
+    public TransactionArchiveChunk(LocalDateTime periodStart, LocalDateTime periodEnd,
+                                   int rowCount, BigDecimal totalAmount, byte[] data) {
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+        this.rowCount = rowCount;
+        this.totalAmount = totalAmount;
+        this.data = data;
+        this.archivedAt = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public LocalDateTime getPeriodStart() { return periodStart; }
+    public void setPeriodStart(LocalDateTime periodStart) { this.periodStart = periodStart; }
+
+    public LocalDateTime getPeriodEnd() { return periodEnd; }
+    public void setPeriodEnd(LocalDateTime periodEnd) { this.periodEnd = periodEnd; }
+
+    public int getRowCount() { return rowCount; }
+    public void setRowCount(int rowCount) { this.rowCount = rowCount; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+
+    public LocalDateTime getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(LocalDateTime archivedAt) { this.archivedAt = archivedAt; }
+
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+}
@@ -21,4 +21,8 @@ public class ResourceNotFoundException extends RuntimeException {
     public static ResourceNotFoundException forSellerWithMessage(Long id, String additionalInfo) {
         return new ResourceNotFoundException("Продавец с ID '" + id + "' не найден. " + additionalInfo);
     }
-}
\ No newline at end of file
+
+    public static ResourceNotFoundException forSellerName(String name) {
+        return new ResourceNotFoundException("Продавец с именем '" + name + "' не найден");
+    }
+}
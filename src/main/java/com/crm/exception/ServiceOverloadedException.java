@@ -0,0 +1,24 @@
+package com.crm.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+
+    public static ServiceOverloadedException forIngestionQueue(int capacity) {
+        return new ServiceOverloadedException("Очередь приема транзакций заполнена (" + capacity + "). Повторите запрос позже");
+    }
+
+    public static ServiceOverloadedException forReportInProgress() {
+        return new ServiceOverloadedException("Отчет по лучшим периодам уже строится. Повторите запрос позже");
+    }
+
+    public static ServiceOverloadedException forAnalyticsExecutor(int capacity) {
+        return new ServiceOverloadedException("Очередь аналитических запросов заполнена (" + capacity + "). Повторите запрос позже");
+    }
+}
@@ -0,0 +1,20 @@
+package com.crm.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public static ServiceUnavailableException forIngestionShutdown() {
+        return new ServiceUnavailableException("Прием транзакций остановлен: сервис завершает работу. Повторите запрос позже");
+    }
+
+    public static ServiceUnavailableException forAnalyticsTimeout(long timeoutMillis) {
+        return new ServiceUnavailableException("Аналитический запрос не выполнен за " + timeoutMillis + " мс. Повторите запрос позже");
+    }
+}
@@ -3,6 +3,8 @@ package com.crm.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.time.LocalDateTime;
+
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class ValidationException extends RuntimeException {
 
@@ -49,4 +51,37 @@ public class ValidationException extends RuntimeException {
     public static ValidationException forSellerWithTransactions() {
         return new ValidationException("Невозможно удалить продавца. У продавца есть связанные транзакции");
     }
-}
\ No newline at end of file
+
+    public static ValidationException forInvalidPageSize(int maxPageSize) {
+        return new ValidationException("Размер страницы должен быть от 1 до " + maxPageSize);
+    }
+
+    public static ValidationException forInvalidCursor() {
+        return new ValidationException("Некорректный курсор страницы");
+    }
+
+    public static ValidationException forCursorWithoutLimit() {
+        return new ValidationException("Курсор after используется только вместе с параметром limit");
+    }
+
+    public static ValidationException forInvalidBatchSize(int maxBatchSize) {
+        return new ValidationException("Пакет должен содержать от 1 до " + maxBatchSize + " транзакций");
+    }
+
+    public static ValidationException forInvalidTopLimit(int maxLimit) {
+        return new ValidationException("Количество продавцов в рейтинге должно быть от 1 до " + maxLimit);
+    }
+
+    public static ValidationException forInvalidTransactionDate() {
+        return new ValidationException("Некорректная дата транзакции. Ожидается формат 2024-01-15T10:30:00");
+    }
+
+    public static ValidationException forInvalidCsvRow(int expectedColumns) {
+        return new ValidationException("Строка CSV должна содержать " + expectedColumns + " поля");
+    }
+
+    public static ValidationException forPartialArchivedDay(LocalDateTime archivedUntil) {
+        return new ValidationException("Транзакции до " + archivedUntil + " перенесены в архив: "
+                + "границы периода раньше этой даты должны совпадать с началом дня");
+    }
+}
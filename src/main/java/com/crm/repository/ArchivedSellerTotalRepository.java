@@ -0,0 +1,60 @@
+package com.crm.repository;
+
+import com.crm.entity.ArchivedSellerTotal;
+import com.crm.entity.PaymentType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface ArchivedSellerTotalRepository extends JpaRepository<ArchivedSellerTotal, ArchivedSellerTotal.Key> {
+
+    @Modifying
+    @Query("UPDATE ArchivedSellerTotal a " +
+            "SET a.transactionCount = a.transactionCount + :count, a.totalAmount = a.totalAmount + :amount " +
+            "WHERE a.sellerId = :sellerId AND a.paymentType = :paymentType")
+    int increment(@Param("sellerId") Long sellerId,
+                  @Param("paymentType") PaymentType paymentType,
+                  @Param("count") long count,
+                  @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "INSERT INTO transaction_archive_totals (seller_id, payment_type, transaction_count, total_amount) " +
+            "VALUES (:sellerId, :paymentType, :count, :amount)",
+            nativeQuery = true)
+    int insert(@Param("sellerId") Long sellerId,
+               @Param("paymentType") String paymentType,
+               @Param("count") long count,
+               @Param("amount") BigDecimal amount);
+
+    // Атомарная вставка-или-увеличение для PostgreSQL
+    @Modifying
+    @Query(value = "INSERT INTO transaction_archive_totals (seller_id, payment_type, transaction_count, total_amount) " +
+            "VALUES (:sellerId, :paymentType, :count, :amount) " +
+            "ON CONFLICT (seller_id, payment_type) DO UPDATE SET " +
+            "transaction_count = transaction_archive_totals.transaction_count + EXCLUDED.transaction_count, " +
+            "total_amount = transaction_archive_totals.total_amount + EXCLUDED.total_amount",
+            nativeQuery = true)
+    int upsert(@Param("sellerId") Long sellerId,
+               @Param("paymentType") String paymentType,
+               @Param("count") long count,
+               @Param("amount") BigDecimal amount);
+
+    @Query("SELECT COALESCE(SUM(a.totalAmount), 0) FROM ArchivedSellerTotal a")
+    BigDecimal sumTotalAmount();
+
+    @Query("SELECT COALESCE(SUM(a.totalAmount), 0) FROM ArchivedSellerTotal a WHERE a.paymentType = :paymentType")
+    BigDecimal sumTotalAmountByPaymentType(@Param("paymentType") PaymentType paymentType);
+
+    @Query("SELECT COALESCE(SUM(a.transactionCount), 0) FROM ArchivedSellerTotal a")
+    long sumTransactionCount();
+
+    @Query("SELECT COALESCE(SUM(a.transactionCount), 0) FROM ArchivedSellerTotal a WHERE a.sellerId = :sellerId")
+    long sumTransactionCountBySellerId(@Param("sellerId") Long sellerId);
+
+    boolean existsBySellerId(Long sellerId);
+}
@@ -0,0 +1,15 @@
+package com.crm.repository;
+
+import java.math.BigDecimal;
+
+// Проекция агрегатов по транзакциям
+public interface SalesAggregate {
+
+    Long getTransactionCount();
+
+    BigDecimal getTotalAmount();
+
+    BigDecimal getMinAmount();
+
+    BigDecimal getMaxAmount();
+}
@@ -0,0 +1,73 @@
+package com.crm.repository;
+
+import com.crm.entity.SellerDailyTotal;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SellerDailyTotalRepository extends JpaRepository<SellerDailyTotal, SellerDailyTotal.Key> {
+
+    // Атомарная вставка-или-увеличение для PostgreSQL
+    @Modifying
+    @Query(value = "INSERT INTO seller_daily_totals (seller_id, day, payment_type, transaction_count, total_amount) " +
+            "VALUES (:sellerId, :day, :paymentType, :count, :amount) " +
+            "ON CONFLICT (seller_id, day, payment_type) DO UPDATE SET " +
+            "transaction_count = seller_daily_totals.transaction_count + EXCLUDED.transaction_count, " +
+            "total_amount = seller_daily_totals.total_amount + EXCLUDED.total_amount",
+            nativeQuery = true)
+    int upsert(@Param("sellerId") Long sellerId,
+               @Param("day") LocalDate day,
+               @Param("paymentType") String paymentType,
+               @Param("count") long count,
+               @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "INSERT INTO seller_daily_totals (seller_id, day, payment_type, transaction_count, total_amount) " +
+            "SELECT seller_id, CAST(transaction_date AS DATE), payment_type, COUNT(*), SUM(amount) " +
+            "FROM transactions " +
+            "GROUP BY seller_id, CAST(transaction_date AS DATE), payment_type",
+            nativeQuery = true)
+    int rebuildFromTransactions();
+
+    @Query("SELECT d.sellerId, SUM(d.totalAmount) FROM SellerDailyTotal d " +
+            "WHERE d.day >= :fromDay AND d.day < :toDay " +
+            "GROUP BY d.sellerId")
+    List<Object[]> sumBySellerForDays(@Param("fromDay") LocalDate fromDay,
+                                      @Param("toDay") LocalDate toDay);
+
+    // Первые N продавцов по сумме за дни [fromDay, toDay]: LIMIT из Pageable выполняется в базе
+    @Query("SELECT d.sellerId, SUM(d.totalAmount) FROM SellerDailyTotal d " +
+            "WHERE d.day >= :fromDay AND d.day <= :toDay " +
+            "GROUP BY d.sellerId " +
+            "ORDER BY SUM(d.totalAmount) DESC, d.sellerId")
+    List<Object[]> findTopSellersForDays(@Param("fromDay") LocalDate fromDay,
+                                         @Param("toDay") LocalDate toDay,
+                                         Pageable pageable);
+
+    // Суммы по продавцам с начала года и, условной агрегацией, с начала квартала и месяца - за один проход
+    @Query("SELECT d.sellerId, " +
+            "SUM(CASE WHEN d.day >= :monthStart THEN d.totalAmount ELSE 0 END), " +
+            "SUM(CASE WHEN d.day >= :quarterStart THEN d.totalAmount ELSE 0 END), " +
+            "SUM(d.totalAmount) " +
+            "FROM SellerDailyTotal d " +
+            "WHERE d.day >= :yearStart AND d.day < :toDay " +
+            "GROUP BY d.sellerId")
+    List<Object[]> sumBySellerForPeriodStarts(@Param("monthStart") LocalDate monthStart,
+                                              @Param("quarterStart") LocalDate quarterStart,
+                                              @Param("yearStart") LocalDate yearStart,
+                                              @Param("toDay") LocalDate toDay);
+
+    @Query("SELECT COALESCE(SUM(d.totalAmount), 0) FROM SellerDailyTotal d " +
+            "WHERE d.sellerId = :sellerId AND d.day >= :fromDay AND d.day < :toDay")
+    BigDecimal sumForSellerForDays(@Param("sellerId") Long sellerId,
+                                   @Param("fromDay") LocalDate fromDay,
+                                   @Param("toDay") LocalDate toDay);
+}
@@ -0,0 +1,32 @@
+package com.crm.repository;
+
+import com.crm.entity.TransactionArchiveChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface TransactionArchiveChunkRepository extends JpaRepository<TransactionArchiveChunk, Long> {
+
+    // Граница архива: транзакции раньше нее перенесены из оперативной таблицы; null, если архив пуст
+    @Query("SELECT MAX(c.periodEnd) FROM TransactionArchiveChunk c")
+    LocalDateTime findArchivedUntil();
+
+    // Вставка без сущности: порции архивации не накапливаются в контексте персистентности
+    @Modifying
+    @Query(value = "INSERT INTO transaction_archive_chunks " +
+            "(period_start, period_end, row_count, total_amount, archived_at, data) " +
+            "VALUES (:periodStart, :periodEnd, :rowCount, :totalAmount, :archivedAt, :data)",
+            nativeQuery = true)
+    int insert(@Param("periodStart") LocalDateTime periodStart,
+               @Param("periodEnd") LocalDateTime periodEnd,
+               @Param("rowCount") int rowCount,
+               @Param("totalAmount") BigDecimal totalAmount,
+               @Param("archivedAt") LocalDateTime archivedAt,
+               @Param("data") byte[] data);
+}
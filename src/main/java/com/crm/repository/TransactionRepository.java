@@ -1,43 +1,157 @@
 package com.crm.repository;
 
+import com.crm.dto.TransactionDto;
+import com.crm.entity.PaymentType;
 import com.crm.entity.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
-    List<Transaction> findBySellerId(Long sellerId);
+    // Суммы по неполным крайним дням периода: [headStart, headEnd) и [tailStart, tailEnd]
+    @Query("SELECT t.seller.id, SUM(t.amount) FROM Transaction t " +
+            "WHERE (t.transactionDate >= :headStart AND t.transactionDate < :headEnd) " +
+            "OR (t.transactionDate >= :tailStart AND t.transactionDate <= :tailEnd) " +
+            "GROUP BY t.seller.id")
+    List<Object[]> sumBySellerForEdges(@Param("headStart") LocalDateTime headStart,
+                                       @Param("headEnd") LocalDateTime headEnd,
+                                       @Param("tailStart") LocalDateTime tailStart,
+                                       @Param("tailEnd") LocalDateTime tailEnd);
+
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t " +
+            "WHERE t.seller.id = :sellerId " +
+            "AND ((t.transactionDate >= :headStart AND t.transactionDate < :headEnd) " +
+            "OR (t.transactionDate >= :tailStart AND t.transactionDate <= :tailEnd))")
+    BigDecimal sumForSellerForEdges(@Param("sellerId") Long sellerId,
+                                    @Param("headStart") LocalDateTime headStart,
+                                    @Param("headEnd") LocalDateTime headEnd,
+                                    @Param("tailStart") LocalDateTime tailStart,
+                                    @Param("tailEnd") LocalDateTime tailEnd);
+
+    // Загрузка колоночного хранилища: (продавец, дата, сумма, тип оплаты) в порядке даты; требует открытой транзакции
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.seller.id, t.transactionDate, t.amount, t.paymentType FROM Transaction t " +
+            "ORDER BY t.transactionDate, t.id")
+    Stream<Object[]> streamAnalyticsRows();
+
+    // Потоковое чтение (дата, сумма) без загрузки сущностей; требует открытой транзакции
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.transactionDate, t.amount FROM Transaction t WHERE t.seller.id = :sellerId ORDER BY t.transactionDate")
+    Stream<Object[]> streamDatesAndAmountsBySellerId(@Param("sellerId") Long sellerId);
+
+    // Отчет по всем продавцам: (продавец, дата, сумма) одним проходом по индексу (seller_id, transaction_date, id);
+    // строки каждого продавца идут подряд в порядке даты. Требует открытой транзакции
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.seller.id, t.transactionDate, t.amount FROM Transaction t " +
+            "ORDER BY t.seller.id, t.transactionDate, t.id")
+    Stream<Object[]> streamDatesAndAmountsOrderBySeller();
+
+    @Query("SELECT COUNT(DISTINCT t.seller.id) FROM Transaction t")
+    long countSellersWithTransactions();
 
-    @Query("SELECT t FROM Transaction t WHERE t.seller.id = :sellerId AND t.transactionDate BETWEEN :startDate AND :endDate")
-    List<Transaction> findBySellerIdAndPeriod(@Param("sellerId") Long sellerId,
-                                              @Param("startDate") LocalDateTime startDate,
-                                              @Param("endDate") LocalDateTime endDate);
+    // Архивация: строки [start, end) целиком, в порядке даты; требует открытой транзакции
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.id, t.seller.id, t.amount, t.paymentType, t.transactionDate FROM Transaction t " +
+            "WHERE t.transactionDate >= :start AND t.transactionDate < :end ORDER BY t.transactionDate, t.id")
+    Stream<Object[]> streamArchiveRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT s.id, s.name, SUM(t.amount) " +
+    @Modifying
+    @Query("DELETE FROM Transaction t WHERE t.transactionDate >= :start AND t.transactionDate < :end")
+    int deleteByPeriod(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT MIN(t.transactionDate) FROM Transaction t")
+    LocalDateTime findMinTransactionDate();
+
+    // Списки в виде DTO одним запросом с JOIN продавца: без отдельного SELECT sellers на каждую строку
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
             "FROM Transaction t JOIN t.seller s " +
-            "WHERE t.transactionDate BETWEEN :startDate AND :endDate " +
-            "GROUP BY s.id, s.name " +
-            "ORDER BY SUM(t.amount) DESC")
-    List<Object[]> findTopSellerByPeriod(@Param("startDate") LocalDateTime startDate,
-                                         @Param("endDate") LocalDateTime endDate);
+            "WHERE t.id = :id")
+    Optional<TransactionDto> findDtoById(@Param("id") Long id);
 
-    @Query("SELECT t FROM Transaction t WHERE t.seller.id = :sellerId ORDER BY t.transactionDate")
-    List<Transaction> findBySellerIdOrderByDate(@Param("sellerId") Long sellerId);
+    // Выборки за период задают диапазон по самому столбцу transactionDate, без функций над ним: в PostgreSQL
+    // планировщик по этому условию читает только секции месяцев периода (помесячное секционирование, V3)
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "WHERE s.id = :sellerId AND t.transactionDate BETWEEN :startDate AND :endDate " +
+            "ORDER BY t.transactionDate, t.id")
+    List<TransactionDto> findDtosBySellerIdAndPeriod(@Param("sellerId") Long sellerId,
+                                                     @Param("startDate") LocalDateTime startDate,
+                                                     @Param("endDate") LocalDateTime endDate);
 
+    // Keyset-пагинация в порядке (transaction_date, id): следующая страница начинается строго после курсора,
+    // поэтому база не пропускает OFFSET строк. Условие transactionDate >= :afterDate дает начало диапазона
+    // в индексе (transaction_date, id). Размер страницы задается через Pageable
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "ORDER BY t.transactionDate, t.id")
+    List<TransactionDto> findFirstPage(Pageable pageable);
+
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "WHERE t.transactionDate >= :afterDate AND (t.transactionDate > :afterDate OR t.id > :afterId) " +
+            "ORDER BY t.transactionDate, t.id")
+    List<TransactionDto> findPageAfter(@Param("afterDate") LocalDateTime afterDate,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
+
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "WHERE s.id = :sellerId " +
+            "ORDER BY t.transactionDate, t.id")
+    List<TransactionDto> findFirstPageBySellerId(@Param("sellerId") Long sellerId, Pageable pageable);
+
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "WHERE s.id = :sellerId " +
+            "AND t.transactionDate >= :afterDate AND (t.transactionDate > :afterDate OR t.id > :afterId) " +
+            "ORDER BY t.transactionDate, t.id")
+    List<TransactionDto> findPageBySellerIdAfter(@Param("sellerId") Long sellerId,
+                                                 @Param("afterDate") LocalDateTime afterDate,
+                                                 @Param("afterId") Long afterId,
+                                                 Pageable pageable);
+
+    // Потоковое чтение всего списка в виде DTO: сущности не попадают в контекст персистентности,
+    // поэтому память не растет с размером таблицы; требует открытой транзакции
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "ORDER BY t.transactionDate, t.id")
+    Stream<TransactionDto> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.crm.dto.TransactionDto(t.id, s.id, s.name, t.amount, t.paymentType, t.transactionDate) " +
+            "FROM Transaction t JOIN t.seller s " +
+            "WHERE s.id = :sellerId " +
+            "ORDER BY t.transactionDate, t.id")
+    Stream<TransactionDto> streamBySellerId(@Param("sellerId") Long sellerId);
 
     @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t")
     BigDecimal getTotalSalesAmount();
 
     @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE t.paymentType = :paymentType")
-    BigDecimal getTotalSalesByPaymentType(@Param("paymentType") String paymentType);
+    BigDecimal getTotalSalesByPaymentType(@Param("paymentType") PaymentType paymentType);
 
     @Query("SELECT COUNT(t) FROM Transaction t WHERE t.seller.id = :sellerId")
     Long countBySellerId(@Param("sellerId") Long sellerId);
-}
\ No newline at end of file
+
+    // Агрегаты (количество, сумма, минимум, максимум) считаются в базе без загрузки сущностей
+    @Query("SELECT COUNT(t) AS transactionCount, COALESCE(SUM(t.amount), 0) AS totalAmount, " +
+            "MIN(t.amount) AS minAmount, MAX(t.amount) AS maxAmount " +
+            "FROM Transaction t")
+    SalesAggregate aggregateAll();
+}
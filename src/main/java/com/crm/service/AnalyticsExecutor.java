@@ -0,0 +1,139 @@
+package com.crm.service;
+
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.exception.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Отдельный пул для тяжелых аналитических запросов.
+ *
+ * Контроллер отдает запрос в пул и сразу освобождает поток Tomcat, поэтому медленная аналитика не
+ * занимает потоки, которые обслуживают запись транзакций и CRUD. Пул и очередь ограничены: при
+ * заполненной очереди запрос отклоняется с 429, а запрос, не выполненный за timeout, получает 503.
+ *
+ * Прерывание потока не останавливает запрос JDBC, поэтому задача выполняется в транзакции только
+ * для чтения с таймаутом, равным оставшемуся времени: Spring передает его в таймаут запросов JPA
+ * и JdbcTemplate, и база сама прерывает запрос, который не успевает.
+ */
+@Component
+public class AnalyticsExecutor {
+
+    private final PlatformTransactionManager transactionManager;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long timeoutMillis;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    @Autowired
+    public AnalyticsExecutor(PlatformTransactionManager transactionManager,
+                             @Value("${crm.analytics.executor.pool-size:4}") int poolSize,
+                             @Value("${crm.analytics.executor.queue-capacity:100}") int queueCapacity,
+                             @Value("${crm.analytics.executor.timeout:30s}") Duration timeout) {
+        this.transactionManager = transactionManager;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "analytics-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Выполняет задачу в пуле аналитики. Исключение или ошибка задачи передается в ответ как обычно
+     * и обрабатывается GlobalExceptionHandler.
+     */
+    public <T> DeferredResult<T> submit(Supplier<T> task) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    result.setResult(withTimeout(deadline).execute(status -> task.get()));
+                } catch (TransactionTimedOutException | QueryTimeoutException e) {
+                    result.setErrorResult(ServiceUnavailableException.forAnalyticsTimeout(timeoutMillis));
+                } catch (Throwable e) {
+                    // Включая Error: иначе результат не завершится до таймаута и клиент получит 503
+                    result.setErrorResult(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw ServiceOverloadedException.forAnalyticsExecutor(queueCapacity);
+        }
+
+        result.onTimeout(() -> {
+            timedOut.incrementAndGet();
+            future.cancel(true);
+            result.setErrorResult(ServiceUnavailableException.forAnalyticsTimeout(timeoutMillis));
+        });
+        return result;
+    }
+
+    // Таймаут транзакции задается в секундах: время ожидания в очереди вычитается, остаток округляется вверх
+    private TransactionTemplate withTimeout(long deadline) {
+        long remainingMillis = Math.max(deadline - System.currentTimeMillis(), 1);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setTimeout((int) Math.min(TimeUnit.MILLISECONDS.toSeconds(remainingMillis + 999), Integer.MAX_VALUE));
+        return template;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getCompleted() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+}
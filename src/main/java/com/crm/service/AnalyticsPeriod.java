@@ -0,0 +1,41 @@
+package com.crm.service;
+
+import com.crm.exception.AnalyticsException;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum AnalyticsPeriod {
+    DAY, MONTH, QUARTER, YEAR;
+
+    public static AnalyticsPeriod parse(String period) {
+        if (period == null || period.trim().isEmpty()) {
+            throw AnalyticsException.forInvalidPeriod();
+        }
+
+        try {
+            return valueOf(period.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw AnalyticsException.forInvalidPeriod();
+        }
+    }
+
+    // Начало текущего периода для указанного момента
+    public LocalDateTime startOf(LocalDateTime moment) {
+        switch (this) {
+            case DAY:
+                return moment.truncatedTo(ChronoUnit.DAYS);
+            case MONTH:
+                return moment.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+            case QUARTER:
+                int currentQuarter = (moment.getMonthValue() - 1) / 3 + 1;
+                return moment.withMonth((currentQuarter - 1) * 3 + 1)
+                        .withDayOfMonth(1)
+                        .truncatedTo(ChronoUnit.DAYS);
+            case YEAR:
+                return moment.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS);
+            default:
+                throw AnalyticsException.forInvalidPeriod();
+        }
+    }
+}
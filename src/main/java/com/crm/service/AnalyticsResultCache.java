@@ -0,0 +1,141 @@
+package com.crm.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов аналитических запросов, которые дашборды опрашивают с одними и теми же параметрами.
+ *
+ * Ключ строится из нормализованных параметров; для топ-продавца вместо "сейчас" в ключ входит начало
+ * текущего периода, а для продавцов ниже порога - дни границ периода, поэтому все опросы внутри дня
+ * или периода попадают в одну запись. Любая запись транзакций
+ * или изменение продавцов увеличивает версию данных после фиксации: записи со старой версией больше
+ * не возвращаются, а ETag и Last-Modified меняются, так что неизменившийся опрос получает 304.
+ * Счетчик версий живет в памяти и после перезапуска начинается заново, поэтому в ETag входит еще
+ * случайный идентификатор запуска: ETag, выданный до перезапуска, не совпадет с новым.
+ *
+ * Если чтение идет с реплики, в течение max-lag после записи результат мог быть посчитан по данным
+ * без нее. Такой результат не сохраняется под новой версией, а ETag в этом окне помечается отдельно,
+ * поэтому после окна клиент получает пересчитанный ответ, а не 304 на устаревший.
+ */
+@Component
+public class AnalyticsResultCache {
+
+    private final Cache<List<Object>, Entry> results;
+    private final AtomicLong version = new AtomicLong();
+    private final String bootId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final long replicaLagNanos;
+    private volatile long lastModified = System.currentTimeMillis();
+    private volatile long invalidatedAtNanos = System.nanoTime();
+
+    @Autowired
+    public AnalyticsResultCache(@Value("${crm.analytics.cache.maximum-size:1000}") long maximumSize,
+                                @Value("${crm.datasource.replica.url:}") String replicaUrl,
+                                @Value("${crm.datasource.replica.max-lag:5s}") Duration replicaMaxLag) {
+        this(maximumSize, replicaUrl.isEmpty() ? Duration.ZERO : replicaMaxLag);
+    }
+
+    AnalyticsResultCache(long maximumSize) {
+        this(maximumSize, Duration.ZERO);
+    }
+
+    AnalyticsResultCache(long maximumSize, Duration replicaLag) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+        this.replicaLagNanos = replicaLag.toNanos();
+    }
+
+    public static List<Object> topSellerKey(AnalyticsPeriod period, LocalDateTime now) {
+        return Arrays.asList("top-seller", period, period.startOf(now));
+    }
+
+    public static List<Object> topSellersKey(AnalyticsPeriod period, LocalDateTime now, int limit) {
+        return Arrays.asList("top-sellers", period, period.startOf(now), limit);
+    }
+
+    // Все четыре периода меняются не чаще смены дня
+    public static List<Object> topSellersKey(LocalDateTime now) {
+        return Arrays.asList("top-seller-all", AnalyticsPeriod.DAY.startOf(now));
+    }
+
+    // Период считается целыми днями (SellerService), поэтому в ключ входят только дни его границ
+    public static List<Object> lowPerformanceKey(LocalDateTime startDate, LocalDateTime endDate, BigDecimal minAmount) {
+        return Arrays.asList("low-performance", startDate.toLocalDate(), endDate.toLocalDate(),
+                minAmount == null ? null : minAmount.stripTrailingZeros());
+    }
+
+    /**
+     * Результат для ключа: из кэша, если он посчитан для текущей версии данных, иначе через loader.
+     * Версия запоминается до расчета, поэтому результат, на который могла повлиять параллельная запись,
+     * будет пересчитан при следующем обращении.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(List<Object> key, Supplier<T> loader) {
+        long current = version.get();
+        Entry entry = results.getIfPresent(key);
+        if (entry != null && entry.version == current) {
+            return (T) entry.value;
+        }
+
+        boolean replicaMayLag = isReplicaMayLag();
+        T value = loader.get();
+        if (!replicaMayLag) {
+            results.put(key, new Entry(current, value));
+        }
+        return value;
+    }
+
+    // Слабый ETag: идентификатор запуска, версия данных и ключ запроса; в окне отставания реплики - с пометкой
+    public String getETag(List<Object> key) {
+        return "W/\"" + bootId + "-" + version.get() + (isReplicaMayLag() ? "-lag-" : "-")
+                + Integer.toHexString(key.hashCode()) + "\"";
+    }
+
+    // Время последнего изменения данных, но не раньше начала периода (результат меняется при смене периода)
+    public long getLastModified(LocalDateTime notBefore) {
+        long periodStart = notBefore.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.max(lastModified, periodStart);
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    // Вызывается после фиксации записи транзакций и при изменении продавцов
+    public void invalidate() {
+        invalidatedAtNanos = System.nanoTime();
+        version.incrementAndGet();
+        lastModified = System.currentTimeMillis();
+        results.invalidateAll();
+    }
+
+    // Реплика могла еще не получить последнюю запись
+    private boolean isReplicaMayLag() {
+        return replicaLagNanos > 0 && System.nanoTime() - invalidatedAtNanos < replicaLagNanos;
+    }
+
+    private static final class Entry {
+
+        private final long version;
+        private final Object value;
+
+        private Entry(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
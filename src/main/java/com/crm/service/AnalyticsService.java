@@ -1,60 +1,131 @@
 package com.crm.service;
 
+import com.crm.entity.PaymentType;
+import com.crm.exception.ValidationException;
+import com.crm.repository.ArchivedSellerTotalRepository;
+import com.crm.repository.SalesAggregate;
 import com.crm.repository.SellerRepository;
 import com.crm.repository.TransactionRepository;
+import com.crm.util.MoneyUtils;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
+/**
+ * Общие аналитические показатели. Транзакции, перенесенные в архив (TransactionArchiver), учитываются
+ * через их итоги по продавцам и типам оплаты в transaction_archive_totals.
+ */
 @Service
 public class AnalyticsService {
 
     private final TransactionRepository transactionRepository;
     private final SellerRepository sellerRepository;
+    private final ColumnarTransactionStore columnarStore;
+    private final ArchivedSellerTotalRepository archivedTotalRepository;
 
     public AnalyticsService(TransactionRepository transactionRepository,
-                            SellerRepository sellerRepository) {
+                            SellerRepository sellerRepository,
+                            ColumnarTransactionStore columnarStore,
+                            ArchivedSellerTotalRepository archivedTotalRepository) {
         this.transactionRepository = transactionRepository;
         this.sellerRepository = sellerRepository;
+        this.columnarStore = columnarStore;
+        this.archivedTotalRepository = archivedTotalRepository;
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public BigDecimal getTotalSales() {
+        BigDecimal archived = orZero(archivedTotalRepository.sumTotalAmount());
+        if (columnarStore.isReady()) {
+            return columnarStore.getTotal().add(archived);
+        }
+
         // Используем нативный запрос для суммы всех транзакций
         BigDecimal total = transactionRepository.getTotalSalesAmount();
-        return total != null ? total : BigDecimal.ZERO;
+        return total != null ? total.add(archived) : archived;
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public BigDecimal getAverageTransactionAmount() {
-        Long transactionCount = transactionRepository.count();
-        if (transactionCount == null || transactionCount == 0) {
+        long archivedCount = archivedTotalRepository.sumTransactionCount();
+        long archivedCents = archivedCount == 0 ? 0 : MoneyUtils.toCents(orZero(archivedTotalRepository.sumTotalAmount()));
+
+        if (columnarStore.isReady()) {
+            long count = columnarStore.getCount() + archivedCount;
+            return count == 0 ? BigDecimal.ZERO
+                    : MoneyUtils.average(MoneyUtils.add(columnarStore.getTotalCents(), archivedCents), count);
+        }
+
+        // Количество и сумма считаются одним агрегатным запросом
+        SalesAggregate aggregate = transactionRepository.aggregateAll();
+        Long hotCount = aggregate != null ? aggregate.getTransactionCount() : null;
+        long transactionCount = (hotCount != null ? hotCount : 0) + archivedCount;
+        if (transactionCount == 0) {
             return BigDecimal.ZERO;
         }
 
-        BigDecimal totalSales = getTotalSales();
-        if (totalSales.compareTo(BigDecimal.ZERO) == 0) {
+        BigDecimal hotSales = aggregate != null ? aggregate.getTotalAmount() : null;
+        long totalCents = MoneyUtils.add(hotSales != null ? MoneyUtils.toCents(hotSales) : 0, archivedCents);
+        if (totalCents == 0) {
             return BigDecimal.ZERO;
         }
 
-        // Вычисляем среднее значение
-        return totalSales.divide(BigDecimal.valueOf(transactionCount), 2, RoundingMode.HALF_UP);
+        // Вычисляем среднее значение в копейках
+        return MoneyUtils.average(totalCents, transactionCount);
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public long getTransactionCount() {
-        return transactionRepository.count();
+        long archived = archivedTotalRepository.sumTransactionCount();
+        if (columnarStore.isReady()) {
+            return columnarStore.getCount() + archived;
+        }
+        return transactionRepository.count() + archived;
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public long getSellerCount() {
         return sellerRepository.count();
     }
 
     // Дополнительные аналитические методы
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public BigDecimal getTotalSalesByPaymentType(String paymentType) {
-        BigDecimal total = transactionRepository.getTotalSalesByPaymentType(paymentType);
-        return total != null ? total : BigDecimal.ZERO;
+        PaymentType type;
+        try {
+            type = PaymentType.valueOf(paymentType);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw ValidationException.forInvalidPaymentType();
+        }
+
+        BigDecimal archived = orZero(archivedTotalRepository.sumTotalAmountByPaymentType(type));
+        if (columnarStore.isReady()) {
+            return columnarStore.getTotal(type).add(archived);
+        }
+
+        BigDecimal total = transactionRepository.getTotalSalesByPaymentType(type);
+        return total != null ? total.add(archived) : archived;
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public Long getTransactionCountBySeller(Long sellerId) {
-        return transactionRepository.countBySellerId(sellerId);
+        long archived = sellerId != null ? archivedTotalRepository.sumTransactionCountBySellerId(sellerId) : 0;
+        if (columnarStore.isReady() && sellerId != null) {
+            return columnarStore.getCount(sellerId) + archived;
+        }
+        Long count = transactionRepository.countBySellerId(sellerId);
+        return count != null ? count + archived : archived;
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
     }
-}
\ No newline at end of file
+}
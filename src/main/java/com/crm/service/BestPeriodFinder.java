@@ -0,0 +1,219 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.Transaction;
+import com.crm.util.MoneyUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Поиск самого плотного периода продаж продавца.
+ *
+ * Для каждого размера окна (от 1 до 30 дней) окно [t_i, t_i + N дней) начинается в дате каждой
+ * транзакции. Вместо повторного прохода по всему списку для каждого окна используются два указателя:
+ * окно закрывается, как только приходит первая транзакция за его границей, поэтому весь поиск
+ * выполняется за O(30·n). Транзакции подаются по одной в порядке возрастания даты, в памяти
+ * хранится только активное окно (кольцевой буфер), а суммы считаются по накопленным итогам
+ * в копейках (long), без BigDecimal на каждую транзакцию.
+ *
+ * Результат совпадает с исходным алгоритмом: при равной плотности побеждает окно с большим
+ * количеством транзакций, при полном равенстве - меньшее окно и более ранняя дата начала.
+ */
+public class BestPeriodFinder {
+
+    static final int MAX_WINDOW_DAYS = 30;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_DAY = 86_400L * NANOS_PER_SECOND;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Кольцевой буфер активного окна (индексы абсолютные, позиция = индекс & mask)
+    private long[] times = new long[INITIAL_CAPACITY];
+    private LocalDateTime[] dates = new LocalDateTime[INITIAL_CAPACITY];
+    private long[] groupStarts = new long[INITIAL_CAPACITY];
+    private long[] prefixSums = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private long head;
+    private long count;
+
+    private long lastTime;
+    private long currentGroupStart;
+    private long runningTotal;
+    private LocalDateTime firstDate;
+    private long firstAmount;
+
+    // Для каждого размера окна: первое ещё не закрытое окно и лучшее найденное окно
+    private final long[] pending = new long[MAX_WINDOW_DAYS + 1];
+    private final long[] bestCounts = new long[MAX_WINDOW_DAYS + 1];
+    private final LocalDateTime[] bestStarts = new LocalDateTime[MAX_WINDOW_DAYS + 1];
+    private final long[] bestTotals = new long[MAX_WINDOW_DAYS + 1];
+
+    public static Optional<AnalyticsDto.BestPeriod> find(List<Transaction> transactions) {
+        List<Transaction> sorted = transactions;
+        if (!isSortedByDate(transactions)) {
+            sorted = new ArrayList<>(transactions);
+            sorted.sort(Comparator.comparing(Transaction::getTransactionDate));
+        }
+
+        BestPeriodFinder finder = new BestPeriodFinder();
+        for (Transaction transaction : sorted) {
+            finder.accept(transaction.getTransactionDate(), transaction.getAmount());
+        }
+        return finder.result();
+    }
+
+    public void accept(LocalDateTime date, BigDecimal amount) {
+        accept(date, MoneyUtils.toCents(amount));
+    }
+
+    public void accept(LocalDateTime date, long amountCents) {
+        long time = toNanos(date);
+        if (count > 0 && time < lastTime) {
+            throw new IllegalArgumentException("Транзакции должны подаваться в порядке возрастания даты");
+        }
+
+        if (count == 0) {
+            firstDate = date;
+            firstAmount = amountCents;
+        }
+        if (count == 0 || time != lastTime) {
+            currentGroupStart = count;
+            lastTime = time;
+        }
+
+        // Закрываем окна, граница которых осталась позади текущей транзакции
+        for (int windowDays = 1; windowDays <= MAX_WINDOW_DAYS; windowDays++) {
+            long span = windowDays * NANOS_PER_DAY;
+            while (pending[windowDays] < count && times[slot(pending[windowDays])] + span <= time) {
+                closeWindow(windowDays);
+            }
+        }
+
+        // Самое длинное окно закрывается последним, поэтому буфер нужен начиная с его группы
+        head = pending[MAX_WINDOW_DAYS] < count
+                ? groupStarts[slot(pending[MAX_WINDOW_DAYS])]
+                : currentGroupStart;
+
+        ensureCapacity();
+        int position = slot(count);
+        times[position] = time;
+        dates[position] = date;
+        groupStarts[position] = currentGroupStart;
+        prefixSums[position] = runningTotal;
+        runningTotal = MoneyUtils.add(runningTotal, amountCents);
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Optional<AnalyticsDto.BestPeriod> result() {
+        if (count == 0) {
+            return Optional.empty();
+        }
+
+        if (count == 1) {
+            return Optional.of(new AnalyticsDto.BestPeriod(firstDate, firstDate, 1L, MoneyUtils.toAmount(firstAmount)));
+        }
+
+        for (int windowDays = 1; windowDays <= MAX_WINDOW_DAYS; windowDays++) {
+            while (pending[windowDays] < count) {
+                closeWindow(windowDays);
+            }
+        }
+
+        // Плотность = количество транзакций / длительность периода в днях
+        int bestWindow = 0;
+        double maxDensity = 0;
+        for (int windowDays = 1; windowDays <= MAX_WINDOW_DAYS; windowDays++) {
+            if (bestCounts[windowDays] == 0) {
+                continue;
+            }
+            double density = bestCounts[windowDays] / (double) windowDays;
+            if (density > maxDensity ||
+                    (density == maxDensity && bestCounts[windowDays] > (bestWindow > 0 ? bestCounts[bestWindow] : 0))) {
+                maxDensity = density;
+                bestWindow = windowDays;
+            }
+        }
+
+        if (bestWindow == 0) {
+            return Optional.empty();
+        }
+
+        LocalDateTime start = bestStarts[bestWindow];
+        return Optional.of(new AnalyticsDto.BestPeriod(
+                start,
+                start.plusDays(bestWindow),
+                bestCounts[bestWindow],
+                MoneyUtils.toAmount(bestTotals[bestWindow])
+        ));
+    }
+
+    // Окно, начатое с транзакции pending[windowDays], содержит все транзакции от начала её группы
+    // одинаковых дат до последней принятой
+    private void closeWindow(int windowDays) {
+        int startPosition = slot(pending[windowDays]);
+        long groupStart = groupStarts[startPosition];
+        long windowCount = count - groupStart;
+
+        if (windowCount > bestCounts[windowDays]) {
+            bestCounts[windowDays] = windowCount;
+            bestStarts[windowDays] = dates[startPosition];
+            bestTotals[windowDays] = runningTotal - prefixSums[slot(groupStart)];
+        }
+        pending[windowDays]++;
+    }
+
+    private void ensureCapacity() {
+        if (count - head < times.length) {
+            return;
+        }
+
+        int capacity = times.length * 2;
+        long[] newTimes = new long[capacity];
+        LocalDateTime[] newDates = new LocalDateTime[capacity];
+        long[] newGroupStarts = new long[capacity];
+        long[] newPrefixSums = new long[capacity];
+        int newMask = capacity - 1;
+
+        for (long index = head; index < count; index++) {
+            int from = slot(index);
+            int to = (int) (index & newMask);
+            newTimes[to] = times[from];
+            newDates[to] = dates[from];
+            newGroupStarts[to] = groupStarts[from];
+            newPrefixSums[to] = prefixSums[from];
+        }
+
+        times = newTimes;
+        dates = newDates;
+        groupStarts = newGroupStarts;
+        prefixSums = newPrefixSums;
+        mask = newMask;
+    }
+
+    private int slot(long index) {
+        return (int) (index & mask);
+    }
+
+    private static long toNanos(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + date.getNano();
+    }
+
+    private static boolean isSortedByDate(List<Transaction> transactions) {
+        for (int i = 1; i < transactions.size(); i++) {
+            if (transactions.get(i).getTransactionDate().isBefore(transactions.get(i - 1).getTransactionDate())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,226 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.dto.ReportProgressDto;
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.repository.TransactionRepository;
+import com.crm.util.MoneyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Отчет по лучшему периоду для всех продавцов.
+ *
+ * Транзакции читаются одним запросом в порядке (seller_id, transaction_date), поэтому строки каждого
+ * продавца идут подряд и образуют отдельную порцию. Порции обрабатываются BestPeriodFinder в пуле
+ * fork-join по числу ядер, пока чтение продолжается. Результаты отдаются получателю в порядке
+ * продавцов по мере готовности; в памяти одновременно держится не больше нескольких порций на поток,
+ * поэтому объем памяти не зависит от числа продавцов. Одновременно строится только один отчет.
+ */
+@Component
+public class BestPeriodReport {
+
+    private static final Logger log = LoggerFactory.getLogger(BestPeriodReport.class);
+
+    private static final int PENDING_CHUNKS_PER_THREAD = 4;
+
+    private final TransactionRepository transactionRepository;
+    private final SellerCache sellerCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+    private final int maxPendingChunks;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong sellersProcessed = new AtomicLong();
+    private final AtomicLong transactionsRead = new AtomicLong();
+    private volatile long sellersTotal;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    @Autowired
+    public BestPeriodReport(TransactionRepository transactionRepository,
+                            SellerCache sellerCache,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${crm.analytics.report.parallelism:0}") int parallelism) {
+        this.transactionRepository = transactionRepository;
+        this.sellerCache = sellerCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+
+        // 0 - по числу доступных ядер
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads);
+        this.maxPendingChunks = threads * PENDING_CHUNKS_PER_THREAD;
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Строит отчет и передает строку каждого продавца получателю в порядке id продавца. Продавцы без
+     * транзакций в отчет не попадают; для продавца с одной транзакцией лучший период не определяется.
+     */
+    public void write(Consumer<AnalyticsDto.SellerBestPeriod> consumer) {
+        if (!running.compareAndSet(false, true)) {
+            throw ServiceOverloadedException.forReportInProgress();
+        }
+
+        Deque<ForkJoinTask<SellerResult>> pending = new ArrayDeque<>();
+        try {
+            startedAt = LocalDateTime.now();
+            finishedAt = null;
+            sellersProcessed.set(0);
+            transactionsRead.set(0);
+
+            transactionTemplate.execute(status -> {
+                sellersTotal = transactionRepository.countSellersWithTransactions();
+                read(pending, consumer);
+                return null;
+            });
+            emit(pending, 0, consumer);
+
+            log.info("Отчет по лучшим периодам построен: {} продавцов, {} транзакций",
+                    sellersProcessed.get(), transactionsRead.get());
+        } catch (Exception e) {
+            pending.forEach(task -> task.cancel(true));
+            throw new RuntimeException("Ошибка при построении отчета по лучшим периодам: " + e.getMessage());
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    public ReportProgressDto getProgress() {
+        return new ReportProgressDto(
+                running.get(),
+                sellersTotal,
+                sellersProcessed.get(),
+                transactionsRead.get(),
+                startedAt,
+                finishedAt
+        );
+    }
+
+    // Чтение одним проходом: смена продавца закрывает порцию и отправляет ее в пул
+    private void read(Deque<ForkJoinTask<SellerResult>> pending, Consumer<AnalyticsDto.SellerBestPeriod> consumer) {
+        SellerChunk chunk = null;
+        try (Stream<Object[]> rows = transactionRepository.streamDatesAndAmountsOrderBySeller()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                Long sellerId = (Long) row[0];
+                if (chunk == null || !chunk.sellerId.equals(sellerId)) {
+                    if (chunk != null) {
+                        submit(chunk, pending, consumer);
+                    }
+                    chunk = new SellerChunk(sellerId);
+                }
+                chunk.add((LocalDateTime) row[1], MoneyUtils.toCents((BigDecimal) row[2]));
+                transactionsRead.incrementAndGet();
+            }
+        }
+        if (chunk != null) {
+            submit(chunk, pending, consumer);
+        }
+    }
+
+    private void submit(SellerChunk chunk,
+                        Deque<ForkJoinTask<SellerResult>> pending,
+                        Consumer<AnalyticsDto.SellerBestPeriod> consumer) {
+        pending.addLast(pool.submit(chunk::findBestPeriod));
+        emit(pending, maxPendingChunks, consumer);
+    }
+
+    // Отдает готовые результаты с начала очереди; если в очереди больше keep порций, ждет первую из них
+    private void emit(Deque<ForkJoinTask<SellerResult>> pending, int keep,
+                      Consumer<AnalyticsDto.SellerBestPeriod> consumer) {
+        List<SellerResult> ready = new ArrayList<>();
+        while (pending.size() > keep || (!pending.isEmpty() && pending.peekFirst().isDone())) {
+            ready.add(pending.pollFirst().join());
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> names = sellerCache.getNames(ready.stream()
+                .map(result -> result.sellerId)
+                .collect(Collectors.toList()));
+        for (SellerResult result : ready) {
+            consumer.accept(new AnalyticsDto.SellerBestPeriod(
+                    result.sellerId, names.get(result.sellerId), result.transactionCount, result.bestPeriod));
+            sellersProcessed.incrementAndGet();
+        }
+    }
+
+    // Транзакции одного продавца в порядке даты: даты и суммы в копейках
+    private static final class SellerChunk {
+
+        private final Long sellerId;
+        private LocalDateTime[] dates = new LocalDateTime[16];
+        private long[] amounts = new long[16];
+        private int size;
+
+        private SellerChunk(Long sellerId) {
+            this.sellerId = sellerId;
+        }
+
+        private void add(LocalDateTime date, long amountCents) {
+            if (size == dates.length) {
+                dates = Arrays.copyOf(dates, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            dates[size] = date;
+            amounts[size] = amountCents;
+            size++;
+        }
+
+        private SellerResult findBestPeriod() {
+            BestPeriodFinder finder = new BestPeriodFinder();
+            for (int i = 0; i < size; i++) {
+                finder.accept(dates[i], amounts[i]);
+            }
+
+            // Как и в запросе по одному продавцу, для анализа нужно минимум две транзакции
+            AnalyticsDto.BestPeriod bestPeriod = size < 2 ? null : finder.result().orElse(null);
+            return new SellerResult(sellerId, (long) size, bestPeriod);
+        }
+    }
+
+    private static final class SellerResult {
+
+        private final Long sellerId;
+        private final Long transactionCount;
+        private final AnalyticsDto.BestPeriod bestPeriod;
+
+        private SellerResult(Long sellerId, Long transactionCount, AnalyticsDto.BestPeriod bestPeriod) {
+            this.sellerId = sellerId;
+            this.transactionCount = transactionCount;
+            this.bestPeriod = bestPeriod;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.crm.service;
+
+import com.crm.entity.PaymentType;
+import com.crm.repository.TransactionArchiveChunkRepository;
+import com.crm.repository.TransactionRepository;
+import com.crm.util.MoneyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Колоночное хранилище транзакций в памяти для аналитики (crm.analytics.columnar.enabled).
+ *
+ * Каждая транзакция занимает 25 байт в примитивных массивах: id продавца, время в секундах эпохи,
+ * сумма в копейках (long) и тип оплаты (byte). Массивы разбиты на месячные разделы, поэтому запрос
+ * за период читает только свои месяцы, а месяцы, целиком попавшие в период, суммируются без проверки
+ * даты. Хранилище загружается из базы при старте и пополняется после фиксации новых транзакций.
+ * Время хранится с точностью до секунды.
+ */
+@Component
+public class ColumnarTransactionStore {
+
+    static final int BYTES_PER_TRANSACTION = 8 + 8 + 8 + 1;
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchiveChunkRepository archiveChunkRepository;
+    private final SnapshotBarrier snapshotBarrier;
+    private final boolean enabled;
+    private final Object loadLock = new Object();
+
+    // Читатели берут ссылку один раз на запрос: загрузка строит новые разделы отдельно и подменяет их целиком
+    private volatile NavigableMap<Integer, Partition> partitions = new ConcurrentSkipListMap<>();
+    // Разделы, которые строит идущая загрузка; append() пополняет и их
+    private NavigableMap<Integer, Partition> loading;
+    // До первой загрузки append() не нужен: такие транзакции уже в базе и войдут в загрузку
+    private boolean recording;
+    // Транзакции до этого момента перенесены в архив и в хранилище отсутствуют
+    private volatile LocalDateTime archivedUntil;
+    private volatile boolean ready;
+
+    @Autowired
+    public ColumnarTransactionStore(TransactionRepository transactionRepository,
+                                    TransactionArchiveChunkRepository archiveChunkRepository,
+                                    SnapshotBarrier snapshotBarrier,
+                                    @Value("${crm.analytics.columnar.enabled:false}") boolean enabled) {
+        this.transactionRepository = transactionRepository;
+        this.archiveChunkRepository = archiveChunkRepository;
+        this.snapshotBarrier = snapshotBarrier;
+        this.enabled = enabled;
+    }
+
+    // Выполняется после заполнения дневных итогов и рейтинга. Строки читаются по снимку SnapshotBarrier:
+    // транзакции, зафиксированные после снимка, append() добавляет в новые разделы сами. До подмены
+    // читатели продолжают работать со старыми разделами, которые append() тоже пополняет
+    @Order(2)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+
+        // Отдельная блокировка: монитор хранилища нужен append() во время загрузки
+        synchronized (loadLock) {
+            NavigableMap<Integer, Partition> loaded = new ConcurrentSkipListMap<>();
+            LocalDateTime loadedArchivedUntil = snapshotBarrier.load(() -> {
+                synchronized (this) {
+                    loading = loaded;
+                    recording = true;
+                }
+            }, () -> {
+                LocalDateTime archived = archiveChunkRepository.findArchivedUntil();
+                try (Stream<Object[]> rows = transactionRepository.streamAnalyticsRows()) {
+                    rows.forEach(row -> add(loaded, (Long) row[0], (LocalDateTime) row[1], (BigDecimal) row[2],
+                            (PaymentType) row[3]));
+                }
+                return archived;
+            });
+
+            // Прошлые месяцы больше не растут, запас емкости им не нужен
+            loaded.values().forEach(Partition::trim);
+            synchronized (this) {
+                // Архивация, прошедшая во время загрузки, могла убрать месяцы, которые затем дочитал снимок
+                LocalDateTime archived = archivedUntil;
+                if (archived == null || loadedArchivedUntil != null && loadedArchivedUntil.isAfter(archived)) {
+                    archived = loadedArchivedUntil;
+                }
+                if (archived != null) {
+                    loaded.headMap(monthOf(archived)).clear();
+                }
+                archivedUntil = archived;
+                partitions = loaded;
+                loading = null;
+            }
+            ready = true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Суммы за период с началом startDate можно считать по хранилищу, только если период не заходит в архив
+    public boolean isReadyFor(LocalDateTime startDate) {
+        LocalDateTime archived = archivedUntil;
+        return ready && (archived == null || !startDate.isBefore(archived));
+    }
+
+    // Вызывается после переноса транзакций до начала месяца cutoff в архив
+    public synchronized void removeBefore(LocalDateTime cutoff) {
+        archivedUntil = cutoff;
+        partitions.headMap(monthOf(cutoff)).clear();
+        if (loading != null) {
+            loading.headMap(monthOf(cutoff)).clear();
+        }
+    }
+
+    // Вызывается внутри пишущей транзакции: строка попадет в хранилище после ее фиксации
+    public void append(Long sellerId, LocalDateTime transactionDate, BigDecimal amount, PaymentType paymentType) {
+        if (sellerId == null || transactionDate == null || amount == null || paymentType == null) {
+            return;
+        }
+        snapshotBarrier.afterCommit(() -> apply(sellerId, transactionDate, amount, paymentType));
+    }
+
+    private synchronized void apply(long sellerId, LocalDateTime transactionDate, BigDecimal amount,
+                                    PaymentType paymentType) {
+        if (!recording) {
+            return;
+        }
+        add(partitions, sellerId, transactionDate, amount, paymentType);
+        if (loading != null) {
+            add(loading, sellerId, transactionDate, amount, paymentType);
+        }
+    }
+
+    public Map<Long, BigDecimal> getTotalsBySeller(LocalDateTime startDate, LocalDateTime endDate) {
+        long from = toSeconds(startDate);
+        long to = toSeconds(endDate);
+        SellerTotals totals = new SellerTotals();
+
+        for (Partition partition : partitions.subMap(monthOf(startDate), true, monthOf(endDate), true).values()) {
+            int size = partition.size;
+            Columns columns = partition.columns;
+            long[] sellerIds = columns.sellerIds;
+            long[] cents = columns.cents;
+
+            if (partition.isWithin(from, to)) {
+                for (int i = 0; i < size; i++) {
+                    totals.add(sellerIds[i], cents[i]);
+                }
+                continue;
+            }
+
+            long[] seconds = columns.seconds;
+            for (int i = 0; i < size; i++) {
+                if (seconds[i] >= from && seconds[i] <= to) {
+                    totals.add(sellerIds[i], cents[i]);
+                }
+            }
+        }
+        return totals.toAmounts();
+    }
+
+    public BigDecimal getTotalForSeller(long sellerId, LocalDateTime startDate, LocalDateTime endDate) {
+        long from = toSeconds(startDate);
+        long to = toSeconds(endDate);
+        long total = 0;
+
+        for (Partition partition : partitions.subMap(monthOf(startDate), true, monthOf(endDate), true).values()) {
+            int size = partition.size;
+            Columns columns = partition.columns;
+            long[] sellerIds = columns.sellerIds;
+            long[] seconds = columns.seconds;
+            long[] cents = columns.cents;
+
+            for (int i = 0; i < size; i++) {
+                if (sellerIds[i] == sellerId && seconds[i] >= from && seconds[i] <= to) {
+                    total = MoneyUtils.add(total, cents[i]);
+                }
+            }
+        }
+        return MoneyUtils.toAmount(total);
+    }
+
+    public BigDecimal getTotal() {
+        return MoneyUtils.toAmount(getTotalCents());
+    }
+
+    public long getTotalCents() {
+        long total = 0;
+        for (Partition partition : partitions.values()) {
+            int size = partition.size;
+            long[] cents = partition.columns.cents;
+            for (int i = 0; i < size; i++) {
+                total = MoneyUtils.add(total, cents[i]);
+            }
+        }
+        return total;
+    }
+
+    public BigDecimal getTotal(PaymentType paymentType) {
+        byte type = (byte) paymentType.ordinal();
+        long total = 0;
+        for (Partition partition : partitions.values()) {
+            int size = partition.size;
+            Columns columns = partition.columns;
+            byte[] paymentTypes = columns.paymentTypes;
+            long[] cents = columns.cents;
+            for (int i = 0; i < size; i++) {
+                if (paymentTypes[i] == type) {
+                    total = MoneyUtils.add(total, cents[i]);
+                }
+            }
+        }
+        return MoneyUtils.toAmount(total);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (Partition partition : partitions.values()) {
+            count += partition.size;
+        }
+        return count;
+    }
+
+    public long getCount(long sellerId) {
+        long count = 0;
+        for (Partition partition : partitions.values()) {
+            int size = partition.size;
+            long[] sellerIds = partition.columns.sellerIds;
+            for (int i = 0; i < size; i++) {
+                if (sellerIds[i] == sellerId) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Транзакции продавца подаются в BestPeriodFinder в порядке времени
+    public BestPeriodFinder findBestPeriod(long sellerId) {
+        long[] seconds = new long[16];
+        long[] cents = new long[16];
+        int count = 0;
+        boolean sorted = true;
+
+        for (Partition partition : partitions.values()) {
+            int size = partition.size;
+            Columns columns = partition.columns;
+            long[] sellerIds = columns.sellerIds;
+            for (int i = 0; i < size; i++) {
+                if (sellerIds[i] != sellerId) {
+                    continue;
+                }
+                if (count == seconds.length) {
+                    seconds = Arrays.copyOf(seconds, count * 2);
+                    cents = Arrays.copyOf(cents, count * 2);
+                }
+                sorted &= count == 0 || columns.seconds[i] >= seconds[count - 1];
+                seconds[count] = columns.seconds[i];
+                cents[count] = columns.cents[i];
+                count++;
+            }
+        }
+
+        BestPeriodFinder finder = new BestPeriodFinder();
+        if (sorted) {
+            for (int i = 0; i < count; i++) {
+                finder.accept(toDate(seconds[i]), cents[i]);
+            }
+            return finder;
+        }
+
+        // Порядок нарушают только транзакции, зафиксированные во время загрузки или с прошлой датой,
+        // поэтому сортировка редка
+        long[] unsortedSeconds = seconds;
+        long[] unsortedCents = cents;
+        IntStream.range(0, count)
+                .boxed()
+                .sorted(Comparator.comparingLong(i -> unsortedSeconds[i]))
+                .forEach(i -> finder.accept(toDate(unsortedSeconds[i]), unsortedCents[i]));
+        return finder;
+    }
+
+    // Объем массивов с учетом запаса емкости
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Partition partition : partitions.values()) {
+            bytes += (long) partition.columns.sellerIds.length * BYTES_PER_TRANSACTION;
+        }
+        return bytes;
+    }
+
+    private static void add(NavigableMap<Integer, Partition> partitions, long sellerId, LocalDateTime transactionDate,
+                            BigDecimal amount, PaymentType paymentType) {
+        long seconds = toSeconds(transactionDate);
+        int month = monthOf(transactionDate);
+        partitions.computeIfAbsent(month, Partition::new)
+                .append(sellerId, seconds, MoneyUtils.toCents(amount), (byte) paymentType.ordinal());
+    }
+
+    private static int monthOf(LocalDateTime date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private static long toSeconds(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toDate(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+
+    // Массивы раздела; при росте заменяются целиком, поэтому читатель видит согласованный набор
+    private static final class Columns {
+        final long[] sellerIds;
+        final long[] seconds;
+        final long[] cents;
+        final byte[] paymentTypes;
+
+        Columns(int capacity) {
+            this(new long[capacity], new long[capacity], new long[capacity], new byte[capacity]);
+        }
+
+        Columns(long[] sellerIds, long[] seconds, long[] cents, byte[] paymentTypes) {
+            this.sellerIds = sellerIds;
+            this.seconds = seconds;
+            this.cents = cents;
+            this.paymentTypes = paymentTypes;
+        }
+
+        Columns copy(int capacity) {
+            return new Columns(Arrays.copyOf(sellerIds, capacity), Arrays.copyOf(seconds, capacity),
+                    Arrays.copyOf(cents, capacity), Arrays.copyOf(paymentTypes, capacity));
+        }
+    }
+
+    /**
+     * Месячный раздел. Запись выполняется под блокировкой раздела, чтение - без блокировки:
+     * строка записывается в массивы до публикации нового size, поэтому читатель сначала читает size,
+     * а затем columns.
+     */
+    private static final class Partition {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        final long monthStart;
+        final long monthEnd;
+        volatile Columns columns = new Columns(INITIAL_CAPACITY);
+        volatile int size;
+
+        Partition(int month) {
+            LocalDateTime start = LocalDateTime.of(month / 12, month % 12 + 1, 1, 0, 0);
+            this.monthStart = toSeconds(start);
+            this.monthEnd = toSeconds(start.plusMonths(1)) - 1;
+        }
+
+        synchronized void append(long sellerId, long seconds, long cents, byte paymentType) {
+            Columns current = columns;
+            int index = size;
+            if (index == current.sellerIds.length) {
+                // Рост в 1.5 раза держит запас емкости текущего месяца в пределах трети
+                current = current.copy(Math.max(index + (index >> 1), INITIAL_CAPACITY));
+                columns = current;
+            }
+            current.sellerIds[index] = sellerId;
+            current.seconds[index] = seconds;
+            current.cents[index] = cents;
+            current.paymentTypes[index] = paymentType;
+            size = index + 1;
+        }
+
+        synchronized void trim() {
+            if (size < columns.sellerIds.length) {
+                columns = columns.copy(size);
+            }
+        }
+
+        boolean isWithin(long from, long to) {
+            return from <= monthStart && monthEnd <= to;
+        }
+    }
+
+    // Суммы по продавцам в открытой адресации без упаковки long в объекты на каждой строке
+    private static final class SellerTotals {
+        private long[] keys = new long[64];
+        private long[] values = new long[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        void add(long key, long value) {
+            int index = indexOf(keys, used, key);
+            values[index] = MoneyUtils.add(values[index], value);
+            if (!used[index]) {
+                used[index] = true;
+                keys[index] = key;
+                if (++size * 2 > keys.length) {
+                    resize();
+                }
+            }
+        }
+
+        Map<Long, BigDecimal> toAmounts() {
+            Map<Long, BigDecimal> amounts = new HashMap<>(size * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    amounts.put(keys[i], MoneyUtils.toAmount(values[i]));
+                }
+            }
+            return amounts;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int index = indexOf(keys, used, oldKeys[i]);
+                    used[index] = true;
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+
+        private static int indexOf(long[] keys, boolean[] used, long key) {
+            int mask = keys.length - 1;
+            int index = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+            while (used[index] && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.PaymentType;
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.exception.ValidationException;
+import com.crm.util.CsvUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Выгрузка транзакций и итогов продавцов в CSV.
+ *
+ * Транзакции читаются курсором JDBC только вперед (TYPE_FORWARD_ONLY, порциями по FETCH_SIZE строк)
+ * и пишутся в Writer прямо из ResultSet, без сущностей и DTO на строку, поэтому память не зависит
+ * от объема выгрузки. Проверка параметров выполняется до записи первой строки.
+ */
+@Component
+public class CsvExporter {
+
+    static final String TRANSACTIONS_HEADER = "id,seller_id,seller_name,amount,payment_type,transaction_date\n";
+    static final String SELLER_TOTALS_HEADER = "seller_id,seller_name,total_amount\n";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SellerCache sellerCache;
+    private final SellerService sellerService;
+
+    @Autowired
+    public CsvExporter(JdbcTemplate jdbcTemplate, SellerCache sellerCache, SellerService sellerService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sellerCache = sellerCache;
+        this.sellerService = sellerService;
+    }
+
+    /**
+     * Пишет транзакции в порядке (transaction_date, id) и возвращает число строк. Все фильтры
+     * необязательны; период задается включительно с любой из сторон.
+     */
+    @Transactional(readOnly = true)
+    public long writeTransactions(Long sellerId, LocalDateTime startDate, LocalDateTime endDate,
+                                  String paymentType, Writer writer) throws IOException {
+        PaymentType type = parsePaymentType(paymentType);
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw ValidationException.forInvalidDateRange();
+        }
+        if (sellerId != null && !sellerCache.exists(sellerId)) {
+            throw ResourceNotFoundException.forSeller(sellerId);
+        }
+
+        // Условие по самой дате: в PostgreSQL читаются только секции месяцев периода
+        StringBuilder sql = new StringBuilder("SELECT t.id, t.seller_id, s.name, t.amount, t.payment_type, t.transaction_date "
+                + "FROM transactions t JOIN sellers s ON s.id = t.seller_id WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (sellerId != null) {
+            sql.append(" AND t.seller_id = ?");
+            args.add(sellerId);
+        }
+        if (startDate != null) {
+            sql.append(" AND t.transaction_date >= ?");
+            args.add(startDate);
+        }
+        if (endDate != null) {
+            sql.append(" AND t.transaction_date <= ?");
+            args.add(endDate);
+        }
+        if (type != null) {
+            sql.append(" AND t.payment_type = ?");
+            args.add(type.name());
+        }
+        sql.append(" ORDER BY t.transaction_date, t.id");
+
+        writer.write(TRANSACTIONS_HEADER);
+        long[] rows = new long[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                writer.write(Long.toString(rs.getLong(1)));
+                writer.write(',');
+                writer.write(Long.toString(rs.getLong(2)));
+                writer.write(',');
+                CsvUtils.writeField(writer, rs.getString(3));
+                writer.write(',');
+                writer.write(rs.getString(4));
+                writer.write(',');
+                writer.write(rs.getString(5));
+                writer.write(',');
+                DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(rs.getObject(6, LocalDateTime.class), writer);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    /**
+     * Пишет продавцов, у которых сумма за период меньше minAmount, с теми же суммами, что и
+     * /api/sellers/analytics/low-performance. Строк не больше, чем продавцов.
+     */
+    public long writeSellersWithTotalLessThan(LocalDateTime startDate, LocalDateTime endDate,
+                                              BigDecimal minAmount, Writer writer) throws IOException {
+        if (startDate.isAfter(endDate)) {
+            throw ValidationException.forInvalidDateRange();
+        }
+
+        List<AnalyticsDto.SellerWithTotal> sellers = sellerService.getSellersWithTotalLessThan(startDate, endDate, minAmount);
+        writer.write(SELLER_TOTALS_HEADER);
+        for (AnalyticsDto.SellerWithTotal seller : sellers) {
+            writer.write(Long.toString(seller.getSellerId()));
+            writer.write(',');
+            CsvUtils.writeField(writer, seller.getSellerName());
+            writer.write(',');
+            writer.write(seller.getTotalAmount().toPlainString());
+            writer.write('\n');
+        }
+        return sellers.size();
+    }
+
+    private static PaymentType parsePaymentType(String paymentType) {
+        if (paymentType == null) {
+            return null;
+        }
+        try {
+            return PaymentType.valueOf(paymentType);
+        } catch (IllegalArgumentException e) {
+            throw ValidationException.forInvalidPaymentType();
+        }
+    }
+}
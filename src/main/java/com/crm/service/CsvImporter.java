@@ -0,0 +1,373 @@
+package com.crm.service;
+
+import com.crm.dto.TransactionDto;
+import com.crm.dto.TransactionImportResultDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.SellerDailyTotal;
+import com.crm.entity.Transaction;
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.exception.ValidationException;
+import com.crm.repository.SellerRepository;
+import com.crm.util.CsvReader;
+import com.crm.util.CsvUtils;
+import com.crm.util.MoneyUtils;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Массовая загрузка транзакций из CSV (POST /api/transactions/import).
+ *
+ * Строка файла: продавец (ID или имя), сумма, тип оплаты, дата транзакции; первая строка пропускается,
+ * если это заголовок (второе поле - amount). Строки проверяются по правилам
+ * TransactionService.validateTransactionDto и копятся порциями по chunk-size. Порция записывается
+ * одной транзакцией вместе с дневными итогами: в PostgreSQL через COPY FROM STDIN, в остальных базах
+ * пакетным INSERT. Отклоненные строки с номером строки и причиной пишутся в отдельный CSV в
+ * rejects-dir. Порции, зафиксированные до ошибки записи, остаются в базе.
+ */
+@Component
+public class CsvImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvImporter.class);
+
+    static final String REJECTS_HEADER = "line,error,seller,amount,payment_type,transaction_date\n";
+
+    private static final int COLUMNS = 4;
+    private static final String COPY_SQL = "COPY transactions (id, seller_id, amount, payment_type, transaction_date) "
+            + "FROM STDIN WITH (FORMAT csv)";
+    private static final String INSERT_SQL = "INSERT INTO transactions (id, seller_id, amount, payment_type, transaction_date) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SellerCache sellerCache;
+    private final SellerRepository sellerRepository;
+    private final SalesRollupService salesRollupService;
+    private final TopSellerLeaderboard topSellerLeaderboard;
+    private final ColumnarTransactionStore columnarStore;
+    private final AnalyticsResultCache analyticsResultCache;
+    private final TransactionPartitionMaintenance partitionMaintenance;
+    private final SessionFactoryImplementor sessionFactory;
+    private final IdentifierGenerator idGenerator;
+    private final int chunkSize;
+    private final Path rejectsDir;
+
+    @Autowired
+    public CsvImporter(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       SellerCache sellerCache,
+                       SellerRepository sellerRepository,
+                       SalesRollupService salesRollupService,
+                       TopSellerLeaderboard topSellerLeaderboard,
+                       ColumnarTransactionStore columnarStore,
+                       AnalyticsResultCache analyticsResultCache,
+                       TransactionPartitionMaintenance partitionMaintenance,
+                       EntityManagerFactory entityManagerFactory,
+                       @Value("${crm.import.chunk-size:50000}") int chunkSize,
+                       @Value("${crm.import.rejects-dir:${java.io.tmpdir}}") String rejectsDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sellerCache = sellerCache;
+        this.sellerRepository = sellerRepository;
+        this.salesRollupService = salesRollupService;
+        this.topSellerLeaderboard = topSellerLeaderboard;
+        this.columnarStore = columnarStore;
+        this.analyticsResultCache = analyticsResultCache;
+        this.partitionMaintenance = partitionMaintenance;
+        // Тот же генератор, что и у Hibernate: идентификаторы не пересекаются с транзакциями из API
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.idGenerator = sessionFactory.getMetamodel()
+                .entityPersister(Transaction.class)
+                .getIdentifierGenerator();
+        this.chunkSize = chunkSize;
+        this.rejectsDir = Paths.get(rejectsDir);
+    }
+
+    /**
+     * Загружает транзакции из CSV в UTF-8 и возвращает число загруженных и отклоненных строк.
+     * Память ограничена одной порцией и справочником имен продавцов, встреченных в файле.
+     */
+    public TransactionImportResultDto importCsv(InputStream input) throws IOException {
+        long started = System.nanoTime();
+        List<String> fields = new ArrayList<>(COLUMNS);
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             ImportRun run = new ImportRun()) {
+            boolean first = true;
+            while (reader.readRecord(fields)) {
+                if (fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                    if (fields.size() == COLUMNS && "amount".equalsIgnoreCase(fields.get(1).trim())) {
+                        continue;
+                    }
+                }
+                run.add(reader.getRecordLine(), fields);
+            }
+            run.flush();
+
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            log.info("Импорт транзакций: загружено {}, отклонено {} за {} мс", run.imported, run.rejected, elapsed);
+            return new TransactionImportResultDto(run.imported, run.rejected,
+                    run.rejectsFile != null ? run.rejectsFile.toString() : null, elapsed);
+        }
+    }
+
+    static LocalDateTime parseTransactionDate(String value) {
+        String text = value.trim();
+        // Дата из выгрузок учетных систем часто записана через пробел: 2024-01-15 10:30:00
+        if (text.length() > 10 && text.charAt(10) == ' ') {
+            text = text.substring(0, 10) + 'T' + text.substring(11);
+        }
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw ValidationException.forInvalidTransactionDate();
+        }
+    }
+
+    // Состояние одного импорта: текущая порция, имена продавцов и файл отклоненных строк
+    private final class ImportRun implements Closeable {
+
+        private final long[] sellerIds = new long[chunkSize];
+        private final BigDecimal[] amounts = new BigDecimal[chunkSize];
+        private final PaymentType[] paymentTypes = new PaymentType[chunkSize];
+        private final LocalDateTime[] dates = new LocalDateTime[chunkSize];
+        private final Map<SellerDailyTotal.Key, SellerDailyTotal> totals = new HashMap<>();
+        private final Map<String, Optional<Long>> sellerIdsByName = new HashMap<>();
+        private int size;
+
+        private long imported;
+        private long rejected;
+        private Path rejectsFile;
+        private Writer rejects;
+
+        private void add(long line, List<String> fields) throws IOException {
+            TransactionDto row;
+            LocalDateTime transactionDate;
+            try {
+                if (fields.size() != COLUMNS) {
+                    throw ValidationException.forInvalidCsvRow(COLUMNS);
+                }
+                row = new TransactionDto(resolveSellerId(fields.get(0).trim()),
+                        parseAmount(fields.get(1).trim()), fields.get(2).trim());
+                TransactionService.validateTransactionDto(row);
+                transactionDate = parseTransactionDate(fields.get(3));
+                if (!sellerCache.exists(row.getSellerId())) {
+                    throw ResourceNotFoundException.forSeller(row.getSellerId());
+                }
+            } catch (ValidationException | ResourceNotFoundException e) {
+                reject(line, fields, e.getMessage());
+                return;
+            }
+
+            // Сумма округляется до масштаба столбца, чтобы итоги совпадали с записанными строками
+            long sellerId = row.getSellerId();
+            BigDecimal amount = MoneyUtils.toAmount(MoneyUtils.toCents(row.getAmount()));
+            PaymentType paymentType = PaymentType.valueOf(row.getPaymentType());
+            sellerIds[size] = sellerId;
+            amounts[size] = amount;
+            paymentTypes[size] = paymentType;
+            dates[size] = transactionDate;
+            size++;
+
+            SellerDailyTotal total = totals.computeIfAbsent(
+                    new SellerDailyTotal.Key(sellerId, transactionDate.toLocalDate(), paymentType),
+                    key -> new SellerDailyTotal(sellerId, transactionDate.toLocalDate(), paymentType, 0, BigDecimal.ZERO));
+            total.setTransactionCount(total.getTransactionCount() + 1);
+            total.setTotalAmount(total.getTotalAmount().add(amount));
+
+            if (size == chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (size == 0) {
+                return;
+            }
+
+            long[] ids = allocateIds(size);
+            transactionTemplate.executeWithoutResult(status -> {
+                if (partitionMaintenance.isPostgres()) {
+                    copy(ids);
+                } else {
+                    insert(ids);
+                }
+                salesRollupService.recordAll(totals.values());
+                // Рейтинг и колоночное хранилище пополняются строками порции после ее фиксации, в том числе
+                // строками задним числом: перезагружать их из базы не нужно
+                for (int i = 0; i < size; i++) {
+                    topSellerLeaderboard.record(sellerIds[i], amounts[i], dates[i]);
+                    columnarStore.append(sellerIds[i], dates[i], amounts[i], paymentTypes[i]);
+                }
+            });
+            imported += size;
+
+            // Кэш аналитики сбрасывается только после фиксации порции
+            analyticsResultCache.invalidate();
+
+            Arrays.fill(amounts, 0, size, null);
+            Arrays.fill(paymentTypes, 0, size, null);
+            Arrays.fill(dates, 0, size, null);
+            totals.clear();
+            size = 0;
+        }
+
+        private void copy(long[] ids) {
+            StringBuilder data = new StringBuilder(size * 64);
+            for (int i = 0; i < size; i++) {
+                data.append(ids[i]).append(',')
+                        .append(sellerIds[i]).append(',')
+                        .append(amounts[i].toPlainString()).append(',')
+                        .append(paymentTypes[i].name()).append(',')
+                        .append(dates[i]).append('\n');
+            }
+
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyIn(COPY_SQL, new StringReader(data.toString()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        private void insert(long[] ids) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, ids[i]);
+                    ps.setLong(2, sellerIds[i]);
+                    ps.setBigDecimal(3, amounts[i]);
+                    ps.setString(4, paymentTypes[i].name());
+                    ps.setTimestamp(5, Timestamp.valueOf(dates[i]));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+
+        private Long resolveSellerId(String value) {
+            if (value.isEmpty()) {
+                return null;
+            }
+            if (isDigits(value)) {
+                try {
+                    return Long.valueOf(value);
+                } catch (NumberFormatException e) {
+                    throw ValidationException.forInvalidId();
+                }
+            }
+
+            Optional<Long> sellerId = sellerIdsByName.get(value);
+            if (sellerId == null) {
+                sellerId = sellerRepository.findByName(value).map(Seller::getId);
+                sellerIdsByName.put(value, sellerId);
+            }
+            return sellerId.orElseThrow(() -> ResourceNotFoundException.forSellerName(value));
+        }
+
+        private void reject(long line, List<String> fields, String error) throws IOException {
+            if (rejects == null) {
+                Files.createDirectories(rejectsDir);
+                rejectsFile = Files.createTempFile(rejectsDir, "transactions-import-", "-rejects.csv");
+                rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8);
+                rejects.write(REJECTS_HEADER);
+            }
+
+            rejects.write(Long.toString(line));
+            rejects.write(',');
+            CsvUtils.writeField(rejects, error);
+            for (String field : fields) {
+                rejects.write(',');
+                CsvUtils.writeField(rejects, field);
+            }
+            rejects.write('\n');
+            rejected++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (rejects != null) {
+                rejects.close();
+            }
+        }
+    }
+
+    // Идентификаторы порции выдаются одной сессией: обращение к последовательности - раз на allocationSize строк
+    private long[] allocateIds(int count) {
+        long[] ids = new long[count];
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            for (int i = 0; i < count; i++) {
+                ids[i] = ((Number) idGenerator.generate((SharedSessionContractImplementor) session, null)).longValue();
+            }
+        }
+        return ids;
+    }
+
+    private static BigDecimal parseAmount(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw ValidationException.forInvalidAmount();
+        }
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
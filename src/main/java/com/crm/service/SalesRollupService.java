@@ -0,0 +1,441 @@
+package com.crm.service;
+
+import com.crm.entity.PaymentType;
+import com.crm.entity.SellerDailyTotal;
+import com.crm.exception.ValidationException;
+import com.crm.repository.SellerDailyTotalRepository;
+import com.crm.repository.TransactionArchiveChunkRepository;
+import com.crm.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дневные итоги продаж по продавцам (таблица seller_daily_totals).
+ *
+ * Итоги обновляются в той же транзакции, что и вставка транзакций. Запросы за период читают
+ * итоги для целых дней и исходные строки только для неполных крайних дней, поэтому запрос
+ * за год затрагивает порядка 365 строк на продавца. Дни, перенесенные в архив, остаются в итогах,
+ * но их исходных строк уже нет, поэтому граница периода внутри архива должна совпадать с началом дня.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final String UPSERT_SQL = "INSERT INTO seller_daily_totals "
+            + "(seller_id, day, payment_type, transaction_count, total_amount) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT (seller_id, day, payment_type) DO UPDATE SET "
+            + "transaction_count = seller_daily_totals.transaction_count + EXCLUDED.transaction_count, "
+            + "total_amount = seller_daily_totals.total_amount + EXCLUDED.total_amount";
+    private static final String INCREMENT_SQL = "UPDATE seller_daily_totals "
+            + "SET transaction_count = transaction_count + ?, total_amount = total_amount + ? "
+            + "WHERE seller_id = ? AND day = ? AND payment_type = ?";
+    private static final String INSERT_SQL = "INSERT INTO seller_daily_totals "
+            + "(seller_id, day, payment_type, transaction_count, total_amount) VALUES (?, ?, ?, ?, ?)";
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+    private static final long PENDING_INSERT_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionArchiveChunkRepository archiveChunkRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Ключи дневных итогов, вставленные еще не завершенными транзакциями (только без ON CONFLICT, см. add)
+    private final ConcurrentMap<SellerDailyTotal.Key, CountDownLatch> pendingInserts = new ConcurrentHashMap<>();
+
+    private volatile Boolean postgres;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long sellerId, LocalDateTime transactionDate, PaymentType paymentType,
+                       long count, BigDecimal amount) {
+        LocalDate day = transactionDate.toLocalDate();
+
+        if (isPostgres()) {
+            sellerDailyTotalRepository.upsert(sellerId, day, paymentType.name(), count, amount);
+            return;
+        }
+
+        add(new SellerDailyTotal(sellerId, day, paymentType, count, amount));
+    }
+
+    /**
+     * Добавляет готовые итоги по ключам (продавец, день, тип оплаты) пакетными запросами: для
+     * массовой загрузки, где ключей на порядки больше, чем при записи отдельных транзакций.
+     * Количество и сумма каждого элемента прибавляются к уже сохраненным.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(Collection<SellerDailyTotal> totals) {
+        if (isPostgres()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, totals, BATCH_SIZE, SalesRollupService::setInsertValues);
+            return;
+        }
+
+        // Сначала увеличиваются существующие строки, затем вставляются ключи, которых не было
+        List<SellerDailyTotal> missing = new ArrayList<>();
+        List<SellerDailyTotal> batch = new ArrayList<>(BATCH_SIZE);
+        for (SellerDailyTotal total : totals) {
+            batch.add(total);
+            if (batch.size() == BATCH_SIZE) {
+                increment(batch, missing);
+                batch.clear();
+            }
+        }
+        increment(batch, missing);
+
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            insert(missing.subList(from, Math.min(from + BATCH_SIZE, missing.size())));
+        }
+    }
+
+    /**
+     * Увеличение существующей строки или вставка новой без ON CONFLICT. H2 не видит незафиксированную вставку
+     * другой транзакции в UPDATE, но сразу отвергает такую же вставку как дубликат, поэтому две первые записи
+     * одного ключа в параллельных транзакциях не должны вставлять его обе. Вставляющая транзакция занимает
+     * ключ в pendingInserts до своего завершения, остальные дожидаются его и повторяют увеличение. Реестра
+     * в памяти достаточно: встроенная H2 работает в том же процессе, что и приложение.
+     */
+    private void add(SellerDailyTotal total) {
+        SellerDailyTotal.Key key = keyOf(total);
+        int duplicates = 0;
+        while (jdbcTemplate.update(INCREMENT_SQL, ps -> setIncrementValues(ps, total)) == 0) {
+            CountDownLatch inserting = new CountDownLatch(1);
+            CountDownLatch pending = pendingInserts.putIfAbsent(key, inserting);
+            if (pending != null) {
+                awaitInsert(pending);
+                continue;
+            }
+            releaseAfterCompletion(Collections.singletonMap(key, inserting));
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> setInsertValues(ps, total));
+                return;
+            } catch (DuplicateKeyException e) {
+                // Ключ вставила транзакция, завершившаяся между увеличением и вставкой
+                release(key, inserting);
+                if (++duplicates == MAX_INSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Пакет вставляет только ключи, занятые этой транзакцией, и под точкой сохранения: при дубликате
+    // он откатывается целиком и все ключи добавляются по одному
+    private void insert(List<SellerDailyTotal> batch) {
+        Map<SellerDailyTotal.Key, CountDownLatch> claimed = new HashMap<>();
+        List<SellerDailyTotal> inserted = new ArrayList<>(batch.size());
+        List<SellerDailyTotal> contended = new ArrayList<>();
+        for (SellerDailyTotal total : batch) {
+            CountDownLatch inserting = new CountDownLatch(1);
+            if (pendingInserts.putIfAbsent(keyOf(total), inserting) == null) {
+                claimed.put(keyOf(total), inserting);
+                inserted.add(total);
+            } else {
+                contended.add(total);
+            }
+        }
+        releaseAfterCompletion(claimed);
+
+        Savepoint savepoint = jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserted, BATCH_SIZE, SalesRollupService::setInsertValues);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.rollback(savepoint);
+                return null;
+            });
+            claimed.forEach(this::release);
+            contended = batch;
+        } finally {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.releaseSavepoint(savepoint);
+                return null;
+            });
+        }
+        contended.forEach(this::add);
+    }
+
+    private void release(SellerDailyTotal.Key key, CountDownLatch inserting) {
+        pendingInserts.remove(key, inserting);
+        inserting.countDown();
+    }
+
+    private void releaseAfterCompletion(Map<SellerDailyTotal.Key, CountDownLatch> claimed) {
+        if (claimed.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                claimed.forEach(SalesRollupService.this::release);
+            }
+        });
+    }
+
+    private static void awaitInsert(CountDownLatch pending) {
+        try {
+            if (!pending.await(PENDING_INSERT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new CannotAcquireLockException("Транзакция, вставляющая тот же дневной итог, не завершилась");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Прервано ожидание вставки дневного итога", e);
+        }
+    }
+
+    private static SellerDailyTotal.Key keyOf(SellerDailyTotal total) {
+        return new SellerDailyTotal.Key(total.getSellerId(), total.getDay(), total.getPaymentType());
+    }
+
+    private void increment(List<SellerDailyTotal> batch, List<SellerDailyTotal> missing) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int[][] updated = jdbcTemplate.batchUpdate(INCREMENT_SQL, batch, batch.size(), SalesRollupService::setIncrementValues);
+        for (int i = 0; i < batch.size(); i++) {
+            if (updated[0][i] == 0) {
+                missing.add(batch.get(i));
+            }
+        }
+    }
+
+    // Заполнение итогов для базы, в которой транзакции появились раньше таблицы итогов
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (sellerDailyTotalRepository.count() == 0 && transactionRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    // Итоги строятся по оперативной таблице: дни, перенесенные в архив (TransactionArchiver), в них не попадут
+    @Transactional
+    public void rebuild() {
+        sellerDailyTotalRepository.deleteAllInBatch();
+        sellerDailyTotalRepository.rebuildFromTransactions();
+    }
+
+    public Map<Long, BigDecimal> getTotalsBySeller(LocalDateTime startDate, LocalDateTime endDate) {
+        PeriodSplit split = PeriodSplit.of(startDate, endDate);
+        checkEdgesNotArchived(split);
+        Map<Long, BigDecimal> totals = new HashMap<>();
+
+        if (split.hasWholeDays()) {
+            merge(totals, sellerDailyTotalRepository.sumBySellerForDays(split.firstDay, split.endDay));
+        }
+        merge(totals, transactionRepository.sumBySellerForEdges(
+                split.headStart, split.headEnd, split.tailStart, split.tailEnd));
+
+        return totals;
+    }
+
+    // Суммы по продавцам за целые дни [firstDay, lastDay]: только дневные итоги, включая дни, перенесенные в архив
+    public Map<Long, BigDecimal> getTotalsBySellerForDays(LocalDate firstDay, LocalDate lastDay) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        merge(totals, sellerDailyTotalRepository.sumBySellerForDays(firstDay, lastDay.plusDays(1)));
+        return totals;
+    }
+
+    public BigDecimal getTotalForSeller(Long sellerId, LocalDateTime startDate, LocalDateTime endDate) {
+        PeriodSplit split = PeriodSplit.of(startDate, endDate);
+        checkEdgesNotArchived(split);
+        BigDecimal total = transactionRepository.sumForSellerForEdges(
+                sellerId, split.headStart, split.headEnd, split.tailStart, split.tailEnd);
+
+        if (split.hasWholeDays()) {
+            total = total.add(sellerDailyTotalRepository.sumForSellerForDays(sellerId, split.firstDay, split.endDay));
+        }
+        return total;
+    }
+
+    /**
+     * Суммы по продавцам за текущие DAY, MONTH, QUARTER и YEAR на момент now. Целые дни с начала года
+     * читаются одним запросом с условной агрегацией по началу каждого периода, а неполный текущий
+     * день - одним запросом к транзакциям; он входит во все четыре периода.
+     */
+    public Map<AnalyticsPeriod, Map<Long, BigDecimal>> getTotalsBySellerForCurrentPeriods(LocalDateTime now) {
+        Map<AnalyticsPeriod, Map<Long, BigDecimal>> totals = new EnumMap<>(AnalyticsPeriod.class);
+        for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+            totals.put(period, new HashMap<>());
+        }
+
+        List<Object[]> rows = sellerDailyTotalRepository.sumBySellerForPeriodStarts(
+                AnalyticsPeriod.MONTH.startOf(now).toLocalDate(),
+                AnalyticsPeriod.QUARTER.startOf(now).toLocalDate(),
+                AnalyticsPeriod.YEAR.startOf(now).toLocalDate(),
+                now.toLocalDate());
+        for (Object[] row : rows) {
+            Long sellerId = (Long) row[0];
+            putIfNotZero(totals.get(AnalyticsPeriod.MONTH), sellerId, (BigDecimal) row[1]);
+            putIfNotZero(totals.get(AnalyticsPeriod.QUARTER), sellerId, (BigDecimal) row[2]);
+            putIfNotZero(totals.get(AnalyticsPeriod.YEAR), sellerId, (BigDecimal) row[3]);
+        }
+
+        LocalDateTime dayStart = AnalyticsPeriod.DAY.startOf(now);
+        List<Object[]> today = transactionRepository.sumBySellerForEdges(dayStart, dayStart, dayStart, now);
+        totals.values().forEach(periodTotals -> merge(periodTotals, today));
+
+        return totals;
+    }
+
+    /**
+     * Первые limit продавцов текущего периода по убыванию суммы. Период начинается с полуночи и
+     * заканчивается текущим днем, поэтому он целиком покрывается дневными итогами: сортировка и
+     * LIMIT выполняются в базе, и из нее передается не больше limit строк.
+     */
+    public Map<Long, BigDecimal> getTopSellersForCurrentPeriod(AnalyticsPeriod period, LocalDateTime now, int limit) {
+        List<Object[]> rows = sellerDailyTotalRepository.findTopSellersForDays(
+                period.startOf(now).toLocalDate(), now.toLocalDate(), PageRequest.of(0, limit));
+
+        Map<Long, BigDecimal> totals = new LinkedHashMap<>();
+        merge(totals, rows);
+        return totals;
+    }
+
+    // Неполные крайние дни считаются по исходным строкам, а в архиве строки хранятся только целыми месяцами
+    private void checkEdgesNotArchived(PeriodSplit split) {
+        if (!split.hasPartialDays()) {
+            return;
+        }
+        LocalDateTime archivedUntil = archiveChunkRepository.findArchivedUntil();
+        if (archivedUntil != null && split.hasPartialDayBefore(archivedUntil)) {
+            throw ValidationException.forPartialArchivedDay(archivedUntil);
+        }
+    }
+
+    // Продавец без продаж в более коротком периоде получает 0 из CASE и в итоги периода не попадает
+    private static void putIfNotZero(Map<Long, BigDecimal> totals, Long sellerId, BigDecimal amount) {
+        if (amount != null && amount.signum() != 0) {
+            totals.put(sellerId, amount);
+        }
+    }
+
+    private void merge(Map<Long, BigDecimal> totals, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            totals.merge((Long) row[0], (BigDecimal) row[1], BigDecimal::add);
+        }
+    }
+
+    private static void setIncrementValues(PreparedStatement ps, SellerDailyTotal total) throws SQLException {
+        ps.setLong(1, total.getTransactionCount());
+        ps.setBigDecimal(2, total.getTotalAmount());
+        ps.setLong(3, total.getSellerId());
+        ps.setDate(4, Date.valueOf(total.getDay()));
+        ps.setString(5, total.getPaymentType().name());
+    }
+
+    private static void setInsertValues(PreparedStatement ps, SellerDailyTotal total) throws SQLException {
+        ps.setLong(1, total.getSellerId());
+        ps.setDate(2, Date.valueOf(total.getDay()));
+        ps.setString(3, total.getPaymentType().name());
+        ps.setLong(4, total.getTransactionCount());
+        ps.setBigDecimal(5, total.getTotalAmount());
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                result = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                result = false;
+            }
+            postgres = result;
+        }
+        return result;
+    }
+
+    // Разбиение периода [start, end] на целые дни [firstDay, endDay) и неполные края:
+    // [headStart, headEnd) до первого целого дня и [tailStart, tailEnd] после последнего
+    static final class PeriodSplit {
+        final LocalDate firstDay;
+        final LocalDate endDay;
+        final LocalDateTime headStart;
+        final LocalDateTime headEnd;
+        final LocalDateTime tailStart;
+        final LocalDateTime tailEnd;
+
+        private PeriodSplit(LocalDate firstDay, LocalDate endDay,
+                            LocalDateTime headStart, LocalDateTime headEnd,
+                            LocalDateTime tailStart, LocalDateTime tailEnd) {
+            this.firstDay = firstDay;
+            this.endDay = endDay;
+            this.headStart = headStart;
+            this.headEnd = headEnd;
+            this.tailStart = tailStart;
+            this.tailEnd = tailEnd;
+        }
+
+        static PeriodSplit of(LocalDateTime startDate, LocalDateTime endDate) {
+            LocalDate firstDay = startDate.toLocalDate().atStartOfDay().equals(startDate)
+                    ? startDate.toLocalDate()
+                    : startDate.toLocalDate().plusDays(1);
+            LocalDate endDay = endDate.toLocalDate();
+
+            if (!firstDay.isBefore(endDay)) {
+                // Целых дней нет - весь период читается из исходных строк
+                return new PeriodSplit(null, null, startDate, startDate, startDate, endDate);
+            }
+            return new PeriodSplit(firstDay, endDay,
+                    startDate, firstDay.atStartOfDay(),
+                    endDay.atStartOfDay(), endDate);
+        }
+
+        boolean hasWholeDays() {
+            return firstDay != null;
+        }
+
+        // Хвост из одного момента (конец периода в полночь) неполным днем не считается
+        boolean hasPartialDays() {
+            return headStart.isBefore(headEnd) || tailStart.isBefore(tailEnd);
+        }
+
+        boolean hasPartialDayBefore(LocalDateTime date) {
+            return (headStart.isBefore(headEnd) && headStart.isBefore(date))
+                    || (tailStart.isBefore(tailEnd) && tailStart.isBefore(date));
+        }
+    }
+}
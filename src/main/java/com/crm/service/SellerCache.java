@@ -0,0 +1,121 @@
+package com.crm.service;
+
+import com.crm.entity.Seller;
+import com.crm.repository.SellerRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш справочника продавцов: id -> имя, в том числе отрицательный результат (продавца нет).
+ *
+ * Проверка существования продавца и его имя нужны почти каждому запросу по транзакциям и аналитике,
+ * поэтому повторные обращения к таблице sellers обслуживаются из памяти. Размер кэша ограничен,
+ * записи устаревают по времени, а SellerService сбрасывает запись при создании, изменении и удалении.
+ *
+ * Загрузка всегда читает основную базу: в транзакции только для чтения (ее обслуживает реплика)
+ * она выполняется в отдельной транзакции на запись. Иначе только что созданный продавец, которого
+ * реплика еще не получила, попал бы в кэш как отсутствующий до истечения записи.
+ */
+@Component
+public class SellerCache {
+
+    private final SellerRepository sellerRepository;
+    private final TransactionTemplate primaryTransaction;
+    private final TransactionTemplate newPrimaryTransaction;
+    private final Cache<Long, Optional<String>> names;
+
+    @Autowired
+    public SellerCache(SellerRepository sellerRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${crm.seller-cache.maximum-size:10000}") long maximumSize,
+                       @Value("${crm.seller-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.sellerRepository = sellerRepository;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.newPrimaryTransaction = new TransactionTemplate(transactionManager);
+        this.newPrimaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.names = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public boolean exists(Long sellerId) {
+        return lookup(sellerId).isPresent();
+    }
+
+    public Optional<String> getName(Long sellerId) {
+        return lookup(sellerId);
+    }
+
+    // Имена существующих продавцов; отсутствующие в кэше загружаются одним запросом
+    public Map<Long, String> getNames(Collection<Long> sellerIds) {
+        Map<Long, Optional<String>> found = names.getAll(sellerIds, this::loadAll);
+        return found.entrySet().stream()
+                .filter(entry -> entry.getValue().isPresent())
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+    }
+
+    public void invalidate(Long sellerId) {
+        if (sellerId != null) {
+            names.invalidate(sellerId);
+        }
+    }
+
+    public void invalidateAll() {
+        names.invalidateAll();
+    }
+
+    // Счетчики попаданий и промахов
+    public CacheStats getStats() {
+        return names.stats();
+    }
+
+    private Optional<String> lookup(Long sellerId) {
+        if (sellerId == null) {
+            return Optional.empty();
+        }
+        return names.get(sellerId, id -> onPrimary(() -> sellerRepository.findById(id).map(Seller::getName)));
+    }
+
+    private Map<Long, Optional<String>> loadAll(Iterable<? extends Long> sellerIds) {
+        List<Long> ids = new ArrayList<>();
+        sellerIds.forEach(ids::add);
+        Map<Long, Seller> sellers = onPrimary(() -> sellerRepository.findAllById(ids)).stream()
+                .collect(Collectors.toMap(Seller::getId, Function.identity()));
+
+        Map<Long, Optional<String>> loaded = new HashMap<>();
+        for (Long sellerId : ids) {
+            Seller seller = sellers.get(sellerId);
+            loaded.put(sellerId, seller == null ? Optional.empty() : Optional.ofNullable(seller.getName()));
+        }
+        return loaded;
+    }
+
+    // Текущая транзакция на запись уже идет в основную базу; из транзакции только для чтения выходим в новую
+    private <T> T onPrimary(Supplier<T> loader) {
+        TransactionTemplate template = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? newPrimaryTransaction
+                : primaryTransaction;
+        return template.execute(status -> loader.get());
+    }
+}
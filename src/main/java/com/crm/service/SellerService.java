@@ -3,16 +3,23 @@ package com.crm.service;
 import com.crm.dto.SellerDto;
 import com.crm.dto.AnalyticsDto;
 import com.crm.entity.Seller;
+import com.crm.repository.ArchivedSellerTotalRepository;
 import com.crm.repository.SellerRepository;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.exception.ValidationException;
 import com.crm.exception.DuplicateResourceException;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -22,6 +29,22 @@ public class SellerService {
     @Autowired
     private SellerRepository sellerRepository;
 
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    @Autowired
+    private ColumnarTransactionStore columnarStore;
+
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
+    @Autowired
+    private ArchivedSellerTotalRepository archivedTotalRepository;
+
+    @Transactional(readOnly = true)
     public List<SellerDto> getAllSellers() {
         try {
             return sellerRepository.findAll().stream()
@@ -57,7 +80,10 @@ public class SellerService {
         seller.setName(normalizedName);
         seller.setContactInfo(sellerDto.getContactInfo());
 
-        Seller savedSeller = sellerRepository.save(seller);
+        Seller savedSeller = saveUnique(seller);
+        // Сбрасываем возможный отрицательный результат для нового id
+        sellerCache.invalidate(savedSeller.getId());
+        analyticsResultCache.invalidate();
         return convertToDto(savedSeller);
     }
 
@@ -80,7 +106,9 @@ public class SellerService {
 
                     existingSeller.setName(normalizedName);
                     existingSeller.setContactInfo(sellerDto.getContactInfo());
-                    Seller updatedSeller = sellerRepository.save(existingSeller);
+                    Seller updatedSeller = saveUnique(existingSeller);
+                    sellerCache.invalidate(id);
+                    analyticsResultCache.invalidate();
                     return convertToDto(updatedSeller);
                 });
     }
@@ -90,27 +118,63 @@ public class SellerService {
         Seller seller = sellerRepository.findById(id)
                 .orElseThrow(() -> ResourceNotFoundException.forSeller(id));
 
-        // Проверяем есть ли связанные транзакции
-        if (!seller.getTransactions().isEmpty()) {
+        // Проверяем есть ли связанные транзакции, в том числе перенесенные в архив
+        if (!seller.getTransactions().isEmpty() || archivedTotalRepository.existsBySellerId(id)) {
             // ИСПРАВЛЕНО: убрана лишняя точка с запятой и использован правильный метод
             throw ValidationException.forSellerWithTransactions();
         }
 
         sellerRepository.delete(seller);
+        sellerCache.invalidate(id);
+        analyticsResultCache.invalidate();
         return true;
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public List<AnalyticsDto.SellerWithTotal> getSellersWithTotalLessThan(LocalDateTime startDate,
                                                                           LocalDateTime endDate,
                                                                           BigDecimal minAmount) {
-        List<Object[]> results = sellerRepository.findSellersWithTotalLessThan(startDate, endDate, minAmount);
-        return results.stream()
-                .map(result -> new AnalyticsDto.SellerWithTotal(
-                        (Long) result[0],
-                        (String) result[1],
-                        (BigDecimal) result[2]
-                ))
+        // Период считается целыми днями, с начала дня startDate до конца дня endDate: опросы дашбордов
+        // со скользящей границей в течение дня получают одну запись кэша до следующего изменения данных
+        LocalDate firstDay = startDate.toLocalDate();
+        LocalDate lastDay = endDate.toLocalDate();
+        return analyticsResultCache.get(AnalyticsResultCache.lowPerformanceKey(startDate, endDate, minAmount),
+                () -> findSellersWithTotalLessThan(firstDay, lastDay, minAmount));
+    }
+
+    private List<AnalyticsDto.SellerWithTotal> findSellersWithTotalLessThan(LocalDate firstDay,
+                                                                            LocalDate lastDay,
+                                                                            BigDecimal minAmount) {
+        // Суммы считаются по колоночному хранилищу, а без него - только по дневным итогам
+        LocalDateTime start = firstDay.atStartOfDay();
+        Map<Long, BigDecimal> totals = columnarStore.isReadyFor(start)
+                ? columnarStore.getTotalsBySeller(start, lastDay.plusDays(1).atStartOfDay().minusNanos(1))
+                : salesRollupService.getTotalsBySellerForDays(firstDay, lastDay);
+        List<Long> sellerIds = totals.entrySet().stream()
+                .filter(entry -> entry.getValue().compareTo(minAmount) < 0)
+                .map(Map.Entry::getKey)
+                .sorted()
                 .collect(Collectors.toList());
+
+        Map<Long, String> names = sellerCache.getNames(sellerIds);
+
+        return sellerIds.stream()
+                .map(sellerId -> new AnalyticsDto.SellerWithTotal(
+                        sellerId,
+                        names.get(sellerId),
+                        totals.get(sellerId)
+                ))
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+    }
+
+    // Параллельное создание с тем же именем проходит проверку выше; его останавливает уникальный индекс uk_sellers_name
+    private Seller saveUnique(Seller seller) {
+        try {
+            return sellerRepository.save(seller);
+        } catch (DataIntegrityViolationException e) {
+            throw DuplicateResourceException.forSeller(seller.getName());
+        }
     }
 
     private SellerDto convertToDto(Seller seller) {
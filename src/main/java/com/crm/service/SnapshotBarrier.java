@@ -0,0 +1,102 @@
+package com.crm.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Согласование загрузки структур в памяти (рейтинг продавцов, колоночное хранилище) с пишущими транзакциями.
+ *
+ * Изменения структур, сделанные в пишущей транзакции, применяются в afterCommit, а сама транзакция держит
+ * барьер с beforeCommit до afterCompletion. Загрузка открывает транзакцию REPEATABLE READ и берет ее снимок
+ * под барьером: транзакция, зафиксированная раньше, видна в снимке и уже применила изменения к прежнему
+ * состоянию, а зафиксированная позже в снимок не попадает и применит их к новому. Так каждая транзакция
+ * учитывается ровно один раз, независимо от того, сколько прошло между датой транзакции и фиксацией.
+ * Барьер закрыт только на время первого запроса загрузки, сама загрузка идет без него.
+ */
+@Component
+public class SnapshotBarrier {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TransactionTemplate snapshotTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SnapshotBarrier(PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate) {
+        // Не readOnly: снимок читается из основной базы, на реплике не хватило бы последних транзакций
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Выполняет action после фиксации текущей транзакции, а без транзакции - сразу
+    public void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        PendingActions pending = (PendingActions) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingActions();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.actions.add(action);
+    }
+
+    /**
+     * Загрузка по снимку базы: install вызывается под барьером сразу после того, как снимок взят, и должен
+     * подготовить новое состояние, в которое afterCommit будет применять изменения следующих транзакций;
+     * load читает снимок уже без барьера.
+     */
+    public <T> T load(Runnable install, Supplier<T> load) {
+        return snapshotTemplate.execute(status -> {
+            lock.writeLock().lock();
+            try {
+                // В PostgreSQL снимок REPEATABLE READ берется первым запросом транзакции
+                jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                install.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return load.get();
+        });
+    }
+
+    private final class PendingActions implements TransactionSynchronization {
+
+        private final List<Runnable> actions = new ArrayList<>();
+        private boolean locked;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            lock.readLock().lock();
+            locked = true;
+        }
+
+        @Override
+        public void afterCommit() {
+            actions.forEach(Runnable::run);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(SnapshotBarrier.this);
+            if (locked) {
+                locked = false;
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
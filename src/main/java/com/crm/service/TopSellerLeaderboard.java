@@ -0,0 +1,213 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.util.MoneyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * Рейтинг продавцов за текущие DAY/MONTH/QUARTER/YEAR.
+ *
+ * Накопленные суммы по продавцам хранятся в памяти и пополняются при создании транзакций, поэтому
+ * поиск лидера не требует GROUP BY по всему периоду. При старте рейтинг восстанавливается из базы,
+ * а при переходе через границу периода корзина периода начинается заново.
+ *
+ * Загрузка согласована с пишущими транзакциями через SnapshotBarrier: record() применяется после
+ * фиксации, и транзакция, зафиксированная до снимка загрузки, попадает только в запрос загрузки,
+ * а зафиксированная после - только в record().
+ */
+@Component
+public class TopSellerLeaderboard {
+
+    private final SalesRollupService salesRollupService;
+    private final SellerCache sellerCache;
+    private final SnapshotBarrier snapshotBarrier;
+    private final Clock clock;
+
+    private final Map<AnalyticsPeriod, Bucket> buckets = new EnumMap<>(AnalyticsPeriod.class);
+    // До первой загрузки record() не нужен: такие транзакции уже в базе и войдут в запрос загрузки
+    private volatile boolean recording;
+    private volatile boolean ready;
+
+    @Autowired
+    public TopSellerLeaderboard(SalesRollupService salesRollupService,
+                                SellerCache sellerCache,
+                                SnapshotBarrier snapshotBarrier) {
+        this(salesRollupService, sellerCache, snapshotBarrier, Clock.systemDefaultZone());
+    }
+
+    TopSellerLeaderboard(SalesRollupService salesRollupService,
+                         SellerCache sellerCache,
+                         SnapshotBarrier snapshotBarrier,
+                         Clock clock) {
+        this.salesRollupService = salesRollupService;
+        this.sellerCache = sellerCache;
+        this.snapshotBarrier = snapshotBarrier;
+        this.clock = clock;
+    }
+
+    // Выполняется после заполнения дневных итогов (SalesRollupService.rebuildIfEmpty).
+    // Пока загрузка не закончена, рейтинг не готов, и лидер считается по базе
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        ready = false;
+        Map<AnalyticsPeriod, Bucket> loaded = new EnumMap<>(AnalyticsPeriod.class);
+        LocalDateTime[] until = new LocalDateTime[1];
+        Map<AnalyticsPeriod, Map<Long, BigDecimal>> totals = snapshotBarrier.load(() -> {
+            // Транзакции, зафиксированные после снимка, record() добавит уже в новые корзины
+            until[0] = LocalDateTime.now(clock);
+            for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+                loaded.put(period, new Bucket(period.startOf(until[0])));
+            }
+            synchronized (buckets) {
+                buckets.putAll(loaded);
+            }
+            recording = true;
+        }, () -> salesRollupService.getTotalsBySellerForCurrentPeriods(until[0]));
+
+        loaded.forEach((period, bucket) -> totals.get(period).forEach(bucket::add));
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Вызывается внутри пишущей транзакции: сумма попадет в рейтинг после ее фиксации
+    public void record(Long sellerId, BigDecimal amount, LocalDateTime transactionDate) {
+        if (sellerId == null || amount == null || transactionDate == null) {
+            return;
+        }
+
+        snapshotBarrier.afterCommit(() -> apply(sellerId, amount, transactionDate));
+    }
+
+    private void apply(Long sellerId, BigDecimal amount, LocalDateTime transactionDate) {
+        if (!recording) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+            Bucket bucket = currentBucket(period, now);
+            if (bucket.accepts(transactionDate)) {
+                bucket.add(sellerId, amount);
+            }
+        }
+    }
+
+    public Optional<AnalyticsDto.TopSeller> getTopSeller(AnalyticsPeriod period) {
+        Optional<Entry> top = currentBucket(period, LocalDateTime.now(clock)).top();
+        if (!top.isPresent()) {
+            return Optional.empty();
+        }
+
+        Entry entry = top.get();
+        String sellerName = sellerCache.getName(entry.sellerId).orElse(null);
+        return Optional.of(new AnalyticsDto.TopSeller(entry.sellerId, sellerName,
+                MoneyUtils.toAmount(entry.totalCents), period.name()));
+    }
+
+    // Первые limit продавцов рейтинга: обход упорядоченного множества останавливается на limit записях
+    public List<AnalyticsDto.TopSeller> getTopSellers(AnalyticsPeriod period, int limit) {
+        List<Entry> top = currentBucket(period, LocalDateTime.now(clock)).top(limit);
+        Map<Long, String> names = sellerCache.getNames(top.stream()
+                .map(entry -> entry.sellerId)
+                .collect(Collectors.toList()));
+
+        return top.stream()
+                .map(entry -> new AnalyticsDto.TopSeller(entry.sellerId, names.get(entry.sellerId),
+                        MoneyUtils.toAmount(entry.totalCents), period.name()))
+                .collect(Collectors.toList());
+    }
+
+    // Смена периода: если текущий момент перешел границу, корзина начинается заново
+    private Bucket currentBucket(AnalyticsPeriod period, LocalDateTime now) {
+        LocalDateTime periodStart = period.startOf(now);
+        synchronized (buckets) {
+            Bucket bucket = buckets.get(period);
+            if (bucket == null || bucket.start.isBefore(periodStart)) {
+                bucket = new Bucket(periodStart);
+                buckets.put(period, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    // Сумма хранится в копейках: сравнение и сложение без BigDecimal
+    private static final class Entry {
+        private static final Comparator<Entry> RANKING = Comparator
+                .comparingLong((Entry entry) -> entry.totalCents).reversed()
+                .thenComparing(entry -> entry.sellerId);
+
+        private final Long sellerId;
+        private final long totalCents;
+
+        private Entry(Long sellerId, long totalCents) {
+            this.sellerId = sellerId;
+            this.totalCents = totalCents;
+        }
+    }
+
+    private static final class Bucket {
+        private final LocalDateTime start;
+        private final ConcurrentHashMap<Long, Entry> totals = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(Entry.RANKING);
+
+        private Bucket(LocalDateTime start) {
+            this.start = start;
+        }
+
+        private boolean accepts(LocalDateTime transactionDate) {
+            return !transactionDate.isBefore(start);
+        }
+
+        // Новая запись добавляется раньше удаления старой: суммы только растут,
+        // поэтому читатель без блокировки всегда видит корректного лидера
+        private synchronized void add(Long sellerId, BigDecimal amount) {
+            long cents = MoneyUtils.toCents(amount);
+            Entry previous = totals.get(sellerId);
+            Entry updated = new Entry(sellerId, previous == null ? cents : MoneyUtils.add(previous.totalCents, cents));
+            if (previous != null && Entry.RANKING.compare(previous, updated) == 0) {
+                return;
+            }
+            totals.put(sellerId, updated);
+            ranking.add(updated);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+        }
+
+        private Optional<Entry> top() {
+            Iterator<Entry> iterator = ranking.iterator();
+            return iterator.hasNext() ? Optional.of(iterator.next()) : Optional.empty();
+        }
+
+        private List<Entry> top(int limit) {
+            List<Entry> top = new ArrayList<>(limit);
+            Iterator<Entry> iterator = ranking.iterator();
+            while (top.size() < limit && iterator.hasNext()) {
+                top.add(iterator.next());
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.crm.service;
+
+import com.crm.entity.PaymentType;
+import com.crm.repository.ArchivedSellerTotalRepository;
+import com.crm.repository.TransactionArchiveChunkRepository;
+import com.crm.repository.TransactionRepository;
+import com.crm.util.MoneyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Перенос старых транзакций из оперативной таблицы в архив (crm.archive.enabled).
+ *
+ * Транзакции раньше начала месяца, отстоящего на keep-months от текущего, переносятся по месяцам:
+ * строки месяца записываются порциями в transaction_archive_chunks (CSV, сжатый gzip), их суммы и
+ * количества добавляются в transaction_archive_totals, после чего строки удаляются из transactions.
+ * Месяц переносится одной транзакцией, поэтому читатель видит его либо в оперативной таблице, либо
+ * в архиве. Если за время переноса в месяце появились новые строки, число удаленных строк не совпадет
+ * с записанными, и перенос месяца откатывается до следующего запуска.
+ */
+@Component
+public class TransactionArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionArchiver.class);
+
+    static final String CSV_HEADER = "id,seller_id,amount,payment_type,transaction_date\n";
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchiveChunkRepository archiveChunkRepository;
+    private final ArchivedSellerTotalRepository archivedTotalRepository;
+    private final ColumnarTransactionStore columnarStore;
+    private final TransactionPartitionMaintenance partitionMaintenance;
+    private final AnalyticsResultCache analyticsResultCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int keepMonths;
+    private final int chunkSize;
+    private final long checkIntervalMillis;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public TransactionArchiver(TransactionRepository transactionRepository,
+                               TransactionArchiveChunkRepository archiveChunkRepository,
+                               ArchivedSellerTotalRepository archivedTotalRepository,
+                               ColumnarTransactionStore columnarStore,
+                               TransactionPartitionMaintenance partitionMaintenance,
+                               AnalyticsResultCache analyticsResultCache,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${crm.archive.enabled:false}") boolean enabled,
+                               @Value("${crm.archive.keep-months:24}") int keepMonths,
+                               @Value("${crm.archive.chunk-size:100000}") int chunkSize,
+                               @Value("${crm.archive.check-interval:1d}") Duration checkInterval) {
+        this(transactionRepository, archiveChunkRepository, archivedTotalRepository, columnarStore,
+                partitionMaintenance, analyticsResultCache, transactionManager,
+                enabled, keepMonths, chunkSize, checkInterval, Clock.systemDefaultZone());
+    }
+
+    TransactionArchiver(TransactionRepository transactionRepository,
+                        TransactionArchiveChunkRepository archiveChunkRepository,
+                        ArchivedSellerTotalRepository archivedTotalRepository,
+                        ColumnarTransactionStore columnarStore,
+                        TransactionPartitionMaintenance partitionMaintenance,
+                        AnalyticsResultCache analyticsResultCache,
+                        PlatformTransactionManager transactionManager,
+                        boolean enabled, int keepMonths, int chunkSize, Duration checkInterval, Clock clock) {
+        this.transactionRepository = transactionRepository;
+        this.archiveChunkRepository = archiveChunkRepository;
+        this.archivedTotalRepository = archivedTotalRepository;
+        this.columnarStore = columnarStore;
+        this.partitionMaintenance = partitionMaintenance;
+        this.analyticsResultCache = analyticsResultCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.keepMonths = keepMonths;
+        this.chunkSize = chunkSize;
+        this.checkIntervalMillis = checkInterval.toMillis();
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // После загрузки колоночного хранилища: перенос убирает из него архивные месяцы
+    @Order(3)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::archiveSafely, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Граница архива: начало месяца, отстоящего на keep-months от текущего
+    public LocalDateTime getCutoff() {
+        return YearMonth.now(clock).minusMonths(keepMonths).atDay(1).atStartOfDay();
+    }
+
+    /**
+     * Переносит в архив все транзакции раньше getCutoff() и возвращает число перенесенных строк.
+     * Если перенос уже выполняется, возвращает 0.
+     */
+    public long archive() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+
+        try {
+            LocalDateTime cutoff = getCutoff();
+            LocalDateTime oldest = transactionRepository.findMinTransactionDate();
+            if (oldest == null || !oldest.isBefore(cutoff)) {
+                return 0;
+            }
+
+            long archived = 0;
+            for (YearMonth month = YearMonth.from(oldest); month.atDay(1).atStartOfDay().isBefore(cutoff);
+                 month = month.plusMonths(1)) {
+                int count = archiveMonth(month);
+                if (count == 0) {
+                    continue;
+                }
+                archived += count;
+
+                // Хранилище в памяти больше не должно учитывать месяц: его вклад теперь в итогах архива
+                columnarStore.removeBefore(month.plusMonths(1).atDay(1).atStartOfDay());
+                analyticsResultCache.invalidate();
+                partitionMaintenance.dropEmptyPartition(month);
+                log.info("Транзакции за {} перенесены в архив: {}", month, count);
+            }
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void archiveSafely() {
+        try {
+            archive();
+        } catch (Exception e) {
+            log.error("Ошибка при архивации транзакций: {}", e.getMessage());
+        }
+    }
+
+    private int archiveMonth(YearMonth month) {
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        Integer archived = transactionTemplate.execute(status -> {
+            MonthArchive archive = new MonthArchive(start, end);
+            try (Stream<Object[]> rows = transactionRepository.streamArchiveRows(start, end)) {
+                rows.forEach(archive::add);
+            }
+            archive.flush();
+            if (archive.rowCount == 0) {
+                return 0;
+            }
+
+            int deleted = transactionRepository.deleteByPeriod(start, end);
+            if (deleted != archive.rowCount) {
+                throw new IllegalStateException("Транзакции за " + month + " изменились во время архивации: записано "
+                        + archive.rowCount + ", удалено " + deleted);
+            }
+            archive.totals.forEach((paymentType, bySeller) -> bySeller.forEach((sellerId, total) ->
+                    addToTotals(sellerId, paymentType, total[0], MoneyUtils.toAmount(total[1]))));
+            return deleted;
+        });
+        return archived != null ? archived : 0;
+    }
+
+    private void addToTotals(Long sellerId, PaymentType paymentType, long count, BigDecimal amount) {
+        if (partitionMaintenance.isPostgres()) {
+            archivedTotalRepository.upsert(sellerId, paymentType.name(), count, amount);
+            return;
+        }
+
+        if (archivedTotalRepository.increment(sellerId, paymentType, count, amount) == 0) {
+            archivedTotalRepository.insert(sellerId, paymentType.name(), count, amount);
+        }
+    }
+
+    // Строки месяца: порции сжатого CSV и итоги по типу оплаты и продавцу (количество, сумма в копейках)
+    private final class MonthArchive {
+
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Map<PaymentType, Map<Long, long[]>> totals = new EnumMap<>(PaymentType.class);
+        private int rowCount;
+
+        private ByteArrayOutputStream buffer;
+        private Writer writer;
+        private int chunkRows;
+        private long chunkCents;
+
+        private MonthArchive(LocalDateTime start, LocalDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private void add(Object[] row) {
+            Long sellerId = (Long) row[1];
+            BigDecimal amount = (BigDecimal) row[2];
+            PaymentType paymentType = (PaymentType) row[3];
+            long cents = MoneyUtils.toCents(amount);
+
+            try {
+                if (writer == null) {
+                    buffer = new ByteArrayOutputStream();
+                    writer = new OutputStreamWriter(new GZIPOutputStream(buffer, 64 * 1024), StandardCharsets.UTF_8);
+                    writer.write(CSV_HEADER);
+                }
+                writer.write(row[0] + "," + sellerId + "," + amount.toPlainString() + ","
+                        + paymentType.name() + "," + row[4] + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            long[] total = totals.computeIfAbsent(paymentType, type -> new HashMap<>())
+                    .computeIfAbsent(sellerId, id -> new long[2]);
+            total[0]++;
+            total[1] = MoneyUtils.add(total[1], cents);
+            chunkCents = MoneyUtils.add(chunkCents, cents);
+            rowCount++;
+
+            if (++chunkRows == chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            archiveChunkRepository.insert(start, end, chunkRows, MoneyUtils.toAmount(chunkCents),
+                    LocalDateTime.now(clock), buffer.toByteArray());
+
+            writer = null;
+            buffer = null;
+            chunkRows = 0;
+            chunkCents = 0;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.crm.service;
+
+import com.crm.dto.TransactionDto;
+import com.crm.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации: позиция последней выданной транзакции в порядке (transaction_date, id).
+ * Для клиента это непрозрачная строка (base64url от "дата|id").
+ */
+final class TransactionCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime transactionDate;
+    private final Long id;
+
+    TransactionCursor(LocalDateTime transactionDate, Long id) {
+        this.transactionDate = transactionDate;
+        this.id = id;
+    }
+
+    static TransactionCursor of(TransactionDto transaction) {
+        return new TransactionCursor(transaction.getTransactionDate(), transaction.getId());
+    }
+
+    static TransactionCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw ValidationException.forInvalidCursor();
+            }
+            return new TransactionCursor(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw ValidationException.forInvalidCursor();
+        }
+    }
+
+    String encode() {
+        String value = transactionDate + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    LocalDateTime getTransactionDate() {
+        return transactionDate;
+    }
+
+    Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,340 @@
+package com.crm.service;
+
+import com.crm.dto.IngestionStatsDto;
+import com.crm.dto.TransactionDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Transaction;
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.exception.ServiceUnavailableException;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Отложенная запись транзакций (write-behind) для POST /api/transactions/async.
+ *
+ * Запрос только получает идентификатор из пула последовательности transactions_seq и кладет транзакцию
+ * в ограниченную очередь. Один поток записи забирает из очереди группы до batch-size строк, ожидая
+ * не дольше max-delay после первой строки, и фиксирует каждую группу одной транзакцией с пакетным
+ * INSERT. Если очередь заполнена, запрос отклоняется с 429, а не накапливается в памяти.
+ * После начала остановки новые транзакции отклоняются с 503, а уже принятые дописываются.
+ */
+@Component
+public class TransactionIngestionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionIngestionQueue.class);
+
+    private static final String INSERT_SQL = "INSERT INTO transactions (id, seller_id, amount, payment_type, transaction_date) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SalesRollupService salesRollupService;
+    private final TopSellerLeaderboard topSellerLeaderboard;
+    private final ColumnarTransactionStore columnarStore;
+    private final AnalyticsResultCache analyticsResultCache;
+    private final LongSupplier idGenerator;
+
+    private final BlockingQueue<TransactionDto> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long maxDelayNanos;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong groupCommits = new AtomicLong();
+    private final AtomicLong commitNanosTotal = new AtomicLong();
+    private volatile long lastCommitNanos;
+    private volatile long maxCommitNanos;
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private Thread writer;
+
+    @Autowired
+    public TransactionIngestionQueue(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     SalesRollupService salesRollupService,
+                                     TopSellerLeaderboard topSellerLeaderboard,
+                                     ColumnarTransactionStore columnarStore,
+                                     AnalyticsResultCache analyticsResultCache,
+                                     EntityManagerFactory entityManagerFactory,
+                                     @Value("${crm.ingestion.queue-capacity:10000}") int capacity,
+                                     @Value("${crm.ingestion.batch-size:500}") int batchSize,
+                                     @Value("${crm.ingestion.max-delay:20ms}") Duration maxDelay) {
+        this(jdbcTemplate, transactionManager, salesRollupService, topSellerLeaderboard, columnarStore, analyticsResultCache,
+                sequenceIdGenerator(entityManagerFactory), capacity, batchSize, maxDelay);
+    }
+
+    TransactionIngestionQueue(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              SalesRollupService salesRollupService,
+                              TopSellerLeaderboard topSellerLeaderboard,
+                              ColumnarTransactionStore columnarStore,
+                              AnalyticsResultCache analyticsResultCache,
+                              LongSupplier idGenerator,
+                              int capacity,
+                              int batchSize,
+                              Duration maxDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.salesRollupService = salesRollupService;
+        this.topSellerLeaderboard = topSellerLeaderboard;
+        this.columnarStore = columnarStore;
+        this.analyticsResultCache = analyticsResultCache;
+        this.idGenerator = idGenerator;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "transaction-ingestion-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Принятые транзакции дописываются в базу до закрытия пула соединений
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            if (writer.isAlive()) {
+                writer.interrupt();
+                writer.join(TimeUnit.SECONDS.toMillis(1));
+            }
+        }
+
+        // Все, что не успели записать, теряется: фиксируем это в журнале и в статистике
+        List<TransactionDto> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            dropped.addAndGet(left.size());
+            log.error("Поток записи не успел записать {} принятых транзакций до остановки, первая: {}",
+                    left.size(), left.get(0).getId());
+        }
+    }
+
+    /**
+     * Принимает проверенную транзакцию в очередь. Возвращает транзакцию с идентификатором и датой,
+     * под которыми она будет записана; до фиксации группы она не видна в запросах на чтение.
+     */
+    public TransactionDto submit(Long sellerId, String sellerName, BigDecimal amount, PaymentType paymentType) {
+        if (stopping) {
+            rejected.incrementAndGet();
+            throw ServiceUnavailableException.forIngestionShutdown();
+        }
+
+        TransactionDto transaction = new TransactionDto(idGenerator.getAsLong(), sellerId, sellerName,
+                amount, paymentType, LocalDateTime.now());
+
+        if (!queue.offer(transaction)) {
+            rejected.incrementAndGet();
+            throw ServiceOverloadedException.forIngestionQueue(capacity);
+        }
+
+        // Остановка могла начаться между проверкой и offer: если поток записи еще не забрал строку,
+        // забираем ее обратно, иначе он запишет ее до выхода
+        if (stopping && queue.remove(transaction)) {
+            rejected.incrementAndGet();
+            throw ServiceUnavailableException.forIngestionShutdown();
+        }
+
+        accepted.incrementAndGet();
+        return transaction;
+    }
+
+    public IngestionStatsDto getStats() {
+        long commits = groupCommits.get();
+        return new IngestionStatsDto(
+                queue.size(),
+                capacity,
+                accepted.get(),
+                rejected.get(),
+                committed.get(),
+                failed.get(),
+                dropped.get(),
+                commits,
+                toMillis(lastCommitNanos),
+                commits == 0 ? 0 : toMillis(commitNanosTotal.get() / commits),
+                toMillis(maxCommitNanos)
+        );
+    }
+
+    public long getGroupCommits() {
+        return groupCommits.get();
+    }
+
+    // Точное суммарное время фиксаций, без округления до миллисекунд как в getStats()
+    public long getCommitNanosTotal() {
+        return commitNanosTotal.get();
+    }
+
+    // Ожидание записи всех принятых транзакций (для тестов)
+    boolean awaitDrained(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (committed.get() + failed.get() + dropped.get() < accepted.get()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<TransactionDto> group = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TransactionDto first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Группа закрывается по размеру или по истечении max-delay с момента первой строки
+                group.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < batchSize) {
+                    if (queue.drainTo(group, batchSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    TransactionDto next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+
+                write(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.addAndGet(group.size());
+                log.error("Поток записи транзакций прерван, не записано {}, в очереди осталось {}",
+                        group.size(), queue.size());
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void write(List<TransactionDto> group) {
+        long started = System.nanoTime();
+        try {
+            insert(group);
+        } catch (RuntimeException e) {
+            // Ошибочная строка (например, продавец удален после приема) не должна отменять всю группу
+            log.warn("Ошибка при записи группы из {} транзакций, запись по одной: {}", group.size(), e.getMessage());
+            for (TransactionDto transaction : group) {
+                try {
+                    insert(Collections.singletonList(transaction));
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    log.error("Ошибка при записи транзакции {}: {}", transaction.getId(), ex.getMessage());
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        groupCommits.incrementAndGet();
+        commitNanosTotal.addAndGet(elapsed);
+        lastCommitNanos = elapsed;
+        maxCommitNanos = Math.max(maxCommitNanos, elapsed);
+    }
+
+    private void insert(List<TransactionDto> group) {
+        // Итоги по продавцу, дню и типу оплаты: одно обновление seller_daily_totals на ключ
+        Map<List<Object>, List<TransactionDto>> totals = new LinkedHashMap<>();
+        for (TransactionDto transaction : group) {
+            List<Object> key = Arrays.asList(transaction.getSellerId(),
+                    transaction.getTransactionDate().toLocalDate(), transaction.getPaymentType());
+            totals.computeIfAbsent(key, k -> new ArrayList<>()).add(transaction);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, group, group.size(), (ps, transaction) -> {
+                ps.setLong(1, transaction.getId());
+                ps.setLong(2, transaction.getSellerId());
+                ps.setBigDecimal(3, transaction.getAmount());
+                ps.setString(4, transaction.getPaymentType());
+                ps.setTimestamp(5, Timestamp.valueOf(transaction.getTransactionDate()));
+            });
+
+            totals.values().forEach(rows -> {
+                TransactionDto last = rows.get(rows.size() - 1);
+                salesRollupService.record(last.getSellerId(), last.getTransactionDate(),
+                        PaymentType.valueOf(last.getPaymentType()), rows.size(), sum(rows));
+                topSellerLeaderboard.record(last.getSellerId(), sum(rows), last.getTransactionDate());
+            });
+            // Рейтинг и колоночное хранилище пополняются после фиксации, в согласии с их загрузкой (SnapshotBarrier)
+            group.forEach(transaction -> columnarStore.append(transaction.getSellerId(),
+                    transaction.getTransactionDate(), transaction.getAmount(),
+                    PaymentType.valueOf(transaction.getPaymentType())));
+        });
+        committed.addAndGet(group.size());
+
+        // Кэш аналитики сбрасывается только после фиксации
+        analyticsResultCache.invalidate();
+    }
+
+    private static BigDecimal sum(List<TransactionDto> rows) {
+        return rows.stream()
+                .map(TransactionDto::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // Тот же генератор, что и у Hibernate: идентификаторы берутся из общего пула без запроса к базе
+    private static LongSupplier sequenceIdGenerator(EntityManagerFactory entityManagerFactory) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        IdentifierGenerator generator = sessionFactory.getMetamodel()
+                .entityPersister(Transaction.class)
+                .getIdentifierGenerator();
+
+        return () -> {
+            try (StatelessSession session = sessionFactory.openStatelessSession()) {
+                return ((Number) generator.generate((SharedSessionContractImplementor) session, null)).longValue();
+            }
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package com.crm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обслуживание помесячных секций таблицы transactions (PostgreSQL, миграция V3).
+ *
+ * При запуске и затем с интервалом check-interval создает секции текущего месяца и months-ahead
+ * следующих, чтобы новые транзакции не попадали в секцию по умолчанию. Если строки месяца уже попали
+ * в transactions_default (например, обслуживание не запускалось), CREATE PARTITION для него невозможен:
+ * такие строки в одной транзакции переносятся в новую таблицу, которая затем присоединяется секцией.
+ * Пустые секции месяцев, перенесенных в архив, удаляет TransactionArchiver через dropEmptyPartition:
+ * DETACH меняет только метаданные и не перезаписывает таблицу. Для H2 обслуживание не выполняется.
+ */
+@Component
+public class TransactionPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitionMaintenance.class);
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final long checkIntervalMillis;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    private Boolean postgres;
+
+    @Autowired
+    public TransactionPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${crm.partitions.months-ahead:3}") int monthsAhead,
+                                           @Value("${crm.partitions.check-interval:1d}") Duration checkInterval) {
+        this(jdbcTemplate, transactionManager, monthsAhead, checkInterval, Clock.systemDefaultZone());
+    }
+
+    TransactionPartitionMaintenance(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    int monthsAhead, Duration checkInterval, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.checkIntervalMillis = checkInterval.toMillis();
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (isPostgres()) {
+            scheduler.scheduleWithFixedDelay(this::createFuturePartitions, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Создает недостающие секции с текущего месяца по месяц через months-ahead и возвращает их имена.
+     * Строки месяца, уже лежащие в секции по умолчанию, переносятся в созданную секцию. Ошибка по одному
+     * месяцу записывается в журнал и не мешает остальным; месяц будет повторен при следующей проверке.
+     */
+    public List<String> createFuturePartitions() {
+        List<String> created = new ArrayList<>();
+        if (!isPostgres()) {
+            return created;
+        }
+
+        YearMonth current = YearMonth.now(clock);
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            try {
+                if (partitionExists(name)) {
+                    continue;
+                }
+                if (hasDefaultRows(month)) {
+                    int moved = moveDefaultRows(month);
+                    log.warn("Строки месяца {} попали в секцию по умолчанию: {} строк перенесено в секцию {}",
+                            month, moved, name);
+                } else {
+                    jdbcTemplate.execute(String.format(
+                            "CREATE TABLE IF NOT EXISTS %s PARTITION OF transactions FOR VALUES FROM ('%s') TO ('%s')",
+                            name, month.atDay(1), month.plusMonths(1).atDay(1)));
+                }
+                created.add(name);
+                log.info("Создана секция {} таблицы transactions", name);
+            } catch (Exception e) {
+                log.error("Ошибка при создании секции {}: {}", name, e.getMessage());
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Отсоединяет секцию месяца от transactions. Таблица секции остается в базе с теми же строками,
+     * из запросов к transactions они пропадают, поэтому вызывается только для пустых секций.
+     * Секции текущего и будущих месяцев отсоединять нельзя.
+     */
+    void detachPartition(YearMonth month) {
+        if (!month.isBefore(YearMonth.now(clock))) {
+            throw new IllegalArgumentException("Отсоединять можно только секции прошедших месяцев");
+        }
+        if (!isPostgres()) {
+            throw new IllegalStateException("Секционирование transactions поддерживается только в PostgreSQL");
+        }
+
+        String name = partitionName(month);
+        try {
+            jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + name);
+            log.info("Секция {} отсоединена от таблицы transactions", name);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при отсоединении секции " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет секцию прошедшего месяца, если в ней не осталось строк (после переноса месяца в архив):
+     * DETACH и DROP освобождают место сразу, без VACUUM после массового DELETE.
+     */
+    public boolean dropEmptyPartition(YearMonth month) {
+        if (!isPostgres() || !month.isBefore(YearMonth.now(clock))) {
+            return false;
+        }
+
+        String name = partitionName(month);
+        if (!partitionExists(name)) {
+            return false;
+        }
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM " + name + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(empty)) {
+            return false;
+        }
+
+        detachPartition(month);
+        jdbcTemplate.execute("DROP TABLE " + name);
+        log.info("Пустая секция {} удалена", name);
+        return true;
+    }
+
+    static String partitionName(YearMonth month) {
+        return "transactions_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private boolean hasDefaultRows(YearMonth month) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM transactions_default WHERE transaction_date >= ? AND transaction_date < ?)",
+                Boolean.class, monthStart(month), monthStart(month.plusMonths(1)));
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Переносит строки месяца из секции по умолчанию в новую таблицу и присоединяет ее секцией.
+     * Все в одной транзакции: при ошибке строки остаются в секции по умолчанию, а ATTACH проверяет,
+     * что в ней не осталось строк месяца. Индексы секционированной таблицы ATTACH создает сам.
+     */
+    private int moveDefaultRows(YearMonth month) {
+        String name = partitionName(month);
+        Integer moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int rows = jdbcTemplate.update("WITH moved AS (DELETE FROM transactions_default "
+                            + "WHERE transaction_date >= ? AND transaction_date < ? "
+                            + "RETURNING id, seller_id, amount, payment_type, transaction_date) "
+                            + "INSERT INTO " + name + " (id, seller_id, amount, payment_type, transaction_date) "
+                            + "SELECT id, seller_id, amount, payment_type, transaction_date FROM moved",
+                    monthStart(month), monthStart(month.plusMonths(1)));
+            jdbcTemplate.execute(String.format(
+                    "ALTER TABLE transactions ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')",
+                    name, month.atDay(1), month.plusMonths(1).atDay(1)));
+            return rows;
+        });
+        return moved == null ? 0 : moved;
+    }
+
+    private static Timestamp monthStart(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    private boolean partitionExists(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = 'transactions'::regclass AND c.relname = ?",
+                Integer.class, name);
+        return count != null && count > 0;
+    }
+
+    boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            try {
+                result = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                        "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())));
+            } catch (Exception e) {
+                result = false;
+            }
+            postgres = result;
+        }
+        return result;
+    }
+}
@@ -1,93 +1,280 @@
 package com.crm.service;
-import java.util.Arrays;
 import com.crm.dto.TransactionDto;
 import com.crm.dto.AnalyticsDto;
+import com.crm.dto.IngestionStatsDto;
+import com.crm.dto.ReportProgressDto;
+import com.crm.dto.TransactionBatchResultDto;
+import com.crm.dto.TransactionPageDto;
 import com.crm.entity.Transaction;
-import com.crm.entity.Seller;
 import com.crm.entity.PaymentType;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.exception.ValidationException;
 import com.crm.exception.AnalyticsException;
 import com.crm.repository.TransactionRepository;
 import com.crm.repository.SellerRepository;
+import com.crm.util.TopN;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 1000;
+    public static final int MAX_TOP_SELLERS = 100;
+
+    // Порядок рейтинга: по убыванию суммы, при равенстве - по id продавца
+    private static final Comparator<Map.Entry<Long, BigDecimal>> TOP_SELLER_ORDER =
+            Map.Entry.<Long, BigDecimal>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+
     @Autowired
     private TransactionRepository transactionRepository;
 
     @Autowired
     private SellerRepository sellerRepository;
 
-    public List<TransactionDto> getAllTransactions() {
+    @Autowired
+    private TopSellerLeaderboard topSellerLeaderboard;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    @Autowired
+    private TransactionIngestionQueue transactionIngestionQueue;
+
+    @Autowired
+    private ColumnarTransactionStore columnarStore;
+
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
+    @Autowired
+    private BestPeriodReport bestPeriodReport;
+
+    @Transactional(readOnly = true)
+    public TransactionPageDto getTransactionsPage(int limit, String after) {
+        validatePageSize(limit);
+        TransactionCursor cursor = after == null ? null : TransactionCursor.decode(after);
+
         try {
-            return transactionRepository.findAll().stream()
-                    .map(this::convertToDto)
-                    .collect(Collectors.toList());
+            // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+            PageRequest pageRequest = PageRequest.of(0, limit + 1);
+            List<TransactionDto> rows = cursor == null
+                    ? transactionRepository.findFirstPage(pageRequest)
+                    : transactionRepository.findPageAfter(cursor.getTransactionDate(), cursor.getId(), pageRequest);
+            return toPage(rows, limit);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при получении списка транзакций: " + e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
+    public TransactionPageDto getTransactionsPageBySellerId(Long sellerId, int limit, String after) {
+        if (sellerId == null) {
+            throw ValidationException.forInvalidId();
+        }
+
+        validatePageSize(limit);
+        TransactionCursor cursor = after == null ? null : TransactionCursor.decode(after);
+
+        // Проверяем существование продавца
+        if (!sellerCache.exists(sellerId)) {
+            throw ResourceNotFoundException.forSeller(sellerId);
+        }
+
+        try {
+            PageRequest pageRequest = PageRequest.of(0, limit + 1);
+            List<TransactionDto> rows = cursor == null
+                    ? transactionRepository.findFirstPageBySellerId(sellerId, pageRequest)
+                    : transactionRepository.findPageBySellerIdAfter(sellerId,
+                            cursor.getTransactionDate(), cursor.getId(), pageRequest);
+            return toPage(rows, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении транзакций продавца: " + e.getMessage());
+        }
+    }
+
+    // Строки читаются курсором базы и сразу передаются получателю, список целиком в памяти не собирается
+    @Transactional(readOnly = true)
+    public void streamAllTransactions(Consumer<TransactionDto> consumer) {
+        try (Stream<TransactionDto> rows = transactionRepository.streamAll()) {
+            rows.forEach(consumer);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении списка транзакций: " + e.getMessage());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void streamTransactionsBySellerId(Long sellerId, Consumer<TransactionDto> consumer) {
+        if (sellerId == null) {
+            throw ValidationException.forInvalidId();
+        }
+
+        // Проверяем существование продавца
+        if (!sellerCache.exists(sellerId)) {
+            throw ResourceNotFoundException.forSeller(sellerId);
+        }
+
+        try (Stream<TransactionDto> rows = transactionRepository.streamBySellerId(sellerId)) {
+            rows.forEach(consumer);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении транзакций продавца: " + e.getMessage());
+        }
+    }
+
     public Optional<TransactionDto> getTransactionById(Long id) {
         if (id == null) {
             throw ValidationException.forInvalidId();
         }
 
-        return transactionRepository.findById(id)
-                .map(this::convertToDto);
+        return transactionRepository.findDtoById(id);
     }
 
+    @Transactional
     public TransactionDto createTransaction(TransactionDto transactionDto) {
         // Валидация входных данных
         validateTransactionDto(transactionDto);
 
-        // Поиск продавца
-        Seller seller = sellerRepository.findById(transactionDto.getSellerId())
-                .orElseThrow(() -> ResourceNotFoundException.forSeller(transactionDto.getSellerId()));
+        // Существование продавца и имя берутся из кэша, сущность продавца не загружается
+        Long sellerId = transactionDto.getSellerId();
+        String sellerName = sellerCache.getName(sellerId)
+                .orElseThrow(() -> ResourceNotFoundException.forSeller(sellerId));
 
         try {
             Transaction transaction = new Transaction();
-            transaction.setSeller(seller);
+            transaction.setSeller(sellerRepository.getById(sellerId));
             transaction.setAmount(transactionDto.getAmount());
             transaction.setPaymentType(PaymentType.valueOf(transactionDto.getPaymentType()));
             transaction.setTransactionDate(LocalDateTime.now());
 
             Transaction savedTransaction = transactionRepository.save(transaction);
-            return convertToDto(savedTransaction);
+            salesRollupService.record(sellerId, savedTransaction.getTransactionDate(),
+                    savedTransaction.getPaymentType(), 1, savedTransaction.getAmount());
+            topSellerLeaderboard.record(sellerId, savedTransaction.getAmount(), savedTransaction.getTransactionDate());
+            columnarStore.append(sellerId, savedTransaction.getTransactionDate(),
+                    savedTransaction.getAmount(), savedTransaction.getPaymentType());
+            afterCommit(analyticsResultCache::invalidate);
+            return convertToDto(savedTransaction, sellerName);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при создании транзакции: " + e.getMessage());
         }
     }
 
-    public List<TransactionDto> getTransactionsBySellerId(Long sellerId) {
-        if (sellerId == null) {
-            throw ValidationException.forInvalidId();
+    /**
+     * Прием транзакции с отложенной записью: проверки выполняются сразу, а сама запись происходит
+     * в потоке TransactionIngestionQueue в составе группы. При заполненной очереди - 429.
+     */
+    public TransactionDto enqueueTransaction(TransactionDto transactionDto) {
+        validateTransactionDto(transactionDto);
+
+        Long sellerId = transactionDto.getSellerId();
+        String sellerName = sellerCache.getName(sellerId)
+                .orElseThrow(() -> ResourceNotFoundException.forSeller(sellerId));
+
+        return transactionIngestionQueue.submit(sellerId, sellerName, transactionDto.getAmount(),
+                PaymentType.valueOf(transactionDto.getPaymentType()));
+    }
+
+    public IngestionStatsDto getIngestionStats() {
+        return transactionIngestionQueue.getStats();
+    }
+
+    /**
+     * Пакетное создание транзакций. Некорректные элементы отклоняются по отдельности, остальные
+     * сохраняются в одной транзакции: продавцы загружаются одним запросом, идентификаторы берутся
+     * из пула последовательности, и Hibernate отправляет INSERT пакетами (hibernate.jdbc.batch_size).
+     */
+    @Transactional
+    public TransactionBatchResultDto createTransactions(List<TransactionDto> transactionDtos) {
+        if (transactionDtos == null || transactionDtos.isEmpty() || transactionDtos.size() > MAX_BATCH_SIZE) {
+            throw ValidationException.forInvalidBatchSize(MAX_BATCH_SIZE);
+        }
+
+        TransactionBatchResultDto.Item[] items = new TransactionBatchResultDto.Item[transactionDtos.size()];
+        Set<Long> sellerIds = new HashSet<>();
+        for (int i = 0; i < transactionDtos.size(); i++) {
+            try {
+                validateTransactionDto(transactionDtos.get(i));
+                sellerIds.add(transactionDtos.get(i).getSellerId());
+            } catch (ValidationException e) {
+                items[i] = new TransactionBatchResultDto.Item(i, null, e.getMessage());
+            }
         }
 
-        // Проверяем существование продавца
-        if (!sellerRepository.existsById(sellerId)) {
-            throw ResourceNotFoundException.forSeller(sellerId);
+        // Продавцы, которых нет в кэше, загружаются одним запросом
+        Map<Long, String> sellerNames = sellerCache.getNames(sellerIds);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> indexes = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < transactionDtos.size(); i++) {
+            if (items[i] != null) {
+                continue;
+            }
+
+            TransactionDto transactionDto = transactionDtos.get(i);
+            if (!sellerNames.containsKey(transactionDto.getSellerId())) {
+                items[i] = new TransactionBatchResultDto.Item(i, null,
+                        ResourceNotFoundException.forSeller(transactionDto.getSellerId()).getMessage());
+                continue;
+            }
+
+            Transaction transaction = new Transaction();
+            transaction.setSeller(sellerRepository.getById(transactionDto.getSellerId()));
+            transaction.setAmount(transactionDto.getAmount());
+            transaction.setPaymentType(PaymentType.valueOf(transactionDto.getPaymentType()));
+            transaction.setTransactionDate(now);
+            indexes.add(i);
+            transactions.add(transaction);
         }
 
         try {
-            return transactionRepository.findBySellerId(sellerId).stream()
-                    .map(this::convertToDto)
-                    .collect(Collectors.toList());
+            List<Transaction> savedTransactions = transactionRepository.saveAll(transactions);
+            for (int i = 0; i < savedTransactions.size(); i++) {
+                Transaction savedTransaction = savedTransactions.get(i);
+                items[indexes.get(i)] = new TransactionBatchResultDto.Item(indexes.get(i),
+                        convertToDto(savedTransaction, sellerNames.get(savedTransaction.getSeller().getId())), null);
+            }
+
+            // Итоги обновляются один раз на продавца и тип оплаты, а не на каждую транзакцию
+            Map<Long, Map<PaymentType, List<Transaction>>> groups = savedTransactions.stream()
+                    .collect(Collectors.groupingBy(t -> t.getSeller().getId(),
+                            Collectors.groupingBy(Transaction::getPaymentType)));
+            groups.forEach((sellerId, byPaymentType) -> byPaymentType.forEach((paymentType, group) -> {
+                BigDecimal total = group.stream()
+                        .map(Transaction::getAmount)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                salesRollupService.record(sellerId, now, paymentType, group.size(), total);
+                topSellerLeaderboard.record(sellerId, total, now);
+            }));
+            savedTransactions.forEach(t -> columnarStore.append(t.getSeller().getId(),
+                    t.getTransactionDate(), t.getAmount(), t.getPaymentType()));
+            afterCommit(analyticsResultCache::invalidate);
+
+            return new TransactionBatchResultDto(savedTransactions.size(),
+                    items.length - savedTransactions.size(), Arrays.asList(items));
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка при получении транзакций продавца: " + e.getMessage());
+            throw new RuntimeException("Ошибка при создании транзакций: " + e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
     public List<TransactionDto> getTransactionsBySellerIdAndPeriod(Long sellerId, LocalDateTime startDate, LocalDateTime endDate) {
         if (sellerId == null) {
             throw ValidationException.forInvalidId();
@@ -102,107 +289,184 @@ public class TransactionService {
         }
 
         // Проверяем существование продавца
-        if (!sellerRepository.existsById(sellerId)) {
+        if (!sellerCache.exists(sellerId)) {
             throw ResourceNotFoundException.forSeller(sellerId);
         }
 
         try {
-            return transactionRepository.findBySellerIdAndPeriod(sellerId, startDate, endDate).stream()
-                    .map(this::convertToDto)
-                    .collect(Collectors.toList());
+            return transactionRepository.findDtosBySellerIdAndPeriod(sellerId, startDate, endDate);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при получении транзакций за период: " + e.getMessage());
         }
     }
 
+    @Timed("crm.analytics")
     public Optional<AnalyticsDto.TopSeller> getTopSellerByPeriod(String period) {
-        if (period == null || period.trim().isEmpty()) {
-            throw AnalyticsException.forInvalidPeriod();
-        }
-
         // Валидация периода
-        String upperPeriod = period.toUpperCase();
-        if (!Arrays.asList("DAY", "MONTH", "QUARTER", "YEAR").contains(upperPeriod)) {
-            throw AnalyticsException.forInvalidPeriod();
-        }
+        AnalyticsPeriod analyticsPeriod = AnalyticsPeriod.parse(period);
+
+        // Результат за текущий период общий для всех запросов до следующей записи; в кэше он хранится
+        // без названия периода, поэтому ответ собирается заново с периодом в том виде, как его передали
+        Optional<AnalyticsDto.TopSeller> cached = analyticsResultCache.get(
+                AnalyticsResultCache.topSellerKey(analyticsPeriod, LocalDateTime.now()),
+                () -> findTopSeller(analyticsPeriod));
+
+        return cached.map(topSeller -> new AnalyticsDto.TopSeller(
+                topSeller.getSellerId(),
+                topSeller.getSellerName(),
+                topSeller.getTotalAmount(),
+                period
+        ));
+    }
 
-        LocalDateTime startDate;
-        LocalDateTime endDate = LocalDateTime.now();
+    /**
+     * Первые limit продавцов текущего периода по убыванию суммы. Ни один путь не сортирует всех
+     * продавцов: рейтинг в памяти обходится до limit записей, суммы из колоночного хранилища проходят
+     * через ограниченную кучу, а запрос к дневным итогам возвращает из базы не больше limit строк.
+     */
+    @Timed("crm.analytics")
+    public List<AnalyticsDto.TopSeller> getTopSellersByPeriod(String period, int limit) {
+        AnalyticsPeriod analyticsPeriod = AnalyticsPeriod.parse(period);
+        if (limit < 1 || limit > MAX_TOP_SELLERS) {
+            throw ValidationException.forInvalidTopLimit(MAX_TOP_SELLERS);
+        }
+
+        List<AnalyticsDto.TopSeller> cached = analyticsResultCache.get(
+                AnalyticsResultCache.topSellersKey(analyticsPeriod, LocalDateTime.now(), limit),
+                () -> findTopSellersByPeriod(analyticsPeriod, limit));
+
+        return cached.stream()
+                .map(topSeller -> new AnalyticsDto.TopSeller(
+                        topSeller.getSellerId(),
+                        topSeller.getSellerName(),
+                        topSeller.getTotalAmount(),
+                        period
+                ))
+                .collect(Collectors.toList());
+    }
 
+    private List<AnalyticsDto.TopSeller> findTopSellersByPeriod(AnalyticsPeriod analyticsPeriod, int limit) {
         try {
-            switch (upperPeriod) {
-                case "DAY":
-                    startDate = endDate.truncatedTo(ChronoUnit.DAYS);
-                    break;
-                case "MONTH":
-                    startDate = endDate.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-                    break;
-                case "QUARTER":
-                    int currentQuarter = (endDate.getMonthValue() - 1) / 3 + 1;
-                    startDate = endDate.withMonth((currentQuarter - 1) * 3 + 1)
-                            .withDayOfMonth(1)
-                            .truncatedTo(ChronoUnit.DAYS);
-                    break;
-                case "YEAR":
-                    startDate = endDate.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS);
-                    break;
-                default:
-                    throw AnalyticsException.forInvalidPeriod();
+            if (topSellerLeaderboard.isReady()) {
+                return Collections.unmodifiableList(topSellerLeaderboard.getTopSellers(analyticsPeriod, limit));
+            }
+
+            LocalDateTime endDate = LocalDateTime.now();
+            List<Map.Entry<Long, BigDecimal>> top;
+            if (columnarStore.isReadyFor(analyticsPeriod.startOf(endDate))) {
+                TopN<Map.Entry<Long, BigDecimal>> topN = new TopN<>(limit, TOP_SELLER_ORDER);
+                columnarStore.getTotalsBySeller(analyticsPeriod.startOf(endDate), endDate).entrySet()
+                        .forEach(topN::offer);
+                top = topN.toList();
+            } else {
+                top = new ArrayList<>(salesRollupService
+                        .getTopSellersForCurrentPeriod(analyticsPeriod, endDate, limit).entrySet());
             }
 
-            List<Object[]> result = transactionRepository.findTopSellerByPeriod(startDate, endDate);
+            Map<Long, String> names = sellerCache.getNames(top.stream()
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList()));
+            return Collections.unmodifiableList(top.stream()
+                    .map(entry -> new AnalyticsDto.TopSeller(
+                            entry.getKey(), names.get(entry.getKey()), entry.getValue(), null))
+                    .collect(Collectors.toList()));
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при анализе топ-продавцов: " + e.getMessage());
+        }
+    }
 
-            // Берем первый элемент из результата (самый продуктивный)
-            if (result.isEmpty()) {
-                return Optional.empty();
+    /**
+     * Лидеры за DAY, MONTH, QUARTER и YEAR одним запросом вместо четырех. Из рейтинга в памяти
+     * они берутся без обращения к базе, иначе суммы всех периодов считаются одним проходом
+     * по дневным итогам с начала года. Периоды без продаж в ответ не попадают.
+     */
+    @Timed("crm.analytics")
+    public Map<AnalyticsPeriod, AnalyticsDto.TopSeller> getTopSellersForAllPeriods() {
+        return analyticsResultCache.get(AnalyticsResultCache.topSellersKey(LocalDateTime.now()), this::findTopSellers);
+    }
+
+    private Map<AnalyticsPeriod, AnalyticsDto.TopSeller> findTopSellers() {
+        try {
+            Map<AnalyticsPeriod, AnalyticsDto.TopSeller> topSellers = new EnumMap<>(AnalyticsPeriod.class);
+
+            if (topSellerLeaderboard.isReady()) {
+                for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+                    topSellerLeaderboard.getTopSeller(period).ifPresent(topSeller -> topSellers.put(period, topSeller));
+                }
+                return Collections.unmodifiableMap(topSellers);
             }
 
-            Object[] topSellerData = result.get(0);
-            AnalyticsDto.TopSeller topSeller = new AnalyticsDto.TopSeller(
-                    (Long) topSellerData[0],
-                    (String) topSellerData[1],
-                    (BigDecimal) topSellerData[2],
-                    period
-            );
+            salesRollupService.getTotalsBySellerForCurrentPeriods(LocalDateTime.now())
+                    .forEach((period, totals) -> toTopSeller(totals, period.name())
+                            .ifPresent(topSeller -> topSellers.put(period, topSeller)));
+            return Collections.unmodifiableMap(topSellers);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при анализе топ-продавцов: " + e.getMessage());
+        }
+    }
 
-            return Optional.of(topSeller);
+    private Optional<AnalyticsDto.TopSeller> findTopSeller(AnalyticsPeriod analyticsPeriod) {
+        try {
+            // Лидер текущего периода берется из рейтинга в памяти без GROUP BY по всему периоду
+            if (topSellerLeaderboard.isReady()) {
+                return topSellerLeaderboard.getTopSeller(analyticsPeriod);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при анализе топ-продавца: " + e.getMessage());
         }
+
+        // Без рейтинга - тот же путь, что и для топ-N: сортировка и LIMIT 1 в базе, а не все итоги периода
+        return findTopSellersByPeriod(analyticsPeriod, 1).stream().findFirst();
+    }
+
+    // Берем самого продуктивного продавца
+    private Optional<AnalyticsDto.TopSeller> toTopSeller(Map<Long, BigDecimal> totals, String period) {
+        if (totals.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map.Entry<Long, BigDecimal> top = Collections.max(totals.entrySet(), Map.Entry.comparingByValue());
+        return Optional.of(new AnalyticsDto.TopSeller(
+                top.getKey(),
+                sellerCache.getName(top.getKey()).orElse(null),
+                top.getValue(),
+                period
+        ));
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public Optional<AnalyticsDto.BestPeriod> getBestPeriodForSeller(Long sellerId) {
         if (sellerId == null) {
             throw ValidationException.forInvalidId();
         }
 
         // Проверяем существование продавца
-        if (!sellerRepository.existsById(sellerId)) {
+        if (!sellerCache.exists(sellerId)) {
             throw ResourceNotFoundException.forSeller(sellerId);
         }
 
-        List<Transaction> transactions;
-        try {
-            transactions = transactionRepository.findBySellerIdOrderByDate(sellerId);
-        } catch (Exception e) {
-            throw new RuntimeException("Ошибка при получении транзакций для анализа: " + e.getMessage());
-        }
+        BestPeriodFinder finder = columnarStore.isReady()
+                ? columnarStore.findBestPeriod(sellerId)
+                : streamBestPeriod(sellerId);
 
-        if (transactions.isEmpty()) {
+        if (finder.getCount() == 0) {
             throw AnalyticsException.forSellerWithoutTransactions(sellerId);
         }
 
-        if (transactions.size() < 2) {
+        if (finder.getCount() < 2) {
             throw AnalyticsException.forInsufficientData();
         }
 
         try {
-            return findBestPeriod(transactions);
+            return finder.result();
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при анализе лучшего периода: " + e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
+    @Timed("crm.analytics")
     public BigDecimal getTotalAmountBySellerAndPeriod(Long sellerId, LocalDateTime startDate, LocalDateTime endDate) {
         if (sellerId == null) {
             throw ValidationException.forInvalidId();
@@ -217,79 +481,72 @@ public class TransactionService {
         }
 
         // Проверяем существование продавца
-        if (!sellerRepository.existsById(sellerId)) {
+        if (!sellerCache.exists(sellerId)) {
             throw ResourceNotFoundException.forSeller(sellerId);
         }
 
         try {
-            List<Transaction> transactions = transactionRepository.findBySellerIdAndPeriod(sellerId, startDate, endDate);
-            return transactions.stream()
-                    .map(Transaction::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            return columnarStore.isReadyFor(startDate)
+                    ? columnarStore.getTotalForSeller(sellerId, startDate, endDate)
+                    : salesRollupService.getTotalForSeller(sellerId, startDate, endDate);
+        } catch (ValidationException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при расчете общей суммы: " + e.getMessage());
         }
     }
 
-    private Optional<AnalyticsDto.BestPeriod> findBestPeriod(List<Transaction> transactions) {
-        if (transactions.size() == 1) {
-            Transaction single = transactions.get(0);
-            return Optional.of(new AnalyticsDto.BestPeriod(
-                    single.getTransactionDate(),
-                    single.getTransactionDate(),
-                    1L,
-                    single.getAmount()
-            ));
-        }
-
-        // Сортируем транзакции по дате
-        transactions.sort(Comparator.comparing(Transaction::getTransactionDate));
+    // Лучшие периоды всех продавцов одним проходом по транзакциям; строки передаются получателю по мере готовности
+    public void streamBestPeriodReport(Consumer<AnalyticsDto.SellerBestPeriod> consumer) {
+        bestPeriodReport.write(consumer);
+    }
 
-        AnalyticsDto.BestPeriod bestPeriod = null;
-        double maxDensity = 0;
+    public ReportProgressDto getBestPeriodReportProgress() {
+        return bestPeriodReport.getProgress();
+    }
 
-        try {
-            // Анализируем различные размеры окон (от 1 дня до 30 дней)
-            for (int windowDays = 1; windowDays <= 30; windowDays++) {
-                for (int i = 0; i < transactions.size(); i++) {
-                    LocalDateTime windowStart = transactions.get(i).getTransactionDate();
-                    LocalDateTime windowEnd = windowStart.plusDays(windowDays);
-
-                    List<Transaction> windowTransactions = getTransactionsInWindow(transactions, windowStart, windowEnd);
-
-                    if (!windowTransactions.isEmpty()) {
-                        long count = windowTransactions.size();
-                        BigDecimal totalAmount = windowTransactions.stream()
-                                .map(Transaction::getAmount)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                        // Плотность = количество транзакций / длительность периода в днях
-                        double density = count / (double) windowDays;
-
-                        if (density > maxDensity ||
-                                (density == maxDensity && count > (bestPeriod != null ? bestPeriod.getTransactionCount() : 0))) {
-                            maxDensity = density;
-                            bestPeriod = new AnalyticsDto.BestPeriod(windowStart, windowEnd, count, totalAmount);
-                        }
-                    }
-                }
-            }
+    // Транзакции читаются курсором в порядке даты, в памяти остается только активное окно
+    private BestPeriodFinder streamBestPeriod(Long sellerId) {
+        BestPeriodFinder finder = new BestPeriodFinder();
+        try (Stream<Object[]> rows = transactionRepository.streamDatesAndAmountsBySellerId(sellerId)) {
+            rows.forEach(row -> finder.accept((LocalDateTime) row[0], (BigDecimal) row[1]));
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка в алгоритме поиска лучшего периода: " + e.getMessage());
+            throw new RuntimeException("Ошибка при получении транзакций для анализа: " + e.getMessage());
+        }
+        return finder;
+    }
+
+    // Состояние в памяти обновляется только после успешной фиксации транзакции
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
 
-        return Optional.ofNullable(bestPeriod);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
-    private List<Transaction> getTransactionsInWindow(List<Transaction> transactions,
-                                                      LocalDateTime start,
-                                                      LocalDateTime end) {
-        return transactions.stream()
-                .filter(t -> !t.getTransactionDate().isBefore(start) && t.getTransactionDate().isBefore(end))
-                .collect(Collectors.toList());
+    private void validatePageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw ValidationException.forInvalidPageSize(MAX_PAGE_SIZE);
+        }
+    }
+
+    private TransactionPageDto toPage(List<TransactionDto> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new TransactionPageDto(rows, null);
+        }
+
+        List<TransactionDto> items = new ArrayList<>(rows.subList(0, limit));
+        return new TransactionPageDto(items, TransactionCursor.of(items.get(limit - 1)).encode());
     }
 
-    private void validateTransactionDto(TransactionDto transactionDto) {
+    static void validateTransactionDto(TransactionDto transactionDto) {
         if (transactionDto == null) {
             throw ValidationException.forNullObject();
         }
@@ -321,11 +578,12 @@ public class TransactionService {
         }
     }
 
-    private TransactionDto convertToDto(Transaction transaction) {
+    // Имя передается отдельно, чтобы не инициализировать ленивую ссылку на продавца
+    private TransactionDto convertToDto(Transaction transaction, String sellerName) {
         return new TransactionDto(
                 transaction.getId(),
                 transaction.getSeller().getId(),
-                transaction.getSeller().getName(),
+                sellerName,
                 transaction.getAmount(),
                 transaction.getPaymentType().name(),
                 transaction.getTransactionDate()
@@ -0,0 +1,44 @@
+package com.crm.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Поля CSV по RFC 4180: разделитель - запятая, строки - "\n". Поле с запятой, кавычкой или переводом
+ * строки заключается в кавычки, кавычки внутри удваиваются.
+ */
+public final class CsvUtils {
+
+    private CsvUtils() {
+    }
+
+    public static void writeField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
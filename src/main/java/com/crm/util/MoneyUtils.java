@@ -0,0 +1,55 @@
+package com.crm.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежные суммы в копейках (long) для внутренних агрегатов.
+ *
+ * Колонка amount имеет precision = 10, scale = 2, поэтому любая сумма транзакции целиком помещается
+ * в long копеек, а сложение long не создает объектов в отличие от BigDecimal.add. Переполнение
+ * проверяется явно; BigDecimal создается только на границе DTO.
+ */
+public final class MoneyUtils {
+
+    public static final int SCALE = 2;
+
+    private MoneyUtils() {
+    }
+
+    // Округление как у numeric(10, 2) при записи в базу
+    public static long toCents(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Сумма " + amount + " не помещается в long копеек");
+        }
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    public static long add(long cents, long other) {
+        long result = cents + other;
+        // Переполнение возможно только при одинаковых знаках слагаемых и другом знаке результата
+        if (((cents ^ result) & (other ^ result)) < 0) {
+            throw new ArithmeticException("Переполнение суммы в копейках: " + cents + " + " + other);
+        }
+        return result;
+    }
+
+    // Среднее с округлением HALF_UP до копеек, как BigDecimal.divide(count, 2, HALF_UP)
+    public static BigDecimal average(long totalCents, long count) {
+        if (count <= 0) {
+            throw new ArithmeticException("Количество должно быть положительным: " + count);
+        }
+
+        long quotient = totalCents / count;
+        long remainder = Math.abs(totalCents % count);
+        if (remainder >= count - remainder) {
+            quotient += totalCents < 0 ? -1 : 1;
+        }
+        return toAmount(quotient);
+    }
+}
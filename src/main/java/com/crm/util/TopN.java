@@ -0,0 +1,48 @@
+package com.crm.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Первые N элементов потока в порядке comparator без сортировки всего потока.
+ *
+ * Хранится ограниченная куча из N элементов, в вершине которой худший из отобранных: новый элемент
+ * заменяет его, только если он лучше. Память - O(N), время - O(M log N) для M элементов.
+ */
+public final class TopN<T> {
+
+    private final int limit;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    public TopN(int limit, Comparator<? super T> order) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер выборки должен быть положительным: " + limit);
+        }
+        this.limit = limit;
+        this.order = order;
+        this.heap = new PriorityQueue<>(limit, order.reversed());
+    }
+
+    public void offer(T element) {
+        if (heap.size() < limit) {
+            heap.add(element);
+        } else if (order.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    // Отобранные элементы от лучшего к худшему
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+}
@@ -0,0 +1,31 @@
+CREATE SEQUENCE transactions_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE sellers (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    name              VARCHAR(255) NOT NULL,
+    contact_info      VARCHAR(255),
+    registration_date TIMESTAMP    NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE transactions (
+    id               BIGINT         NOT NULL,
+    seller_id        BIGINT         NOT NULL,
+    amount           DECIMAL(10, 2) NOT NULL,
+    payment_type     VARCHAR(255)   NOT NULL,
+    transaction_date TIMESTAMP      NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_transactions_seller FOREIGN KEY (seller_id) REFERENCES sellers (id)
+);
+
+CREATE INDEX idx_transactions_date_id ON transactions (transaction_date, id);
+CREATE INDEX idx_transactions_seller_date_id ON transactions (seller_id, transaction_date, id);
+
+CREATE TABLE seller_daily_totals (
+    seller_id         BIGINT         NOT NULL,
+    day               DATE           NOT NULL,
+    payment_type      VARCHAR(255)   NOT NULL,
+    transaction_count BIGINT         NOT NULL,
+    total_amount      DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (day, payment_type, seller_id)
+);
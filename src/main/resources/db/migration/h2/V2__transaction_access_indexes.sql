@@ -0,0 +1,5 @@
+-- В H2 нет INCLUDE, поэтому покрывающие колонки добавлены в конец ключа индекса
+DROP INDEX IF EXISTS idx_transactions_date_id;
+CREATE INDEX idx_transactions_date_id ON transactions (transaction_date, id, seller_id, amount);
+
+CREATE UNIQUE INDEX uk_sellers_name ON sellers (name);
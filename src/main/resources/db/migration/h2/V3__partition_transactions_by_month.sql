@@ -0,0 +1,3 @@
+-- Секционирование transactions по месяцам есть только в PostgreSQL (postgresql/V3).
+-- В H2 схема не меняется; версия нужна, чтобы нумерация миграций совпадала.
+SELECT 1;
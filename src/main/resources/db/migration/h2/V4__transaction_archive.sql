@@ -0,0 +1,21 @@
+CREATE TABLE transaction_archive_totals (
+    seller_id         BIGINT         NOT NULL,
+    payment_type      VARCHAR(255)   NOT NULL,
+    transaction_count BIGINT         NOT NULL,
+    total_amount      DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (seller_id, payment_type),
+    CONSTRAINT fk_transaction_archive_totals_seller FOREIGN KEY (seller_id) REFERENCES sellers (id)
+);
+
+CREATE TABLE transaction_archive_chunks (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    period_start TIMESTAMP      NOT NULL,
+    period_end   TIMESTAMP      NOT NULL,
+    row_count    INTEGER        NOT NULL,
+    total_amount DECIMAL(19, 2) NOT NULL,
+    archived_at  TIMESTAMP      NOT NULL,
+    data         VARBINARY      NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_transaction_archive_chunks_period ON transaction_archive_chunks (period_start);
@@ -0,0 +1,25 @@
+-- См. postgresql/V5: схема, созданная Hibernate до Flyway, получает последовательность и дневные итоги из V1.
+-- В H2 V3 не пересоздает transactions, поэтому индекс по продавцу тоже добавляется здесь
+CREATE SEQUENCE IF NOT EXISTS transactions_seq START WITH 1 INCREMENT BY 50;
+
+-- Следующее значение выдает диапазон id выше наибольшего существующего
+ALTER SEQUENCE transactions_seq RESTART WITH (SELECT GREATEST(
+        (SELECT COALESCE(MAX(id), 0) FROM transactions),
+        (SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'TRANSACTIONS_SEQ')) + 50);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_seller_date_id ON transactions (seller_id, transaction_date, id);
+
+CREATE TABLE IF NOT EXISTS seller_daily_totals (
+    seller_id         BIGINT         NOT NULL,
+    day               DATE           NOT NULL,
+    payment_type      VARCHAR(255)   NOT NULL,
+    transaction_count BIGINT         NOT NULL,
+    total_amount      DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (day, payment_type, seller_id)
+);
+
+INSERT INTO seller_daily_totals (seller_id, day, payment_type, transaction_count, total_amount)
+SELECT seller_id, CAST(transaction_date AS DATE), payment_type, COUNT(*), SUM(amount)
+FROM transactions
+WHERE NOT EXISTS (SELECT 1 FROM seller_daily_totals)
+GROUP BY seller_id, CAST(transaction_date AS DATE), payment_type;
@@ -0,0 +1,33 @@
+-- Схема, которую раньше создавал Hibernate (ddl-auto: create). Для существующей базы
+-- эта версия помечается как базовая (spring.flyway.baseline-on-migrate) и не выполняется.
+CREATE SEQUENCE transactions_seq START 1 INCREMENT 50;
+
+CREATE TABLE sellers (
+    id                BIGSERIAL    NOT NULL,
+    name              VARCHAR(255) NOT NULL,
+    contact_info      VARCHAR(255),
+    registration_date TIMESTAMP    NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE transactions (
+    id               BIGINT         NOT NULL,
+    seller_id        BIGINT         NOT NULL,
+    amount           NUMERIC(10, 2) NOT NULL,
+    payment_type     VARCHAR(255)   NOT NULL,
+    transaction_date TIMESTAMP      NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_transactions_seller FOREIGN KEY (seller_id) REFERENCES sellers (id)
+);
+
+CREATE INDEX idx_transactions_date_id ON transactions (transaction_date, id);
+CREATE INDEX idx_transactions_seller_date_id ON transactions (seller_id, transaction_date, id);
+
+CREATE TABLE seller_daily_totals (
+    seller_id         BIGINT         NOT NULL,
+    day               DATE           NOT NULL,
+    payment_type      VARCHAR(255)   NOT NULL,
+    transaction_count BIGINT         NOT NULL,
+    total_amount      NUMERIC(19, 2) NOT NULL,
+    PRIMARY KEY (day, payment_type, seller_id)
+);
@@ -0,0 +1,9 @@
+-- Выборки за период (топ-продавец, итоги за неполные дни, keyset-пагинация) читают только индекс:
+-- seller_id и amount лежат в листьях индекса по дате.
+DROP INDEX IF EXISTS idx_transactions_date_id;
+CREATE INDEX idx_transactions_date_id ON transactions (transaction_date, id) INCLUDE (seller_id, amount);
+
+-- Выборки продавца за период и в порядке даты покрывает idx_transactions_seller_date_id
+-- (seller_id, transaction_date, id) из V1.
+
+CREATE UNIQUE INDEX uk_sellers_name ON sellers (name);
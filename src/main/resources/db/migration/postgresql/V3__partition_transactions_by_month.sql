@@ -0,0 +1,43 @@
+-- Помесячное декларативное секционирование transactions по transaction_date.
+-- Выборки за период задают диапазон по самому столбцу transaction_date, поэтому планировщик читает
+-- только секции нужных месяцев. Старую секцию можно отсоединить (DETACH PARTITION) без перезаписи таблицы.
+-- Первичный ключ секционированной таблицы обязан содержать ключ секционирования; уникальность id
+-- по-прежнему обеспечивает последовательность transactions_seq.
+CREATE TABLE transactions_partitioned (
+    id               BIGINT         NOT NULL,
+    seller_id        BIGINT         NOT NULL,
+    amount           NUMERIC(10, 2) NOT NULL,
+    payment_type     VARCHAR(255)   NOT NULL,
+    transaction_date TIMESTAMP      NOT NULL,
+    CONSTRAINT transactions_partitioned_pkey PRIMARY KEY (id, transaction_date),
+    CONSTRAINT fk_transactions_seller FOREIGN KEY (seller_id) REFERENCES sellers (id)
+) PARTITION BY RANGE (transaction_date);
+
+-- Секции с месяца самой ранней транзакции до следующего месяца; следующие создает TransactionPartitionMaintenance
+DO $$
+DECLARE
+    month_start TIMESTAMP := date_trunc('month', COALESCE((SELECT MIN(transaction_date) FROM transactions), now()::TIMESTAMP));
+    last_month  TIMESTAMP := date_trunc('month', GREATEST(now()::TIMESTAMP,
+                                 COALESCE((SELECT MAX(transaction_date) FROM transactions), now()::TIMESTAMP))) + INTERVAL '1 month';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF transactions_partitioned FOR VALUES FROM (%L) TO (%L)',
+                       'transactions_p' || to_char(month_start, 'YYYYMM'),
+                       month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+-- Строки вне созданных секций (например, при пропущенном обслуживании) не теряются
+CREATE TABLE transactions_default PARTITION OF transactions_partitioned DEFAULT;
+
+INSERT INTO transactions_partitioned (id, seller_id, amount, payment_type, transaction_date)
+SELECT id, seller_id, amount, payment_type, transaction_date FROM transactions;
+
+DROP TABLE transactions;
+ALTER TABLE transactions_partitioned RENAME TO transactions;
+ALTER INDEX transactions_partitioned_pkey RENAME TO transactions_pkey;
+
+-- Индексы секционированной таблицы создаются в каждой секции, в том числе в будущих
+CREATE INDEX idx_transactions_date_id ON transactions (transaction_date, id) INCLUDE (seller_id, amount);
+CREATE INDEX idx_transactions_seller_date_id ON transactions (seller_id, transaction_date, id);
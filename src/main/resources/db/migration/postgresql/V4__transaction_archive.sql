@@ -0,0 +1,29 @@
+-- Архив транзакций старше crm.archive.keep-months (TransactionArchiver).
+-- Вклад архивных транзакций в итоги по продавцам и типам оплаты: общие суммы и количества
+-- складываются из оперативной таблицы и этих итогов. Дневные итоги seller_daily_totals
+-- за архивные дни остаются на месте, поэтому суммы за период тоже не меняются.
+CREATE TABLE transaction_archive_totals (
+    seller_id         BIGINT         NOT NULL,
+    payment_type      VARCHAR(255)   NOT NULL,
+    transaction_count BIGINT         NOT NULL,
+    total_amount      NUMERIC(19, 2) NOT NULL,
+    PRIMARY KEY (seller_id, payment_type),
+    CONSTRAINT fk_transaction_archive_totals_seller FOREIGN KEY (seller_id) REFERENCES sellers (id)
+);
+
+-- Сами строки: порции до crm.archive.chunk-size транзакций одного месяца в виде CSV, сжатого gzip
+CREATE TABLE transaction_archive_chunks (
+    id           BIGSERIAL      NOT NULL,
+    period_start TIMESTAMP      NOT NULL,
+    period_end   TIMESTAMP      NOT NULL,
+    row_count    INTEGER        NOT NULL,
+    total_amount NUMERIC(19, 2) NOT NULL,
+    archived_at  TIMESTAMP      NOT NULL,
+    data         BYTEA          NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Данные уже сжаты, повторное сжатие TOAST только тратит процессор
+ALTER TABLE transaction_archive_chunks ALTER COLUMN data SET STORAGE EXTERNAL;
+
+CREATE INDEX idx_transaction_archive_chunks_period ON transaction_archive_chunks (period_start);
@@ -0,0 +1,26 @@
+-- Базу, созданную до Flyway (Hibernate ddl-auto: create, id через IDENTITY), Flyway помечает версией 1
+-- (spring.flyway.baseline-on-migrate), и V1 для нее не выполняется. Последовательность и дневные итоги
+-- из V1 создаются здесь; для базы, созданной миграциями, версия ничего не меняет.
+CREATE SEQUENCE IF NOT EXISTS transactions_seq START 1 INCREMENT 50;
+
+-- Идентификаторы раньше выдавал IDENTITY: последовательность продолжается после наибольшего id,
+-- иначе новые строки получили бы занятые id (ключ секционированной таблицы - (id, transaction_date))
+SELECT setval('transactions_seq', GREATEST(
+        (SELECT COALESCE(MAX(id), 1) FROM transactions),
+        (SELECT last_value FROM transactions_seq)));
+
+CREATE TABLE IF NOT EXISTS seller_daily_totals (
+    seller_id         BIGINT         NOT NULL,
+    day               DATE           NOT NULL,
+    payment_type      VARCHAR(255)   NOT NULL,
+    transaction_count BIGINT         NOT NULL,
+    total_amount      NUMERIC(19, 2) NOT NULL,
+    PRIMARY KEY (day, payment_type, seller_id)
+);
+
+-- Итоги по уже существующим транзакциям; таблица, которую вели с V1, не пуста и не меняется
+INSERT INTO seller_daily_totals (seller_id, day, payment_type, transaction_count, total_amount)
+SELECT seller_id, CAST(transaction_date AS DATE), payment_type, COUNT(*), SUM(amount)
+FROM transactions
+WHERE NOT EXISTS (SELECT 1 FROM seller_daily_totals)
+GROUP BY seller_id, CAST(transaction_date AS DATE), payment_type;
@@ -0,0 +1,111 @@
+package com.crm.config;
+
+import com.crm.entity.Seller;
+import com.crm.repository.SellerDailyTotalRepository;
+import com.crm.repository.SellerRepository;
+import com.crm.repository.TransactionRepository;
+import com.crm.service.SellerCache;
+import com.crm.service.TransactionIngestionQueue;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+class MetricsConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SellerRepository sellerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionIngestionQueue ingestionQueue;
+
+    private Seller seller;
+
+    @BeforeEach
+    void setUp() {
+        seller = sellerRepository.save(new Seller("Иван Петров", "ivan@mail.com"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAllInBatch();
+        sellerDailyTotalRepository.deleteAllInBatch();
+        sellerRepository.deleteAllInBatch();
+        sellerCache.invalidateAll();
+    }
+
+    @Test
+    void prometheus_ShouldExposeLatencyHistograms() throws Exception {
+
+        mockMvc.perform(post("/api/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sellerId\": " + seller.getId() + ", \"amount\": 100.00, \"paymentType\": \"CARD\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/transactions/seller/{sellerId}", seller.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/transactions/analytics/top-seller").param("period", "month"))
+                .andExpect(status().isOk());
+
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // HTTP по шаблону маршрута, а не по фактическому пути
+        assertTrue(body.contains("http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\","
+                + "outcome=\"SUCCESS\",status=\"200\",uri=\"/api/transactions/seller/{sellerId}\""), body);
+        assertTrue(body.contains("spring_data_repository_invocations_seconds_bucket"), body);
+        assertTrue(body.contains("method=\"save\",repository=\"TransactionRepository\""), body);
+        assertTrue(body.contains("crm_analytics_seconds_bucket"), body);
+        assertTrue(body.contains("method=\"getTopSellerByPeriod\""), body);
+        assertTrue(body.contains("hikaricp_connections_acquire_seconds_bucket"), body);
+        assertTrue(body.contains("crm_seller_cache_requests_total{result=\"miss\""), body);
+        assertTrue(body.contains("crm_ingestion_queue_depth"), body);
+        assertTrue(body.contains("crm_ingestion_group_commit_seconds_count"), body);
+        assertTrue(body.contains("crm_analytics_executor_queue_depth"), body);
+        assertTrue(body.contains("crm_analytics_executor_tasks_total{result=\"rejected\""), body);
+    }
+
+    @Test
+    void groupCommitTimer_ShouldReportExactTotalTime() {
+
+        FunctionTimer timer = meterRegistry.get("crm.ingestion.group.commit").functionTimer();
+
+        // Суммарное время берется из счетчика наносекунд очереди, а не из среднего, умноженного на число фиксаций
+        assertEquals(ingestionQueue.getGroupCommits(), (long) timer.count());
+        assertEquals(ingestionQueue.getCommitNanosTotal(), (long) timer.totalTime(TimeUnit.NANOSECONDS));
+    }
+}
@@ -0,0 +1,155 @@
+package com.crm.config;
+
+import com.crm.dto.SellerDto;
+import com.crm.repository.SellerRepository;
+import com.crm.service.AnalyticsResultCache;
+import com.crm.service.SellerCache;
+import com.crm.service.SellerService;
+import com.crm.service.TransactionService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Основная база и реплика - две независимые базы H2 в памяти; репликация в тесте не выполняется,
+// поэтому по содержимому ответа видно, из какой базы он прочитан
+@SpringBootTest(properties = {
+        "crm.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "crm.datasource.replica.lag-query=SELECT lag_seconds FROM replica_lag",
+        "crm.datasource.replica.max-lag=5s",
+        "crm.datasource.replica.lag-check-interval=1h"
+})
+@ActiveProfiles("test")
+class ReplicaRoutingDataSourceTest {
+
+    @Autowired
+    private SellerService sellerService;
+
+    @Autowired
+    private SellerRepository sellerRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        Flyway.configure()
+                .dataSource(replicaDataSource)
+                .locations("classpath:db/migration/h2")
+                .load()
+                .migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("CREATE TABLE IF NOT EXISTS replica_lag (lag_seconds DECIMAL(10, 3))");
+        replica.update("DELETE FROM replica_lag");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+        replica.update("INSERT INTO sellers (name, contact_info, registration_date) "
+                + "VALUES ('Продавец реплики', 'replica@mail.com', CURRENT_TIMESTAMP)");
+        routingDataSource.checkReplica();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replica.update("DELETE FROM sellers");
+        sellerRepository.deleteAllInBatch();
+        sellerCache.invalidateAll();
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldUseReplicaAndWritesPrimary() {
+
+        assertTrue(routingDataSource.isReplicaAvailable());
+
+        sellerService.createSeller(new SellerDto("Иван Петров", "ivan@mail.com"));
+
+        // Запись ушла в основную базу, а список читается с реплики
+        assertEquals(1, sellerRepository.count());
+        assertEquals(Collections.singletonList("Продавец реплики"), names(sellerService.getAllSellers()));
+    }
+
+    @Test
+    void sellerCache_InReadOnlyTransaction_ShouldLoadFromPrimary() {
+
+        // Реплика еще не получила нового продавца, но кэш не должен запомнить его как отсутствующего
+        Long sellerId = sellerService.createSeller(new SellerDto("Иван Петров", "ivan@mail.com")).getId();
+
+        assertTrue(transactionService.getTransactionsBySellerIdAndPeriod(sellerId,
+                LocalDateTime.now().minusDays(1), LocalDateTime.now()).isEmpty());
+        assertEquals(Optional.of("Иван Петров"), sellerCache.getName(sellerId));
+    }
+
+    @Test
+    void analyticsCache_WhenReplicaMayLag_ShouldNotKeepReplicaResult() {
+
+        // После записи результат с реплики не сохраняется: когда реплика догонит, ответ пересчитывается
+        sellerService.createSeller(new SellerDto("Иван Петров", "ivan@mail.com"));
+        List<Object> key = Collections.singletonList("sellers");
+
+        assertEquals(Collections.singletonList("Продавец реплики"),
+                names(analyticsResultCache.get(key, sellerService::getAllSellers)));
+
+        replica.update("INSERT INTO sellers (name, contact_info, registration_date) "
+                + "VALUES ('Иван Петров', 'ivan@mail.com', CURRENT_TIMESTAMP)");
+
+        assertEquals(Arrays.asList("Продавец реплики", "Иван Петров"),
+                names(analyticsResultCache.get(key, sellerService::getAllSellers)));
+    }
+
+    @Test
+    void readOnlyTransactions_WhenReplicaLags_ShouldFallBackToPrimary() {
+
+        sellerService.createSeller(new SellerDto("Иван Петров", "ivan@mail.com"));
+        replica.update("UPDATE replica_lag SET lag_seconds = 60");
+
+        routingDataSource.checkReplica();
+
+        assertFalse(routingDataSource.isReplicaAvailable());
+        assertEquals(60_000, routingDataSource.getReplicaLagMillis());
+        assertEquals(Collections.singletonList("Иван Петров"), names(sellerService.getAllSellers()));
+    }
+
+    @Test
+    void readOnlyTransactions_WhenReplicaCheckFails_ShouldFallBackToPrimary() {
+
+        replica.execute("DROP TABLE replica_lag");
+
+        routingDataSource.checkReplica();
+
+        assertFalse(routingDataSource.isReplicaAvailable());
+        assertEquals(-1, routingDataSource.getReplicaLagMillis());
+        assertTrue(sellerService.getAllSellers().isEmpty());
+    }
+
+    private static List<String> names(List<SellerDto> sellers) {
+        return sellers.stream().map(SellerDto::getName).collect(Collectors.toList());
+    }
+}
@@ -1,26 +1,40 @@
 package com.crm.controller;
 
+import com.crm.dto.AnalyticsDto;
 import com.crm.dto.SellerDto;
+import com.crm.service.AnalyticsExecutor;
+import com.crm.service.AnalyticsResultCache;
+import com.crm.service.CsvExporter;
 import com.crm.service.SellerService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.Writer;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(SellerController.class)
+@Import({AnalyticsResultCache.class, AnalyticsExecutor.class})
 class SellerControllerTest {
 
     @Autowired
@@ -29,6 +43,12 @@ class SellerControllerTest {
     @MockBean
     private SellerService sellerService;
 
+    @MockBean
+    private CsvExporter csvExporter;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -132,4 +152,51 @@ class SellerControllerTest {
                 .andExpect(status().isNotFound());
     }
 
-}
\ No newline at end of file
+    @Test
+    void getSellersWithLowPerformance_WhenDataNotChanged_ShouldReturnNotModified() throws Exception {
+
+        AnalyticsDto.SellerWithTotal seller = new AnalyticsDto.SellerWithTotal(1L, "Иван Петров", new BigDecimal("100"));
+        when(sellerService.getSellersWithTotalLessThan(any(), any(), any())).thenReturn(Arrays.asList(seller));
+
+        MvcResult result = mockMvc.perform(get("/api/sellers/analytics/low-performance")
+                        .param("startDate", "2024-01-01T00:00:00")
+                        .param("endDate", "2024-01-31T23:59:59")
+                        .param("minAmount", "500"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sellerName").value("Иван Петров"));
+
+
+        // Сумма 500.00 нормализуется к тому же ключу, что и 500
+        mockMvc.perform(get("/api/sellers/analytics/low-performance")
+                        .param("startDate", "2024-01-01T00:00:00")
+                        .param("endDate", "2024-01-31T23:59:59")
+                        .param("minAmount", "500.00")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        verify(sellerService, times(1)).getSellersWithTotalLessThan(any(), any(), any());
+    }
+
+    @Test
+    void exportSellersWithLowPerformance_ShouldWriteCsv() throws Exception {
+
+        LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("seller_id,seller_name,total_amount\n1,Иван Петров,500.00\n");
+            return 1L;
+        }).when(csvExporter).writeSellersWithTotalLessThan(eq(startDate), eq(endDate), eq(new BigDecimal("1000")), any());
+
+        mockMvc.perform(get("/api/sellers/analytics/low-performance/export.csv")
+                        .param("startDate", "2024-01-01T00:00:00")
+                        .param("endDate", "2024-01-31T23:59:59")
+                        .param("minAmount", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("seller_id,seller_name,total_amount\n1,Иван Петров,500.00\n"));
+    }
+}
@@ -2,27 +2,66 @@ package com.crm.controller;
 
 import com.crm.dto.TransactionDto;
 import com.crm.dto.AnalyticsDto;
+import com.crm.dto.ReportProgressDto;
+import com.crm.dto.TransactionBatchResultDto;
+import com.crm.dto.TransactionImportResultDto;
+import com.crm.dto.TransactionPageDto;
+import com.crm.exception.AnalyticsException;
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.exception.ValidationException;
+import com.crm.service.AnalyticsExecutor;
+import com.crm.service.AnalyticsPeriod;
+import com.crm.service.AnalyticsResultCache;
+import com.crm.service.CsvExporter;
+import com.crm.service.CsvImporter;
 import com.crm.service.TransactionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
-
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(TransactionController.class)
+@Import({AnalyticsResultCache.class, AnalyticsExecutor.class})
 class TransactionControllerTest {
 
     @Autowired
@@ -31,15 +70,31 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private CsvExporter csvExporter;
+
+    @MockBean
+    private CsvImporter csvImporter;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
     @Test
     void getAllTransactions_ShouldReturnTransactions() throws Exception {
 
         TransactionDto transaction = new TransactionDto(1L, 1L, "Иван Петров",
                 new BigDecimal("1000.50"), "CARD", LocalDateTime.now());
-        when(transactionService.getAllTransactions()).thenReturn(Arrays.asList(transaction));
+        doAnswer(invocation -> {
+            Consumer<TransactionDto> consumer = invocation.getArgument(0);
+            consumer.accept(transaction);
+            return null;
+        }).when(transactionService).streamAllTransactions(any());
 
 
         mockMvc.perform(get("/api/transactions"))
@@ -48,6 +103,38 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$[0].paymentType").value("CARD"));
     }
 
+    @Test
+    void getAllTransactions_WhenEmpty_ShouldReturnEmptyArray() throws Exception {
+
+        mockMvc.perform(get("/api/transactions"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void getAllTransactions_WithCursorWithoutLimit_ShouldReturnBadRequest() throws Exception {
+
+        mockMvc.perform(get("/api/transactions").param("after", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getTransactionsPage_ShouldReturnItemsAndNextCursor() throws Exception {
+
+        TransactionDto transaction = new TransactionDto(1L, 1L, "Иван Петров",
+                new BigDecimal("1000.50"), "CARD", LocalDateTime.now());
+        when(transactionService.getTransactionsPage(1, "cursor"))
+                .thenReturn(new TransactionPageDto(Arrays.asList(transaction), "next"));
+
+
+        mockMvc.perform(get("/api/transactions")
+                        .param("limit", "1")
+                        .param("after", "cursor"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].amount").value(1000.50))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
     @Test
     void getTransactionById_WhenExists_ShouldReturnTransaction() throws Exception {
 
@@ -90,12 +177,67 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.paymentType").value("CARD"));
     }
 
+    @Test
+    void createTransactions_ShouldReturnResultPerItem() throws Exception {
+
+        TransactionDto created = new TransactionDto(1L, 1L, "Иван Петров",
+                new BigDecimal("1000.50"), "CARD", LocalDateTime.now());
+        TransactionBatchResultDto result = new TransactionBatchResultDto(1, 1, Arrays.asList(
+                new TransactionBatchResultDto.Item(0, created, null),
+                new TransactionBatchResultDto.Item(1, null, "Сумма транзакции должна быть положительной")));
+        when(transactionService.createTransactions(any())).thenReturn(result);
+
+
+        mockMvc.perform(post("/api/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(
+                                new TransactionDto(1L, new BigDecimal("1000.50"), "CARD"),
+                                new TransactionDto(1L, new BigDecimal("-1"), "CARD")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.items[0].transaction.id").value(1))
+                .andExpect(jsonPath("$.items[1].error").value("Сумма транзакции должна быть положительной"));
+    }
+
+    @Test
+    void enqueueTransaction_ShouldReturnAcceptedWithId() throws Exception {
+
+        TransactionDto accepted = new TransactionDto(51L, 1L, "Иван Петров",
+                new BigDecimal("1000.50"), "CARD", LocalDateTime.now());
+        when(transactionService.enqueueTransaction(any(TransactionDto.class))).thenReturn(accepted);
+
+
+        mockMvc.perform(post("/api/transactions/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TransactionDto(1L, new BigDecimal("1000.50"), "CARD"))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value(51));
+    }
+
+    @Test
+    void enqueueTransaction_WhenQueueIsFull_ShouldReturnTooManyRequests() throws Exception {
+
+        when(transactionService.enqueueTransaction(any(TransactionDto.class)))
+                .thenThrow(ServiceOverloadedException.forIngestionQueue(10));
+
+
+        mockMvc.perform(post("/api/transactions/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TransactionDto(1L, new BigDecimal("1000.50"), "CARD"))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
     @Test
     void getTransactionsBySeller_ShouldReturnTransactions() throws Exception {
 
         TransactionDto transaction = new TransactionDto(1L, 1L, "Иван Петров",
                 new BigDecimal("1000.50"), "CARD", LocalDateTime.now());
-        when(transactionService.getTransactionsBySellerId(1L)).thenReturn(Arrays.asList(transaction));
+        doAnswer(invocation -> {
+            Consumer<TransactionDto> consumer = invocation.getArgument(1);
+            consumer.accept(transaction);
+            return null;
+        }).when(transactionService).streamTransactionsBySellerId(eq(1L), any());
 
 
         mockMvc.perform(get("/api/transactions/seller/1"))
@@ -104,6 +246,29 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$[0].sellerName").value("Иван Петров"));
     }
 
+    @Test
+    void getTransactionsBySeller_WhenSellerNotExists_ShouldReturnNotFound() throws Exception {
+
+        doThrow(ResourceNotFoundException.forSeller(999L))
+                .when(transactionService).streamTransactionsBySellerId(eq(999L), any());
+
+
+        mockMvc.perform(get("/api/transactions/seller/999"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getTransactionsPageBySeller_ShouldReturnPage() throws Exception {
+
+        when(transactionService.getTransactionsPageBySellerId(1L, 20, null))
+                .thenReturn(new TransactionPageDto(Arrays.asList(), null));
+
+
+        mockMvc.perform(get("/api/transactions/seller/1").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
     @Test
     void getTopSeller_WhenExists_ShouldReturnTopSeller() throws Exception {
 
@@ -119,6 +284,128 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.period").value("MONTH"));
     }
 
+    @Test
+    void getTopSeller_WhenDataNotChanged_ShouldReturnNotModified() throws Exception {
+
+        AnalyticsDto.TopSeller topSeller = new AnalyticsDto.TopSeller(1L, "Иван Петров",
+                new BigDecimal("50000"), "MONTH");
+        when(transactionService.getTopSellerByPeriod("MONTH")).thenReturn(Optional.of(topSeller));
+
+        String eTag = mockMvc.perform(get("/api/transactions/analytics/top-seller")
+                        .param("period", "MONTH"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+
+        mockMvc.perform(get("/api/transactions/analytics/top-seller")
+                        .param("period", "month")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        verify(transactionService, times(1)).getTopSellerByPeriod(any());
+
+        // После записи ETag меняется и ответ отдается заново
+        analyticsResultCache.invalidate();
+        mockMvc.perform(get("/api/transactions/analytics/top-seller")
+                        .param("period", "MONTH")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getTopSellersForAllPeriods_ShouldReturnMapByPeriod() throws Exception {
+
+        Map<AnalyticsPeriod, AnalyticsDto.TopSeller> topSellers = new EnumMap<>(AnalyticsPeriod.class);
+        topSellers.put(AnalyticsPeriod.MONTH, new AnalyticsDto.TopSeller(1L, "Иван Петров", new BigDecimal("500"), "MONTH"));
+        topSellers.put(AnalyticsPeriod.YEAR, new AnalyticsDto.TopSeller(2L, "Петр Сидоров", new BigDecimal("9000"), "YEAR"));
+        when(transactionService.getTopSellersForAllPeriods()).thenReturn(topSellers);
+
+
+        mockMvc.perform(get("/api/transactions/analytics/top-seller/all"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.MONTH.sellerName").value("Иван Петров"))
+                .andExpect(jsonPath("$.YEAR.totalAmount").value(9000))
+                .andExpect(jsonPath("$.DAY").doesNotExist());
+    }
+
+    @Test
+    void getTopSellers_ShouldReturnRankingWithLimit() throws Exception {
+
+        when(transactionService.getTopSellersByPeriod("MONTH", 2)).thenReturn(Arrays.asList(
+                new AnalyticsDto.TopSeller(2L, "Петр Сидоров", new BigDecimal("9000"), "MONTH"),
+                new AnalyticsDto.TopSeller(1L, "Иван Петров", new BigDecimal("500"), "MONTH")));
+
+
+        mockMvc.perform(get("/api/transactions/analytics/top-sellers")
+                        .param("period", "MONTH")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].sellerId").value(2))
+                .andExpect(jsonPath("$[1].sellerName").value("Иван Петров"));
+    }
+
+    @Test
+    void getTopSellers_WithInvalidLimit_ShouldReturnBadRequest() throws Exception {
+
+        when(transactionService.getTopSellersByPeriod("MONTH", 0))
+                .thenThrow(ValidationException.forInvalidTopLimit(TransactionService.MAX_TOP_SELLERS));
+
+
+        mockMvc.perform(get("/api/transactions/analytics/top-sellers")
+                        .param("period", "MONTH")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getBestPeriodReport_ShouldStreamSellerRows() throws Exception {
+
+        AnalyticsDto.BestPeriod bestPeriod = new AnalyticsDto.BestPeriod(
+                LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 3, 2, 0, 0), 5L, new BigDecimal("2500"));
+        doAnswer(invocation -> {
+            Consumer<AnalyticsDto.SellerBestPeriod> consumer = invocation.getArgument(0);
+            consumer.accept(new AnalyticsDto.SellerBestPeriod(1L, "Иван Петров", 7L, bestPeriod));
+            consumer.accept(new AnalyticsDto.SellerBestPeriod(2L, "Петр Сидоров", 1L, null));
+            return null;
+        }).when(transactionService).streamBestPeriodReport(any());
+
+
+        mockMvc.perform(get("/api/transactions/analytics/best-period/report"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].bestPeriod.transactionCount").value(5))
+                .andExpect(jsonPath("$[1].sellerName").value("Петр Сидоров"))
+                .andExpect(jsonPath("$[1].bestPeriod").doesNotExist());
+    }
+
+    @Test
+    void getBestPeriodReport_WhenReportRunning_ShouldReturnTooManyRequests() throws Exception {
+
+        doThrow(ServiceOverloadedException.forReportInProgress())
+                .when(transactionService).streamBestPeriodReport(any());
+
+
+        mockMvc.perform(get("/api/transactions/analytics/best-period/report"))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void getBestPeriodReportProgress_ShouldReturnCounters() throws Exception {
+
+        when(transactionService.getBestPeriodReportProgress()).thenReturn(
+                new ReportProgressDto(true, 200L, 50L, 12000L, LocalDateTime.now(), null));
+
+
+        mockMvc.perform(get("/api/transactions/analytics/best-period/report/progress"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.running").value(true))
+                .andExpect(jsonPath("$.sellersProcessed").value(50))
+                .andExpect(jsonPath("$.sellersTotal").value(200));
+    }
+
     @Test
     void getTopSeller_WhenNotExists_ShouldReturnNotFound() throws Exception {
 
@@ -141,7 +428,11 @@ class TransactionControllerTest {
         when(transactionService.getBestPeriodForSeller(1L)).thenReturn(Optional.of(bestPeriod));
 
 
-        mockMvc.perform(get("/api/transactions/analytics/best-period/1"))
+        MvcResult result = mockMvc.perform(get("/api/transactions/analytics/best-period/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.transactionCount").value(15))
                 .andExpect(jsonPath("$.totalAmount").value(25000));
@@ -153,7 +444,157 @@ class TransactionControllerTest {
         when(transactionService.getBestPeriodForSeller(999L)).thenReturn(Optional.empty());
 
 
-        mockMvc.perform(get("/api/transactions/analytics/best-period/999"))
+        MvcResult result = mockMvc.perform(get("/api/transactions/analytics/best-period/999"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getBestPeriodForSeller_WithInsufficientData_ShouldReturnBadRequestFromExecutor() throws Exception {
+
+        when(transactionService.getBestPeriodForSeller(1L)).thenThrow(AnalyticsException.forInsufficientData());
+
+
+        MvcResult result = mockMvc.perform(get("/api/transactions/analytics/best-period/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportTransactions_ShouldWriteCsvWithFilters() throws Exception {
+
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(4);
+            writer.write("id,seller_id\n1,2\n");
+            return 1L;
+        }).when(csvExporter).writeTransactions(eq(2L), eq(LocalDateTime.of(2024, 1, 1, 0, 0)), eq(null),
+                eq("CARD"), any());
+
+        mockMvc.perform(get("/api/transactions/export.csv")
+                        .param("sellerId", "2")
+                        .param("startDate", "2024-01-01T00:00:00")
+                        .param("paymentType", "CARD"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions.csv\""))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string("id,seller_id\n1,2\n"));
+    }
+
+    @Test
+    void exportTransactions_WithAcceptEncodingGzip_ShouldCompressBody() throws Exception {
+
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(4);
+            writer.write("id,seller_id\n1,2\n");
+            return 1L;
+        }).when(csvExporter).writeTransactions(any(), any(), any(), any(), any());
+
+        MvcResult result = mockMvc.perform(get("/api/transactions/export.csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        assertEquals("id,seller_id\n1,2\n", gunzip(result.getResponse().getContentAsByteArray()));
+    }
+
+    @Test
+    void exportTransactions_WhenGzipIsRefused_ShouldNotCompressBody() throws Exception {
+
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(4);
+            writer.write("id,seller_id\n1,2\n");
+            return 1L;
+        }).when(csvExporter).writeTransactions(any(), any(), any(), any(), any());
+
+        mockMvc.perform(get("/api/transactions/export.csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string("id,seller_id\n1,2\n"));
+    }
+
+    @Test
+    void acceptsGzip_ShouldRespectQualityValues() {
+
+        assertTrue(CsvResponseWriter.acceptsGzip("gzip, deflate"));
+        assertTrue(CsvResponseWriter.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"));
+        assertTrue(CsvResponseWriter.acceptsGzip("*"));
+        assertFalse(CsvResponseWriter.acceptsGzip("gzip;q=0"));
+        assertFalse(CsvResponseWriter.acceptsGzip("gzip; q=0.000, *;q=1"));
+        assertFalse(CsvResponseWriter.acceptsGzip("*;q=0"));
+        assertFalse(CsvResponseWriter.acceptsGzip("identity"));
+        assertFalse(CsvResponseWriter.acceptsGzip(null));
+    }
+
+    @Test
+    void exportTransactions_WithInvalidPaymentType_ShouldReturnBadRequest() throws Exception {
+
+        doThrow(ValidationException.forInvalidPaymentType())
+                .when(csvExporter).writeTransactions(any(), any(), any(), eq("BITCOIN"), any());
+
+        mockMvc.perform(get("/api/transactions/export.csv").param("paymentType", "BITCOIN"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void importTransactions_ShouldPassBodyToImporter() throws Exception {
+
+        doAnswer(invocation -> {
+            assertEquals("1,100.00,CARD,2024-01-15T10:30:00\n", read(invocation.getArgument(0)));
+            return new TransactionImportResultDto(1, 0, null, 5);
+        }).when(csvImporter).importCsv(any());
+
+        mockMvc.perform(post("/api/transactions/import")
+                        .contentType("text/csv")
+                        .content("1,100.00,CARD,2024-01-15T10:30:00\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(0))
+                .andExpect(jsonPath("$.rejectsFile").doesNotExist());
+    }
+
+    @Test
+    void importTransactions_WithGzipBody_ShouldDecompress() throws Exception {
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("1,100.00,CARD,2024-01-15T10:30:00\n".getBytes(StandardCharsets.UTF_8));
+        }
+        doAnswer(invocation -> {
+            assertEquals("1,100.00,CARD,2024-01-15T10:30:00\n", read(invocation.getArgument(0)));
+            return new TransactionImportResultDto(1, 0, null, 5);
+        }).when(csvImporter).importCsv(any());
+
+        mockMvc.perform(post("/api/transactions/import")
+                        .contentType("text/csv")
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(compressed.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+    }
+
+    private static String read(InputStream input) throws IOException {
+        StringWriter result = new StringWriter();
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String gunzip(byte[] data) throws IOException {
+        return read(new GZIPInputStream(new ByteArrayInputStream(data)));
+    }
+}
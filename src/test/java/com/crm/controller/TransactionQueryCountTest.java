@@ -0,0 +1,148 @@
+package com.crm.controller;
+
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.repository.SellerDailyTotalRepository;
+import com.crm.repository.SellerRepository;
+import com.crm.repository.TransactionRepository;
+import com.crm.service.SellerCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Количество SQL-запросов на один HTTP-запрос не должно зависеть от числа транзакций в списке
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TransactionQueryCountTest {
+
+    private static final int TRANSACTIONS = 30;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SellerRepository sellerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    private List<Seller> sellers;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        sellers = sellerRepository.saveAll(Arrays.asList(
+                new Seller("Иван Петров", "ivan@mail.com"),
+                new Seller("Петр Сидоров", "petr@mail.com"),
+                new Seller("Анна Иванова", "anna@mail.com")
+        ));
+
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            transactions.add(new Transaction(sellers.get(i % sellers.size()), new BigDecimal(100 + i), PaymentType.CARD));
+        }
+        transactionRepository.saveAll(transactions);
+
+        sellerCache.invalidateAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAllInBatch();
+        sellerDailyTotalRepository.deleteAllInBatch();
+        sellerRepository.deleteAllInBatch();
+        sellerCache.invalidateAll();
+    }
+
+    @Test
+    void getAllTransactions_ShouldIssueSingleQuery() throws Exception {
+
+        mockMvc.perform(get("/api/transactions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(TRANSACTIONS))
+                .andExpect(jsonPath("$[0].sellerName").value("Иван Петров"));
+
+        assertStatements(1);
+    }
+
+    @Test
+    void getTransactionsPage_ShouldIssueSingleQuery() throws Exception {
+
+        mockMvc.perform(get("/api/transactions").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(20))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty());
+
+        assertStatements(1);
+    }
+
+    @Test
+    void getTransactionsBySeller_ShouldIssueOneQueryPlusSellerLookup() throws Exception {
+
+        Long sellerId = sellers.get(1).getId();
+
+        mockMvc.perform(get("/api/transactions/seller/" + sellerId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(TRANSACTIONS / sellers.size()))
+                .andExpect(jsonPath("$[0].sellerName").value("Петр Сидоров"));
+
+        // Проверка продавца при пустом кэше и сам список
+        assertStatements(2);
+
+        statistics.clear();
+        mockMvc.perform(get("/api/transactions/seller/" + sellerId).param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5));
+
+        assertStatements(1);
+    }
+
+    @Test
+    void getTransactionById_ShouldIssueSingleQuery() throws Exception {
+
+        Long id = transactionRepository.findAll().get(0).getId();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/transactions/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sellerName").value("Иван Петров"));
+
+        assertStatements(1);
+    }
+
+    private void assertStatements(long expected) {
+        assertEquals(expected, statistics.getPrepareStatementCount(), "SQL statements per request");
+        assertEquals(0, statistics.getEntityStatistics(Transaction.class.getName()).getLoadCount(),
+                "transactions loaded as entities");
+    }
+}
@@ -70,6 +70,36 @@ class GlobalExceptionHandlerTest {
         assertNotNull(response.getBody());
     }
 
+    @Test
+    void handleServiceOverloadedException_ShouldReturnTooManyRequests() {
+
+        when(webRequest.getDescription(false)).thenReturn("uri=/api/transactions/async");
+        ServiceOverloadedException exception = ServiceOverloadedException.forIngestionQueue(10);
+
+
+        ResponseEntity<Object> response = exceptionHandler.handleServiceOverloadedException(exception, webRequest);
+
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        assertNotNull(response.getBody());
+    }
+
+    @Test
+    void handleServiceUnavailableException_ShouldReturnServiceUnavailable() {
+
+        when(webRequest.getDescription(false)).thenReturn("uri=/api/transactions/async");
+        ServiceUnavailableException exception = ServiceUnavailableException.forIngestionShutdown();
+
+
+        ResponseEntity<Object> response = exceptionHandler.handleServiceUnavailableException(exception, webRequest);
+
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        assertNotNull(response.getBody());
+    }
+
     @Test
     void handleGenericException_ShouldReturnInternalServerError() {
 
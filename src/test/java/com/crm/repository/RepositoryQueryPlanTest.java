@@ -0,0 +1,130 @@
+package com.crm.repository;
+
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка планов запросов репозиториев: для каждого запроса с условием отбора выполняется EXPLAIN
+ * того SQL, который сгенерировал Hibernate, и тест падает, если база читает таблицу целиком.
+ * Запросы без условий (итоги по всей таблице, полный список, первая страница) в проверку не входят.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.crm.repository.RepositoryQueryPlanTest$SqlCapture")
+class RepositoryQueryPlanTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 31, 23, 59);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SellerRepository sellerRepository;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    private Long sellerId;
+
+    @BeforeEach
+    void setUp() {
+        for (int s = 0; s < 20; s++) {
+            Seller seller = entityManager.persist(new Seller("Продавец " + s, "seller" + s + "@mail.com"));
+            sellerId = seller.getId();
+            for (int i = 0; i < 50; i++) {
+                Transaction transaction = new Transaction(seller, new BigDecimal("100.00"), PaymentType.values()[i % 3]);
+                transaction.setTransactionDate(START.minusDays(60).plusHours(i * 61L + s));
+                entityManager.persist(transaction);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    void transactionQueries_ShouldUseIndexes() {
+
+        assertUsesIndex(() -> transactionRepository.sumBySellerForEdges(START, END, START, END),
+                START, END, START, END);
+        assertUsesIndex(() -> transactionRepository.sumForSellerForEdges(sellerId, START, END, START, END),
+                sellerId, START, END, START, END);
+        assertUsesIndex(() -> transactionRepository.findDtoById(1L), 1L);
+        assertUsesIndex(() -> transactionRepository.findDtosBySellerIdAndPeriod(sellerId, START, END),
+                sellerId, START, END);
+        assertUsesIndex(() -> transactionRepository.findPageAfter(START, 1L, PageRequest.of(0, 20)),
+                START, START, 1L, 20);
+        assertUsesIndex(() -> transactionRepository.findFirstPageBySellerId(sellerId, PageRequest.of(0, 20)),
+                sellerId, 20);
+        assertUsesIndex(() -> transactionRepository.findPageBySellerIdAfter(sellerId, START, 1L, PageRequest.of(0, 20)),
+                sellerId, START, START, 1L, 20);
+        assertUsesIndex(() -> transactionRepository.countBySellerId(sellerId), sellerId);
+    }
+
+    @Test
+    void sellerQueries_ShouldUseIndexes() {
+
+        assertUsesIndex(() -> sellerRepository.findByName("Продавец 3"), "Продавец 3");
+    }
+
+    @Test
+    void dailyTotalQueries_ShouldUseIndexes() {
+
+        LocalDate fromDay = START.toLocalDate();
+        LocalDate toDay = END.toLocalDate();
+
+        assertUsesIndex(() -> sellerDailyTotalRepository.sumBySellerForDays(fromDay, toDay), fromDay, toDay);
+        assertUsesIndex(() -> sellerDailyTotalRepository.sumForSellerForDays(sellerId, fromDay, toDay),
+                sellerId, fromDay, toDay);
+        assertUsesIndex(() -> sellerDailyTotalRepository.sumBySellerForPeriodStarts(fromDay, fromDay, fromDay, toDay),
+                fromDay, fromDay, fromDay, toDay);
+        assertUsesIndex(() -> sellerDailyTotalRepository.findTopSellersForDays(fromDay, toDay, PageRequest.of(0, 10)),
+                fromDay, toDay, 10);
+    }
+
+    // Параметры передаются в порядке появления '?' в сгенерированном SQL
+    private void assertUsesIndex(Runnable query, Object... parameters) {
+        SqlCapture.STATEMENTS.clear();
+        query.run();
+        assertEquals(1, SqlCapture.STATEMENTS.size(), "Ожидался один SQL-запрос: " + SqlCapture.STATEMENTS);
+
+        String sql = SqlCapture.STATEMENTS.get(0);
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+
+        assertFalse(plan.contains(".tableScan"), "Полное чтение таблицы:\n" + plan);
+    }
+
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.crm.repository;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Переход на миграции с базы, которую создавал Hibernate (ddl-auto: create, id через IDENTITY):
+ * Flyway помечает такую базу версией 1, а недостающее из V1 досоздают следующие миграции.
+ */
+class SchemaMigrationTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:schema_migration;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Схема в том виде, в каком ее создавал Hibernate до перехода на Flyway
+        jdbcTemplate.execute("CREATE TABLE sellers (id BIGINT GENERATED BY DEFAULT AS IDENTITY, "
+                + "contact_info VARCHAR(255), name VARCHAR(255) NOT NULL, registration_date TIMESTAMP NOT NULL, "
+                + "PRIMARY KEY (id))");
+        jdbcTemplate.execute("CREATE TABLE transactions (id BIGINT GENERATED BY DEFAULT AS IDENTITY, "
+                + "amount DECIMAL(10, 2) NOT NULL, payment_type VARCHAR(255) NOT NULL, "
+                + "transaction_date TIMESTAMP NOT NULL, seller_id BIGINT NOT NULL, PRIMARY KEY (id))");
+        jdbcTemplate.execute("ALTER TABLE transactions ADD CONSTRAINT FK_TRANSACTIONS_SELLER_LEGACY "
+                + "FOREIGN KEY (seller_id) REFERENCES sellers");
+
+        jdbcTemplate.update("INSERT INTO sellers (name, contact_info, registration_date) "
+                + "VALUES ('Иван Петров', 'ivan@mail.com', TIMESTAMP '2024-01-01 00:00:00')");
+        for (int i = 0; i < 120; i++) {
+            jdbcTemplate.update("INSERT INTO transactions (amount, payment_type, transaction_date, seller_id) "
+                    + "VALUES (10.50, ?, DATEADD('HOUR', ?, TIMESTAMP '2024-03-01 00:00:00'), 1)",
+                    i % 2 == 0 ? "CARD" : "CASH", i);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void migrate_FromHibernateSchema_ShouldCreateSequenceAboveExistingIdsAndBackfillDailyTotals() {
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/h2")
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+
+        // Пул Hibernate (pooled, allocationSize 50) выдает id с nextval - 49
+        long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM transactions", Long.class);
+        long nextValue = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR transactions_seq", Long.class);
+        assertTrue(nextValue - 49 > maxId, nextValue + " <= " + maxId);
+
+        Map<String, Object> totals = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS days, SUM(transaction_count) AS rows_count, SUM(total_amount) AS amount "
+                        + "FROM seller_daily_totals");
+        assertEquals(10L, ((Number) totals.get("DAYS")).longValue());
+        assertEquals(120L, ((Number) totals.get("ROWS_COUNT")).longValue());
+        assertEquals(0, new BigDecimal("1260.00").compareTo((BigDecimal) totals.get("AMOUNT")));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE INDEX_NAME = 'IDX_TRANSACTIONS_SELLER_DATE_ID' AND ORDINAL_POSITION = 1", Integer.class));
+    }
+
+    @Test
+    void migrate_EmptyDatabase_ShouldStartSequenceFromFirstIds() {
+
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/h2")
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+
+        long nextValue = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR transactions_seq", Long.class);
+        assertEquals(1, nextValue - 49);
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM seller_daily_totals", Integer.class));
+    }
+}
@@ -1,30 +1,42 @@
 package com.crm.repository;
 
+import com.crm.dto.TransactionDto;
 import com.crm.entity.PaymentType;
 import com.crm.entity.Seller;
 import com.crm.entity.Transaction;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManagerFactory;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 class TransactionRepositoryTest {
 
     @Autowired
     private TestEntityManager entityManager;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Autowired
     private TransactionRepository transactionRepository;
 
     @Test
-    void findBySellerId_ShouldReturnSellerTransactions() {
+    void findFirstPageBySellerId_ShouldReturnSellerTransactions() {
 
         Seller seller = new Seller("Иван Петров", "ivan@mail.com");
         entityManager.persist(seller);
@@ -37,14 +49,14 @@ class TransactionRepositoryTest {
         entityManager.flush();
 
 
-        List<Transaction> transactions = transactionRepository.findBySellerId(seller.getId());
+        List<TransactionDto> transactions = transactionRepository.findFirstPageBySellerId(seller.getId(), PageRequest.of(0, 10));
 
         assertEquals(2, transactions.size());
-        assertTrue(transactions.stream().allMatch(t -> t.getSeller().getId().equals(seller.getId())));
+        assertTrue(transactions.stream().allMatch(t -> t.getSellerId().equals(seller.getId())));
     }
 
     @Test
-    void findBySellerIdAndPeriod_ShouldReturnFilteredTransactions() {
+    void findDtosBySellerIdAndPeriod_ShouldReturnFilteredTransactions() {
 
         Seller seller = new Seller("Иван Петров", "ivan@mail.com");
         entityManager.persist(seller);
@@ -65,56 +77,51 @@ class TransactionRepositoryTest {
         LocalDateTime endDate = now;
 
 
-        List<Transaction> transactions = transactionRepository.findBySellerIdAndPeriod(seller.getId(), startDate, endDate);
+        List<TransactionDto> transactions = transactionRepository.findDtosBySellerIdAndPeriod(seller.getId(), startDate, endDate);
 
         assertEquals(1, transactions.size());
-        assertEquals(new BigDecimal("1000"), transactions.get(0).getAmount());
+        assertEquals(0, new BigDecimal("1000").compareTo(transactions.get(0).getAmount()));
     }
 
     @Test
-    void findTopSellerByPeriod_ShouldReturnTopSeller() {
+    void streamDatesAndAmountsBySellerId_ShouldStreamRowsInDateOrder() {
 
-        Seller seller1 = new Seller("Иван Петров", "ivan@mail.com");
-        Seller seller2 = new Seller("Петр Сидоров", "petr@mail.com");
-        entityManager.persist(seller1);
-        entityManager.persist(seller2);
+        Seller seller = new Seller("Иван Петров", "ivan@mail.com");
+        entityManager.persist(seller);
         entityManager.flush();
 
-        LocalDateTime now = LocalDateTime.now();
-
-        Transaction t1 = new Transaction(seller1, new BigDecimal("1000"), PaymentType.CARD);
-        t1.setTransactionDate(now.minusDays(1));
-        Transaction t2 = new Transaction(seller1, new BigDecimal("2000"), PaymentType.CASH);
-        t2.setTransactionDate(now.minusDays(2));
+        LocalDateTime now = LocalDateTime.of(2024, 5, 10, 12, 0);
+        Transaction transaction1 = new Transaction(seller, new BigDecimal("1000"), PaymentType.CARD);
+        transaction1.setTransactionDate(now.minusDays(1));
 
-        Transaction t3 = new Transaction(seller2, new BigDecimal("1500"), PaymentType.TRANSFER);
-        t3.setTransactionDate(now.minusDays(1));
+        Transaction transaction2 = new Transaction(seller, new BigDecimal("2000"), PaymentType.CASH);
+        transaction2.setTransactionDate(now.minusDays(3));
 
-        entityManager.persist(t1);
-        entityManager.persist(t2);
-        entityManager.persist(t3);
+        entityManager.persist(transaction1);
+        entityManager.persist(transaction2);
         entityManager.flush();
-
-        LocalDateTime startDate = now.minusDays(10);
-        LocalDateTime endDate = now;
+        entityManager.clear();
 
 
-        List<Object[]> results = transactionRepository.findTopSellerByPeriod(startDate, endDate);
+        List<Object[]> rows;
+        try (Stream<Object[]> stream = transactionRepository.streamDatesAndAmountsBySellerId(seller.getId())) {
+            rows = stream.collect(Collectors.toList());
+        }
 
-        assertEquals(2, results.size()); // Both sellers should be returned, ordered by total amount
-        assertEquals(seller1.getId(), results.get(0)[0]); // Seller1 should be first (3000 > 1500)
-        assertEquals("Иван Петров", results.get(0)[1]);
-        assertEquals(new BigDecimal("3000.00"), results.get(0)[2]);
+        assertEquals(2, rows.size());
+        assertEquals(now.minusDays(3), rows.get(0)[0]);
+        assertEquals(new BigDecimal("2000.00"), rows.get(0)[1]);
+        assertEquals(now.minusDays(1), rows.get(1)[0]);
     }
 
     @Test
-    void findBySellerIdOrderByDate_ShouldReturnOrderedTransactions() {
+    void streamDatesAndAmountsBySellerId_ShouldReturnOrderedTransactions() {
 
         Seller seller = new Seller("Иван Петров", "ivan@mail.com");
         entityManager.persist(seller);
         entityManager.flush();
 
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = LocalDateTime.of(2024, 5, 10, 12, 0);
         Transaction transaction1 = new Transaction(seller, new BigDecimal("1000"), PaymentType.CARD);
         transaction1.setTransactionDate(now.minusDays(3));
 
@@ -128,15 +135,114 @@ class TransactionRepositoryTest {
         entityManager.persist(transaction2);
         entityManager.persist(transaction3);
         entityManager.flush();
+        entityManager.clear();
+
+
+        List<Object[]> rows;
+        try (Stream<Object[]> stream = transactionRepository.streamDatesAndAmountsBySellerId(seller.getId())) {
+            rows = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(3, rows.size());
+
+        assertEquals(now.minusDays(3), rows.get(0)[0]);
+        assertEquals(now.minusDays(2), rows.get(1)[0]);
+        assertEquals(now.minusDays(1), rows.get(2)[0]);
+        assertEquals(new BigDecimal("1500.00"), rows.get(1)[1]);
+    }
+
+    @Test
+    void findPageAfter_ShouldWalkAllTransactionsInDateAndIdOrder() {
+
+        Seller seller = new Seller("Иван Петров", "ivan@mail.com");
+        entityManager.persist(seller);
+        entityManager.flush();
+
+        // Несколько транзакций с одинаковой датой: порядок внутри даты задает id
+        LocalDateTime base = LocalDateTime.of(2024, 5, 10, 12, 0);
+        List<Long> expectedIds = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Transaction transaction = new Transaction(seller, new BigDecimal(100 + i), PaymentType.CARD);
+            transaction.setTransactionDate(base.plusHours(i / 3));
+            entityManager.persist(transaction);
+            expectedIds.add(transaction.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+
+        List<Long> ids = new ArrayList<>();
+        List<TransactionDto> page = transactionRepository.findFirstPage(PageRequest.of(0, 3));
+        while (!page.isEmpty()) {
+            page.forEach(transaction -> ids.add(transaction.getId()));
+            TransactionDto last = page.get(page.size() - 1);
+            page = transactionRepository.findPageAfter(last.getTransactionDate(), last.getId(), PageRequest.of(0, 3));
+        }
+
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    void findPageBySellerIdAfter_ShouldReturnOnlySellerTransactions() {
+
+        Seller seller1 = new Seller("Иван Петров", "ivan@mail.com");
+        Seller seller2 = new Seller("Петр Сидоров", "petr@mail.com");
+        entityManager.persist(seller1);
+        entityManager.persist(seller2);
+        entityManager.flush();
+
+        LocalDateTime base = LocalDateTime.of(2024, 5, 10, 12, 0);
+        Transaction first = new Transaction(seller1, new BigDecimal("1000"), PaymentType.CARD);
+        first.setTransactionDate(base);
+        Transaction other = new Transaction(seller2, new BigDecimal("2000"), PaymentType.CASH);
+        other.setTransactionDate(base.plusHours(1));
+        Transaction second = new Transaction(seller1, new BigDecimal("3000"), PaymentType.TRANSFER);
+        second.setTransactionDate(base.plusHours(2));
+        entityManager.persist(first);
+        entityManager.persist(other);
+        entityManager.persist(second);
+        entityManager.flush();
+        entityManager.clear();
+
+
+        List<TransactionDto> page = transactionRepository.findPageBySellerIdAfter(
+                seller1.getId(), first.getTransactionDate(), first.getId(), PageRequest.of(0, 10));
+
+        assertEquals(1, page.size());
+        assertEquals(second.getId(), page.get(0).getId());
+        assertEquals("Иван Петров", page.get(0).getSellerName());
+        assertEquals("TRANSFER", page.get(0).getPaymentType());
+    }
+
+    @Test
+    void streamBySellerId_ShouldStreamDtosInDateOrder() {
+
+        Seller seller = new Seller("Иван Петров", "ivan@mail.com");
+        entityManager.persist(seller);
+        entityManager.flush();
+
+        LocalDateTime now = LocalDateTime.of(2024, 5, 10, 12, 0);
+        Transaction transaction1 = new Transaction(seller, new BigDecimal("1000"), PaymentType.CARD);
+        transaction1.setTransactionDate(now.minusDays(1));
 
+        Transaction transaction2 = new Transaction(seller, new BigDecimal("2000"), PaymentType.CASH);
+        transaction2.setTransactionDate(now.minusDays(3));
+
+        entityManager.persist(transaction1);
+        entityManager.persist(transaction2);
+        entityManager.flush();
+        entityManager.clear();
 
-        List<Transaction> transactions = transactionRepository.findBySellerIdOrderByDate(seller.getId());
 
-        assertEquals(3, transactions.size());
+        List<TransactionDto> rows;
+        try (Stream<TransactionDto> stream = transactionRepository.streamBySellerId(seller.getId())) {
+            rows = stream.collect(Collectors.toList());
+        }
 
-        assertEquals(now.minusDays(3), transactions.get(0).getTransactionDate());
-        assertEquals(now.minusDays(2), transactions.get(1).getTransactionDate());
-        assertEquals(now.minusDays(1), transactions.get(2).getTransactionDate());
+        assertEquals(2, rows.size());
+        assertEquals(transaction2.getId(), rows.get(0).getId());
+        assertEquals("CASH", rows.get(0).getPaymentType());
+        assertEquals(seller.getId(), rows.get(1).getSellerId());
     }
 
     @Test
@@ -158,6 +264,31 @@ class TransactionRepositoryTest {
         assertEquals(PaymentType.CARD, saved.getPaymentType());
     }
 
+    @Test
+    void saveAll_ShouldSendInsertsInJdbcBatches() {
+
+        Seller seller = new Seller("Иван Петров", "ivan@mail.com");
+        entityManager.persist(seller);
+        entityManager.flush();
+
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            transactions.add(new Transaction(seller, new BigDecimal(100 + i), PaymentType.CARD));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+
+        transactionRepository.saveAll(transactions);
+        entityManager.flush();
+
+        // 120 строк: несколько запросов к последовательности и 3 пакета INSERT по 50 строк
+        assertTrue(transactions.stream().allMatch(t -> t.getId() != null));
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+                "prepared statements: " + statistics.getPrepareStatementCount());
+        assertEquals(120, transactionRepository.count());
+    }
+
     @Test
     void count_ShouldReturnTransactionCount() {
 
@@ -0,0 +1,112 @@
+package com.crm.service;
+
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.repository.SalesAggregate;
+import com.crm.repository.TransactionRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Агрегатные методы не должны загружать сущности Transaction
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({AnalyticsService.class, SalesRollupService.class, TransactionService.class, TopSellerLeaderboard.class,
+        SellerCache.class, SnapshotBarrier.class, TransactionIngestionQueue.class, ColumnarTransactionStore.class,
+        AnalyticsResultCache.class, BestPeriodReport.class})
+class AggregateQueriesTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 6, 10, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    private Seller seller1;
+    private Seller seller2;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        seller1 = entityManager.persist(new Seller("Иван Петров", "ivan@mail.com"));
+        seller2 = entityManager.persist(new Seller("Петр Сидоров", "petr@mail.com"));
+
+        save(seller1, "100.00", PaymentType.CARD, BASE.plusHours(10));
+        save(seller1, "300.00", PaymentType.CASH, BASE.plusDays(1).plusHours(9));
+        save(seller1, "50.00", PaymentType.CARD, BASE.plusDays(3).plusHours(18));
+        save(seller2, "1000.00", PaymentType.TRANSFER, BASE.plusDays(2).plusHours(12));
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void aggregateQueries_ShouldReturnTotalsWithoutHydratingTransactions() {
+
+        SalesAggregate all = transactionRepository.aggregateAll();
+        assertEquals(4L, all.getTransactionCount());
+        assertEquals(new BigDecimal("1450.00"), all.getTotalAmount());
+        assertEquals(new BigDecimal("50.00"), all.getMinAmount());
+        assertEquals(new BigDecimal("1000.00"), all.getMaxAmount());
+
+        assertNoTransactionsLoaded();
+    }
+
+    @Test
+    void serviceAggregates_ShouldNotHydrateTransactions() {
+
+        assertEquals(new BigDecimal("1450.00"), analyticsService.getTotalSales());
+        assertEquals(new BigDecimal("362.50"), analyticsService.getAverageTransactionAmount());
+        assertEquals(new BigDecimal("150.00"), analyticsService.getTotalSalesByPaymentType("CARD"));
+        assertEquals(3L, analyticsService.getTransactionCountBySeller(seller1.getId()));
+
+        assertEquals(0, new BigDecimal("400.00").compareTo(transactionService.getTotalAmountBySellerAndPeriod(
+                seller1.getId(), BASE.plusHours(5), BASE.plusDays(2).plusHours(5))));
+
+        Map<Long, BigDecimal> totals = salesRollupService.getTotalsBySeller(BASE, BASE.plusDays(5));
+        assertEquals(new BigDecimal("450.00"), totals.get(seller1.getId()));
+        assertEquals(new BigDecimal("1000.00"), totals.get(seller2.getId()));
+
+        assertNoTransactionsLoaded();
+    }
+
+    private void assertNoTransactionsLoaded() {
+        assertEquals(0, statistics.getEntityStatistics(Transaction.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Transaction.class.getName()).getFetchCount());
+    }
+
+    private void save(Seller seller, String amount, PaymentType paymentType, LocalDateTime date) {
+        Transaction transaction = new Transaction(seller, new BigDecimal(amount), paymentType);
+        transaction.setTransactionDate(date);
+        entityManager.persist(transaction);
+        salesRollupService.record(seller.getId(), date, paymentType, 1, transaction.getAmount());
+    }
+}
@@ -0,0 +1,126 @@
+package com.crm.service;
+
+import com.crm.exception.AnalyticsException;
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AnalyticsExecutorTest {
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AnalyticsExecutor executor = new AnalyticsExecutor(transactionManager, 1, 1, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        executor.stop();
+    }
+
+    @Test
+    void submit_ShouldCompleteResultOnAnalyticsThread() throws Exception {
+
+        DeferredResult<String> result = executor.submit(() -> Thread.currentThread().getName());
+
+        assertTrue(awaitResult(result));
+        assertTrue(((String) result.getResult()).startsWith("analytics-"));
+    }
+
+    @Test
+    void submit_WhenTaskFails_ShouldPassExceptionToResult() throws Exception {
+
+        DeferredResult<Object> result = executor.submit(() -> {
+            throw AnalyticsException.forInsufficientData();
+        });
+
+        assertTrue(awaitResult(result));
+        assertTrue(result.getResult() instanceof AnalyticsException);
+    }
+
+    @Test
+    void submit_WhenTaskThrowsError_ShouldPassErrorToResultWithoutWaitingForTimeout() throws Exception {
+
+        DeferredResult<Object> result = executor.submit(() -> {
+            throw new StackOverflowError();
+        });
+
+        assertTrue(awaitResult(result));
+        assertTrue(result.getResult() instanceof StackOverflowError);
+    }
+
+    @Test
+    void submit_ShouldRunTaskInReadOnlyTransactionWithExecutorTimeout() throws Exception {
+
+        DeferredResult<Integer> result = executor.submit(() -> 1);
+
+        assertTrue(awaitResult(result));
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertTrue(definition.getValue().isReadOnly());
+        assertTrue(definition.getValue().getTimeout() > 0 && definition.getValue().getTimeout() <= 5,
+                "timeout: " + definition.getValue().getTimeout());
+    }
+
+    @Test
+    void submit_WhenQueryTimesOut_ShouldReturnServiceUnavailable() throws Exception {
+
+        DeferredResult<Object> result = executor.submit(() -> {
+            throw new TransactionTimedOutException("deadline");
+        });
+
+        assertTrue(awaitResult(result));
+        assertTrue(result.getResult() instanceof ServiceUnavailableException);
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_ShouldRejectAndCount() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            awaitQuietly(release);
+            return 1;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> 2);
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.submit(() -> 3));
+        assertEquals(1, executor.getActiveCount());
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getRejected());
+
+        release.countDown();
+    }
+
+    private static boolean awaitResult(DeferredResult<?> result) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.hasResult()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.crm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsResultCacheTest {
+
+    private AnalyticsResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AnalyticsResultCache(100);
+    }
+
+    @Test
+    void get_ShouldComputeOnlyOnceUntilInvalidated() {
+
+        AtomicInteger loads = new AtomicInteger();
+        List<Object> key = AnalyticsResultCache.topSellerKey(AnalyticsPeriod.MONTH, LocalDateTime.now());
+
+        assertEquals(1, (int) cache.get(key, loads::incrementAndGet));
+        assertEquals(1, (int) cache.get(key, loads::incrementAndGet));
+
+        cache.invalidate();
+
+        assertEquals(2, (int) cache.get(key, loads::incrementAndGet));
+    }
+
+    @Test
+    void get_WhenWriteHappensDuringLoad_ShouldRecomputeNextTime() {
+
+        AtomicInteger loads = new AtomicInteger();
+        List<Object> key = AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, LocalDateTime.now());
+
+        // Результат мог быть посчитан по данным до записи, поэтому он не должен считаться актуальным
+        cache.get(key, () -> {
+            cache.invalidate();
+            return loads.incrementAndGet();
+        });
+
+        assertEquals(2, (int) cache.get(key, loads::incrementAndGet));
+    }
+
+    @Test
+    void get_WhenReplicaMayLagAfterWrite_ShouldNotStoreResult() {
+
+        AnalyticsResultCache replicaCache = new AnalyticsResultCache(100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        List<Object> key = AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, LocalDateTime.now());
+        replicaCache.invalidate();
+        String eTag = replicaCache.getETag(key);
+
+        // Результат мог быть прочитан с реплики без последней записи: он считается заново при каждом запросе,
+        // а ETag окна отставания не совпадет с ETag той же версии после окна
+        assertEquals(1, (int) replicaCache.get(key, loads::incrementAndGet));
+        assertEquals(2, (int) replicaCache.get(key, loads::incrementAndGet));
+        assertTrue(eTag.contains("-lag-"), eTag);
+        assertFalse(cache.getETag(key).contains("-lag-"));
+    }
+
+    @Test
+    void topSellerKey_ShouldBeSameWithinPeriod() {
+
+        LocalDateTime morning = LocalDateTime.of(2024, 3, 5, 9, 0);
+        LocalDateTime evening = LocalDateTime.of(2024, 3, 5, 21, 30);
+
+        assertEquals(AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, morning),
+                AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, evening));
+        assertNotEquals(AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, morning),
+                AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, morning.plusDays(1)));
+        assertNotEquals(AnalyticsResultCache.topSellerKey(AnalyticsPeriod.DAY, morning),
+                AnalyticsResultCache.topSellerKey(AnalyticsPeriod.MONTH, morning));
+    }
+
+    @Test
+    void lowPerformanceKey_ShouldIgnoreAmountScale() {
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+        assertEquals(AnalyticsResultCache.lowPerformanceKey(start, end, new BigDecimal("1000")),
+                AnalyticsResultCache.lowPerformanceKey(start, end, new BigDecimal("1000.00")));
+    }
+
+    @Test
+    void lowPerformanceKey_ShouldAlignPeriodToWholeDays() {
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 1, 31, 9, 15);
+
+        assertEquals(AnalyticsResultCache.lowPerformanceKey(start, end, BigDecimal.TEN),
+                AnalyticsResultCache.lowPerformanceKey(start.plusHours(3), end.plusHours(14), BigDecimal.TEN));
+        assertNotEquals(AnalyticsResultCache.lowPerformanceKey(start, end, BigDecimal.TEN),
+                AnalyticsResultCache.lowPerformanceKey(start, end.plusDays(1), BigDecimal.TEN));
+    }
+
+    @Test
+    void getETag_ShouldChangeAfterInvalidate() {
+
+        List<Object> key = AnalyticsResultCache.topSellerKey(AnalyticsPeriod.YEAR, LocalDateTime.now());
+        String eTag = cache.getETag(key);
+        long lastModified = cache.getLastModified();
+
+        assertEquals(eTag, cache.getETag(key));
+
+        cache.invalidate();
+
+        assertNotEquals(eTag, cache.getETag(key));
+        assertTrue(cache.getLastModified() >= lastModified);
+    }
+
+    @Test
+    void getETag_ShouldDifferAfterRestart() {
+
+        List<Object> key = AnalyticsResultCache.topSellerKey(AnalyticsPeriod.YEAR, LocalDateTime.now());
+
+        // Новый экземпляр снова начинает с версии 0, но ETag старого запуска не должен дать 304
+        assertNotEquals(cache.getETag(key), new AnalyticsResultCache(100).getETag(key));
+    }
+
+    @Test
+    void getLastModified_ShouldNotBeBeforePeriodStart() {
+
+        LocalDateTime periodStart = LocalDateTime.now().plusHours(1);
+
+        assertTrue(cache.getLastModified(periodStart) > cache.getLastModified());
+    }
+}
@@ -1,5 +1,9 @@
 package com.crm.service;
 
+import com.crm.entity.PaymentType;
+import com.crm.exception.ValidationException;
+import com.crm.repository.ArchivedSellerTotalRepository;
+import com.crm.repository.SalesAggregate;
 import com.crm.repository.SellerRepository;
 import com.crm.repository.TransactionRepository;
 import org.junit.jupiter.api.Test;
@@ -11,6 +15,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,6 +27,12 @@ class AnalyticsServiceTest {
     @Mock
     private SellerRepository sellerRepository;
 
+    @Mock
+    private ColumnarTransactionStore columnarStore;
+
+    @Mock
+    private ArchivedSellerTotalRepository archivedTotalRepository;
+
     @InjectMocks
     private AnalyticsService analyticsService;
 
@@ -51,28 +62,29 @@ class AnalyticsServiceTest {
     @Test
     void getAverageTransactionAmount_WhenTransactionsExist_ShouldReturnAverage() {
 
-        BigDecimal totalSales = new BigDecimal("10000.00");
-        Long transactionCount = 5L;
-
-        when(transactionRepository.getTotalSalesAmount()).thenReturn(totalSales);
-        when(transactionRepository.count()).thenReturn(transactionCount);
+        SalesAggregate aggregate = mock(SalesAggregate.class);
+        when(aggregate.getTransactionCount()).thenReturn(5L);
+        when(aggregate.getTotalAmount()).thenReturn(new BigDecimal("10000.00"));
+        when(transactionRepository.aggregateAll()).thenReturn(aggregate);
 
         BigDecimal result = analyticsService.getAverageTransactionAmount();
 
         assertEquals(new BigDecimal("2000.00"), result);
-        verify(transactionRepository, times(1)).getTotalSalesAmount();
-        verify(transactionRepository, times(1)).count();
+        verify(transactionRepository, times(1)).aggregateAll();
+        verify(transactionRepository, never()).count();
     }
 
     @Test
     void getAverageTransactionAmount_WhenNoTransactions_ShouldReturnZero() {
 
-        when(transactionRepository.count()).thenReturn(0L);
+        SalesAggregate aggregate = mock(SalesAggregate.class);
+        when(aggregate.getTransactionCount()).thenReturn(0L);
+        when(transactionRepository.aggregateAll()).thenReturn(aggregate);
 
         BigDecimal result = analyticsService.getAverageTransactionAmount();
 
         assertEquals(BigDecimal.ZERO, result);
-        verify(transactionRepository, times(1)).count();
+        verify(transactionRepository, times(1)).aggregateAll();
     }
 
     @Test
@@ -102,12 +114,32 @@ class AnalyticsServiceTest {
 
         String paymentType = "CARD";
         BigDecimal expectedAmount = new BigDecimal("7500.25");
-        when(transactionRepository.getTotalSalesByPaymentType(paymentType)).thenReturn(expectedAmount);
+        when(transactionRepository.getTotalSalesByPaymentType(PaymentType.CARD)).thenReturn(expectedAmount);
 
         BigDecimal result = analyticsService.getTotalSalesByPaymentType(paymentType);
 
         assertEquals(expectedAmount, result);
-        verify(transactionRepository, times(1)).getTotalSalesByPaymentType(paymentType);
+        verify(transactionRepository, times(1)).getTotalSalesByPaymentType(PaymentType.CARD);
+    }
+
+    @Test
+    void getTotalSalesByPaymentType_WithInvalidType_ShouldThrowValidationException() {
+
+        assertThrows(ValidationException.class, () -> analyticsService.getTotalSalesByPaymentType("BITCOIN"));
+        verify(transactionRepository, never()).getTotalSalesByPaymentType(any());
+    }
+
+    @Test
+    void getAverageTransactionAmount_WhenColumnarStoreReady_ShouldNotQueryRepository() {
+
+        when(columnarStore.isReady()).thenReturn(true);
+        when(columnarStore.getCount()).thenReturn(4L);
+        when(columnarStore.getTotalCents()).thenReturn(1000L);
+
+        BigDecimal result = analyticsService.getAverageTransactionAmount();
+
+        assertEquals(new BigDecimal("2.50"), result);
+        verifyNoInteractions(transactionRepository);
     }
 
     @Test
@@ -122,4 +154,43 @@ class AnalyticsServiceTest {
         assertEquals(expectedCount, result);
         verify(transactionRepository, times(1)).countBySellerId(sellerId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getTotalSales_WithArchivedTransactions_ShouldAddArchivedTotal() {
+
+        when(transactionRepository.getTotalSalesAmount()).thenReturn(new BigDecimal("100.00"));
+        when(archivedTotalRepository.sumTotalAmount()).thenReturn(new BigDecimal("900.50"));
+
+        BigDecimal result = analyticsService.getTotalSales();
+
+        assertEquals(new BigDecimal("1000.50"), result);
+    }
+
+    @Test
+    void getAverageTransactionAmount_WithArchivedTransactions_ShouldAverageBothTiers() {
+
+        SalesAggregate aggregate = mock(SalesAggregate.class);
+        when(aggregate.getTransactionCount()).thenReturn(1L);
+        when(aggregate.getTotalAmount()).thenReturn(new BigDecimal("100.00"));
+        when(transactionRepository.aggregateAll()).thenReturn(aggregate);
+        when(archivedTotalRepository.sumTransactionCount()).thenReturn(3L);
+        when(archivedTotalRepository.sumTotalAmount()).thenReturn(new BigDecimal("500.00"));
+
+        BigDecimal result = analyticsService.getAverageTransactionAmount();
+
+        assertEquals(new BigDecimal("150.00"), result);
+    }
+
+    @Test
+    void getTransactionCountBySeller_WhenColumnarStoreReady_ShouldAddArchivedCount() {
+
+        when(columnarStore.isReady()).thenReturn(true);
+        when(columnarStore.getCount(1L)).thenReturn(2L);
+        when(archivedTotalRepository.sumTransactionCountBySellerId(1L)).thenReturn(5L);
+
+        Long result = analyticsService.getTransactionCountBySeller(1L);
+
+        assertEquals(7L, result);
+        verifyNoInteractions(transactionRepository);
+    }
+}
@@ -0,0 +1,195 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BestPeriodFinderTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final Seller seller = new Seller("Иван Петров", "ivan@mail.com");
+
+    @Test
+    void find_WithEmptyList_ShouldReturnEmpty() {
+
+        assertFalse(BestPeriodFinder.find(Collections.emptyList()).isPresent());
+    }
+
+    @Test
+    void find_WithSingleTransaction_ShouldReturnPointPeriod() {
+
+        Transaction transaction = transaction(BASE, "150.00");
+
+        AnalyticsDto.BestPeriod result = BestPeriodFinder.find(Collections.singletonList(transaction)).get();
+
+        assertEquals(BASE, result.getStartDate());
+        assertEquals(BASE, result.getEndDate());
+        assertEquals(1L, result.getTransactionCount());
+        assertEquals(new BigDecimal("150.00"), result.getTotalAmount());
+    }
+
+    @Test
+    void find_ShouldPickDensestWindow() {
+
+        List<Transaction> transactions = Arrays.asList(
+                transaction(BASE, "100.00"),
+                transaction(BASE.plusDays(10), "200.00"),
+                transaction(BASE.plusDays(10).plusHours(1), "300.00"),
+                transaction(BASE.plusDays(10).plusHours(2), "400.00"),
+                transaction(BASE.plusDays(20), "500.00")
+        );
+
+        AnalyticsDto.BestPeriod result = BestPeriodFinder.find(transactions).get();
+
+        assertEquals(BASE.plusDays(10), result.getStartDate());
+        assertEquals(BASE.plusDays(11), result.getEndDate());
+        assertEquals(3L, result.getTransactionCount());
+        assertEquals(new BigDecimal("900.00"), result.getTotalAmount());
+    }
+
+    @Test
+    void find_WithUnsortedInput_ShouldNotModifyInput() {
+
+        Transaction late = transaction(BASE.plusDays(3), "10.00");
+        Transaction early = transaction(BASE, "20.00");
+        List<Transaction> transactions = Arrays.asList(late, early);
+
+        assertTrue(BestPeriodFinder.find(transactions).isPresent());
+        assertSame(late, transactions.get(0));
+    }
+
+    @Test
+    void accept_WithDecreasingDates_ShouldThrowException() {
+
+        BestPeriodFinder finder = new BestPeriodFinder();
+        finder.accept(BASE.plusDays(1), BigDecimal.ONE);
+
+        assertThrows(IllegalArgumentException.class, () -> finder.accept(BASE, BigDecimal.ONE));
+    }
+
+    @Test
+    void find_WithRandomData_ShouldMatchReferenceAlgorithm() {
+
+        Random random = new Random(20240101L);
+        for (int run = 0; run < 300; run++) {
+            int size = 2 + random.nextInt(run < 200 ? 40 : 400);
+            int spreadDays = 1 + random.nextInt(120);
+            List<Transaction> transactions = randomTransactions(random, size, spreadDays);
+
+            assertSamePeriod(referenceBestPeriod(transactions), BestPeriodFinder.find(transactions), "run " + run);
+        }
+    }
+
+    @Test
+    void find_WithDuplicateTimestamps_ShouldMatchReferenceAlgorithm() {
+
+        Random random = new Random(42L);
+        for (int run = 0; run < 100; run++) {
+            List<Transaction> transactions = new ArrayList<>();
+            int size = 2 + random.nextInt(60);
+            for (int i = 0; i < size; i++) {
+                // Небольшое множество моментов времени даёт много совпадающих дат
+                LocalDateTime date = BASE.plusDays(random.nextInt(45)).plusHours(random.nextInt(2) * 12);
+                transactions.add(transaction(date, randomAmount(random)));
+            }
+            transactions.sort(Comparator.comparing(Transaction::getTransactionDate));
+
+            assertSamePeriod(referenceBestPeriod(transactions), BestPeriodFinder.find(transactions), "run " + run);
+        }
+    }
+
+    @Test
+    void find_WithLargeDenseData_ShouldMatchReferenceAlgorithm() {
+
+        Random random = new Random(7L);
+        List<Transaction> transactions = randomTransactions(random, 1500, 200);
+
+        assertSamePeriod(referenceBestPeriod(transactions), BestPeriodFinder.find(transactions), "dense");
+    }
+
+    private List<Transaction> randomTransactions(Random random, int size, int spreadDays) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            LocalDateTime date = BASE
+                    .plusDays(random.nextInt(spreadDays))
+                    .plusSeconds(random.nextInt(86_400))
+                    .plusNanos(random.nextInt(3) * 1_000L);
+            transactions.add(transaction(date, randomAmount(random)));
+        }
+        transactions.sort(Comparator.comparing(Transaction::getTransactionDate));
+        return transactions;
+    }
+
+    private String randomAmount(Random random) {
+        return BigDecimal.valueOf(1 + random.nextInt(10_000_000), 2).toPlainString();
+    }
+
+    private Transaction transaction(LocalDateTime date, String amount) {
+        Transaction transaction = new Transaction(seller, new BigDecimal(amount), PaymentType.CARD);
+        transaction.setTransactionDate(date);
+        return transaction;
+    }
+
+    private void assertSamePeriod(Optional<AnalyticsDto.BestPeriod> expected,
+                                  Optional<AnalyticsDto.BestPeriod> actual,
+                                  String message) {
+        assertEquals(expected.isPresent(), actual.isPresent(), message);
+        if (!expected.isPresent()) {
+            return;
+        }
+        assertEquals(expected.get().getStartDate(), actual.get().getStartDate(), message);
+        assertEquals(expected.get().getEndDate(), actual.get().getEndDate(), message);
+        assertEquals(expected.get().getTransactionCount(), actual.get().getTransactionCount(), message);
+        assertEquals(expected.get().getTotalAmount(), actual.get().getTotalAmount(), message);
+    }
+
+    // Исходный алгоритм TransactionService.findBestPeriod: O(30·n²), используется как эталон
+    private Optional<AnalyticsDto.BestPeriod> referenceBestPeriod(List<Transaction> transactions) {
+        AnalyticsDto.BestPeriod bestPeriod = null;
+        double maxDensity = 0;
+
+        for (int windowDays = 1; windowDays <= 30; windowDays++) {
+            for (int i = 0; i < transactions.size(); i++) {
+                LocalDateTime windowStart = transactions.get(i).getTransactionDate();
+                LocalDateTime windowEnd = windowStart.plusDays(windowDays);
+
+                List<Transaction> windowTransactions = transactions.stream()
+                        .filter(t -> !t.getTransactionDate().isBefore(windowStart) && t.getTransactionDate().isBefore(windowEnd))
+                        .collect(Collectors.toList());
+
+                if (!windowTransactions.isEmpty()) {
+                    long count = windowTransactions.size();
+                    BigDecimal totalAmount = windowTransactions.stream()
+                            .map(Transaction::getAmount)
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+                    double density = count / (double) windowDays;
+
+                    if (density > maxDensity ||
+                            (density == maxDensity && count > (bestPeriod != null ? bestPeriod.getTransactionCount() : 0))) {
+                        maxDensity = density;
+                        bestPeriod = new AnalyticsDto.BestPeriod(windowStart, windowEnd, count, totalAmount);
+                    }
+                }
+            }
+        }
+
+        return Optional.ofNullable(bestPeriod);
+    }
+}
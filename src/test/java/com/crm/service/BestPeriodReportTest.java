@@ -0,0 +1,120 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.dto.ReportProgressDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({BestPeriodReport.class, SellerCache.class})
+@TestPropertySource(properties = "crm.analytics.report.parallelism=2")
+class BestPeriodReportTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private BestPeriodReport bestPeriodReport;
+
+    @Test
+    void write_ShouldMatchPerSellerAnalysisInSellerOrder() {
+
+        // Продавцов больше, чем порций в очереди (2 потока x 4), чтобы результаты отдавались по ходу чтения
+        List<Seller> sellers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sellers.add(entityManager.persist(new Seller("Продавец " + i, "seller" + i + "@mail.com")));
+        }
+        Random random = new Random(17L);
+        for (int i = 0; i < 600; i++) {
+            Seller seller = sellers.get(random.nextInt(sellers.size() - 1));
+            save(seller, BigDecimal.valueOf(1 + random.nextInt(100_000), 2),
+                    BASE.plusDays(random.nextInt(90)).plusMinutes(random.nextInt(24 * 60)));
+        }
+        Seller single = sellers.get(sellers.size() - 1);
+        save(single, new BigDecimal("100.00"), BASE);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<AnalyticsDto.SellerBestPeriod> report = new ArrayList<>();
+        bestPeriodReport.write(report::add);
+
+        assertEquals(sellers.size(), report.size());
+        for (int i = 0; i < report.size(); i++) {
+            AnalyticsDto.SellerBestPeriod row = report.get(i);
+            assertEquals(sellers.get(i).getId(), row.getSellerId());
+            assertEquals("Продавец " + i, row.getSellerName());
+
+            List<Transaction> transactions = transactionRepository.findAll().stream()
+                    .filter(transaction -> transaction.getSeller().getId().equals(row.getSellerId()))
+                    .sorted(Comparator.comparing(Transaction::getTransactionDate))
+                    .collect(Collectors.toList());
+            assertEquals(transactions.size(), row.getTransactionCount().intValue());
+            if (transactions.size() < 2) {
+                assertNull(row.getBestPeriod());
+                continue;
+            }
+            AnalyticsDto.BestPeriod expected = BestPeriodFinder.find(transactions).get();
+            assertEquals(expected.getStartDate(), row.getBestPeriod().getStartDate());
+            assertEquals(expected.getEndDate(), row.getBestPeriod().getEndDate());
+            assertEquals(expected.getTransactionCount(), row.getBestPeriod().getTransactionCount());
+            assertEquals(expected.getTotalAmount(), row.getBestPeriod().getTotalAmount());
+        }
+
+        ReportProgressDto progress = bestPeriodReport.getProgress();
+        assertFalse(progress.isRunning());
+        assertEquals(sellers.size(), progress.getSellersTotal());
+        assertEquals(sellers.size(), progress.getSellersProcessed());
+        assertEquals(601, progress.getTransactionsRead());
+        assertNotNull(progress.getFinishedAt());
+    }
+
+    @Test
+    void write_WhileReportRunning_ShouldRejectSecondReport() {
+
+        Seller seller = entityManager.persist(new Seller("Иван Петров", "ivan@mail.com"));
+        save(seller, new BigDecimal("100.00"), BASE);
+        save(seller, new BigDecimal("200.00"), BASE.plusHours(1));
+        entityManager.flush();
+
+        List<ReportProgressDto> progress = new ArrayList<>();
+        bestPeriodReport.write(row -> {
+            progress.add(bestPeriodReport.getProgress());
+            assertThrows(ServiceOverloadedException.class, () -> bestPeriodReport.write(other -> { }));
+        });
+
+        assertEquals(1, progress.size());
+        assertTrue(progress.get(0).isRunning());
+        assertEquals(2, progress.get(0).getTransactionsRead());
+        assertFalse(bestPeriodReport.getProgress().isRunning());
+    }
+
+    private void save(Seller seller, BigDecimal amount, LocalDateTime date) {
+        Transaction transaction = new Transaction(seller, amount, PaymentType.CARD);
+        transaction.setTransactionDate(date);
+        entityManager.persist(transaction);
+    }
+}
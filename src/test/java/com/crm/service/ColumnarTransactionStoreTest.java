@@ -0,0 +1,226 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.repository.TransactionArchiveChunkRepository;
+import com.crm.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(properties = "crm.analytics.columnar.enabled=true")
+@Import({ColumnarTransactionStore.class, SnapshotBarrier.class})
+class ColumnarTransactionStoreTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 20, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionArchiveChunkRepository archiveChunkRepository;
+
+    @Autowired
+    private ColumnarTransactionStore columnarStore;
+
+    @Autowired
+    private SnapshotBarrier snapshotBarrier;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Seller seller1;
+    private Seller seller2;
+
+    @BeforeEach
+    void setUp() {
+        seller1 = entityManager.persist(new Seller("Иван Петров", "ivan@mail.com"));
+        seller2 = entityManager.persist(new Seller("Петр Сидоров", "petr@mail.com"));
+
+        Random random = new Random(5L);
+        for (int i = 0; i < 500; i++) {
+            Transaction transaction = new Transaction(random.nextBoolean() ? seller1 : seller2,
+                    BigDecimal.valueOf(1 + random.nextInt(100_000), 2), PaymentType.values()[random.nextInt(3)]);
+            transaction.setTransactionDate(BASE.plusSeconds(random.nextInt(90 * 24 * 3600)));
+            entityManager.persist(transaction);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        columnarStore.load();
+    }
+
+    @Test
+    void getTotalsBySeller_ShouldMatchDatabase() {
+
+        List<Transaction> transactions = transactionRepository.findAll();
+        Random random = new Random(7L);
+        for (int i = 0; i < 50; i++) {
+            LocalDateTime start = BASE.plusDays(random.nextInt(90)).plusMinutes(random.nextInt(3) * 720);
+            LocalDateTime end = start.plusDays(random.nextInt(45)).plusMinutes(random.nextInt(24 * 60));
+
+            Map<Long, BigDecimal> expected = new HashMap<>();
+            for (Transaction transaction : transactions) {
+                if (!transaction.getTransactionDate().isBefore(start) && !transaction.getTransactionDate().isAfter(end)) {
+                    expected.merge(transaction.getSeller().getId(), transaction.getAmount(), BigDecimal::add);
+                }
+            }
+
+            assertEquals(expected, columnarStore.getTotalsBySeller(start, end), start + " - " + end);
+            assertEquals(0, expected.getOrDefault(seller1.getId(), BigDecimal.ZERO)
+                    .compareTo(columnarStore.getTotalForSeller(seller1.getId(), start, end)));
+        }
+    }
+
+    @Test
+    void totalsAndCounts_ShouldMatchDatabase() {
+
+        assertEquals(transactionRepository.getTotalSalesAmount(), columnarStore.getTotal());
+        assertEquals(transactionRepository.getTotalSalesByPaymentType(PaymentType.CARD),
+                columnarStore.getTotal(PaymentType.CARD));
+        assertEquals(transactionRepository.count(), columnarStore.getCount());
+        assertEquals(transactionRepository.countBySellerId(seller2.getId()).longValue(),
+                columnarStore.getCount(seller2.getId()));
+    }
+
+    @Test
+    void findBestPeriod_ShouldMatchFinderOverEntities() {
+
+        Optional<AnalyticsDto.BestPeriod> expected =
+                BestPeriodFinder.find(transactionRepository.findAll().stream()
+                        .filter(transaction -> transaction.getSeller().getId().equals(seller1.getId()))
+                        .collect(Collectors.toList()));
+        Optional<AnalyticsDto.BestPeriod> result = columnarStore.findBestPeriod(seller1.getId()).result();
+
+        assertTrue(result.isPresent());
+        assertEquals(expected.get().getStartDate(), result.get().getStartDate());
+        assertEquals(expected.get().getEndDate(), result.get().getEndDate());
+        assertEquals(expected.get().getTransactionCount(), result.get().getTransactionCount());
+        assertEquals(0, expected.get().getTotalAmount().compareTo(result.get().getTotalAmount()));
+    }
+
+    @Test
+    void append_ShouldAddTransactionsCommittedAfterLoad() {
+
+        long count = columnarStore.getCount();
+        LocalDateTime now = LocalDateTime.now();
+
+        appendCommitted(columnarStore, seller1.getId(), now.plusSeconds(1), "10.00");
+        appendCommitted(columnarStore, seller1.getId(), BASE, "10.00");
+
+        assertEquals(count + 2, columnarStore.getCount());
+        assertEquals(new BigDecimal("10.00"),
+                columnarStore.getTotalForSeller(seller1.getId(), now, now.plusMinutes(1)));
+    }
+
+    @Test
+    void load_ShouldKeepUnder32BytesPerTransaction() {
+
+        assertTrue(columnarStore.isReady());
+        assertTrue(columnarStore.getMemoryBytes() < 32L * columnarStore.getCount(),
+                columnarStore.getMemoryBytes() + " bytes for " + columnarStore.getCount());
+    }
+
+    @Test
+    void load_WhenDisabled_ShouldStayNotReady() {
+
+        ColumnarTransactionStore disabled = new ColumnarTransactionStore(transactionRepository, archiveChunkRepository,
+                snapshotBarrier, false);
+        disabled.load();
+
+        assertFalse(disabled.isReady());
+        assertEquals(0, disabled.getCount());
+    }
+
+    @Test
+    void load_ShouldServePreviousPartitionsUntilSwapAndKeepAppendsCommittedDuringLoad() {
+
+        TransactionRepository repository = mock(TransactionRepository.class);
+        ColumnarTransactionStore store = new ColumnarTransactionStore(repository, archiveChunkRepository, snapshotBarrier, true);
+        LocalDateTime date = BASE.plusDays(1);
+        when(repository.streamAnalyticsRows())
+                .thenReturn(Stream.<Object[]>of(row(seller1.getId(), date, "100.00")))
+                .thenAnswer(invocation -> {
+                    // Пока новые разделы строятся, читатели получают полные итоги по прежним
+                    assertTrue(store.isReady());
+                    assertEquals(new BigDecimal("100.00"), store.getTotal());
+                    // Зафиксирована после снимка, поэтому в выборке ее нет
+                    appendCommitted(store, seller2.getId(), date.minusDays(1), "50.00");
+                    assertEquals(new BigDecimal("150.00"), store.getTotal());
+                    return Stream.<Object[]>of(row(seller1.getId(), date, "100.00"), row(seller2.getId(), date, "30.00"));
+                });
+
+        store.load();
+        store.load();
+
+        assertEquals(3, store.getCount());
+        assertEquals(new BigDecimal("180.00"), store.getTotal());
+    }
+
+    @Test
+    void load_WithArchivingDuringLoad_ShouldDropArchivedMonthsReadFromSnapshot() {
+
+        TransactionRepository repository = mock(TransactionRepository.class);
+        ColumnarTransactionStore store = new ColumnarTransactionStore(repository, archiveChunkRepository, snapshotBarrier, true);
+        LocalDateTime february = LocalDateTime.of(2024, 2, 1, 0, 0);
+        when(repository.streamAnalyticsRows()).thenAnswer(invocation -> {
+            store.removeBefore(february);
+            return Stream.<Object[]>of(row(seller1.getId(), BASE, "100.00"), row(seller1.getId(), february, "30.00"));
+        });
+
+        store.load();
+
+        assertEquals(1, store.getCount());
+        assertEquals(new BigDecimal("30.00"), store.getTotal());
+        assertFalse(store.isReadyFor(BASE));
+    }
+
+    @Test
+    void removeBefore_ShouldDropArchivedMonthsAndRejectPeriodsStartingInArchive() {
+
+        assertFalse(columnarStore.getTotalsBySeller(BASE.withDayOfMonth(1), BASE.withDayOfMonth(31)).isEmpty());
+        long countBefore = columnarStore.getCount();
+
+        LocalDateTime february = LocalDateTime.of(2024, 2, 1, 0, 0);
+        columnarStore.removeBefore(february);
+
+        assertTrue(columnarStore.getCount() < countBefore);
+        assertTrue(columnarStore.getTotalsBySeller(BASE.withDayOfMonth(1), BASE.withDayOfMonth(31)).isEmpty());
+        assertFalse(columnarStore.isReadyFor(BASE));
+        assertTrue(columnarStore.isReadyFor(february));
+    }
+
+    private void appendCommitted(ColumnarTransactionStore store, Long sellerId, LocalDateTime date, String amount) {
+        TransactionTemplate writer = new TransactionTemplate(transactionManager);
+        writer.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        writer.executeWithoutResult(status -> store.append(sellerId, date, new BigDecimal(amount), PaymentType.CASH));
+    }
+
+    private static Object[] row(Long sellerId, LocalDateTime date, String amount) {
+        return new Object[]{sellerId, date, new BigDecimal(amount), PaymentType.CARD};
+    }
+}
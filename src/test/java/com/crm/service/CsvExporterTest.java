@@ -0,0 +1,132 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.exception.ValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import({CsvExporter.class, SellerCache.class})
+class CsvExporterTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime FEBRUARY = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CsvExporter csvExporter;
+
+    @MockBean
+    private SellerService sellerService;
+
+    private Seller seller1;
+    private Seller seller2;
+    private Transaction first;
+    private Transaction second;
+    private Transaction third;
+
+    @BeforeEach
+    void setUp() {
+        seller1 = entityManager.persist(new Seller("ООО \"Ромашка\", филиал", "romashka@mail.com"));
+        seller2 = entityManager.persist(new Seller("Петр Сидоров", "petr@mail.com"));
+
+        first = persist(seller1, "100.50", PaymentType.CASH, JANUARY.plusDays(2).plusHours(10));
+        second = persist(seller2, "2500.00", PaymentType.CARD, JANUARY.plusDays(5));
+        third = persist(seller1, "75.25", PaymentType.CARD, FEBRUARY.plusDays(1).plusMinutes(30));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void writeTransactions_WithoutFilters_ShouldWriteAllRowsInDateOrder() throws IOException {
+
+        StringWriter writer = new StringWriter();
+        long rows = csvExporter.writeTransactions(null, null, null, null, writer);
+
+        assertEquals(3, rows);
+        assertEquals(CsvExporter.TRANSACTIONS_HEADER
+                + first.getId() + "," + seller1.getId() + ",\"ООО \"\"Ромашка\"\", филиал\",100.50,CASH,2024-01-03T10:00:00\n"
+                + second.getId() + "," + seller2.getId() + ",Петр Сидоров,2500.00,CARD,2024-01-06T00:00:00\n"
+                + third.getId() + "," + seller1.getId() + ",\"ООО \"\"Ромашка\"\", филиал\",75.25,CARD,2024-02-02T00:30:00\n",
+                writer.toString());
+    }
+
+    @Test
+    void writeTransactions_WithFilters_ShouldWriteMatchingRows() throws IOException {
+
+        StringWriter bySeller = new StringWriter();
+        assertEquals(2, csvExporter.writeTransactions(seller1.getId(), null, null, null, bySeller));
+
+        StringWriter byPeriodAndType = new StringWriter();
+        assertEquals(1, csvExporter.writeTransactions(null, JANUARY, FEBRUARY, "CARD", byPeriodAndType));
+        assertTrue(byPeriodAndType.toString().endsWith(
+                second.getId() + "," + seller2.getId() + ",Петр Сидоров,2500.00,CARD,2024-01-06T00:00:00\n"));
+
+        StringWriter empty = new StringWriter();
+        assertEquals(0, csvExporter.writeTransactions(seller2.getId(), FEBRUARY, null, null, empty));
+        assertEquals(CsvExporter.TRANSACTIONS_HEADER, empty.toString());
+    }
+
+    @Test
+    void writeTransactions_WithInvalidParameters_ShouldThrowBeforeWriting() {
+        StringWriter writer = new StringWriter();
+
+        assertThrows(ValidationException.class,
+                () -> csvExporter.writeTransactions(null, null, null, "BITCOIN", writer));
+        assertThrows(ValidationException.class,
+                () -> csvExporter.writeTransactions(null, FEBRUARY, JANUARY, null, writer));
+        assertThrows(ResourceNotFoundException.class,
+                () -> csvExporter.writeTransactions(999L, null, null, null, writer));
+        assertEquals("", writer.toString());
+    }
+
+    @Test
+    void writeSellersWithTotalLessThan_ShouldWriteServiceResult() throws IOException {
+        BigDecimal minAmount = new BigDecimal("1000");
+        when(sellerService.getSellersWithTotalLessThan(JANUARY, FEBRUARY, minAmount)).thenReturn(Arrays.asList(
+                new AnalyticsDto.SellerWithTotal(seller1.getId(), seller1.getName(), new BigDecimal("175.75")),
+                new AnalyticsDto.SellerWithTotal(seller2.getId(), seller2.getName(), BigDecimal.ZERO)));
+
+        StringWriter writer = new StringWriter();
+        long rows = csvExporter.writeSellersWithTotalLessThan(JANUARY, FEBRUARY, minAmount, writer);
+
+        assertEquals(2, rows);
+        assertEquals(CsvExporter.SELLER_TOTALS_HEADER
+                + seller1.getId() + ",\"ООО \"\"Ромашка\"\", филиал\",175.75\n"
+                + seller2.getId() + ",Петр Сидоров,0\n", writer.toString());
+    }
+
+    @Test
+    void writeSellersWithTotalLessThan_WithInvalidDateRange_ShouldThrowException() {
+
+        assertThrows(ValidationException.class, () -> csvExporter.writeSellersWithTotalLessThan(
+                FEBRUARY, JANUARY, BigDecimal.ONE, new StringWriter()));
+        verifyNoInteractions(sellerService);
+    }
+
+    private Transaction persist(Seller seller, String amount, PaymentType paymentType, LocalDateTime date) {
+        Transaction transaction = new Transaction(seller, new BigDecimal(amount), paymentType);
+        transaction.setTransactionDate(date);
+        return entityManager.persist(transaction);
+    }
+}
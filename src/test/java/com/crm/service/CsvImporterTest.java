@@ -0,0 +1,205 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.dto.TransactionDto;
+import com.crm.dto.TransactionImportResultDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.repository.SellerDailyTotalRepository;
+import com.crm.repository.SellerRepository;
+import com.crm.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"crm.import.chunk-size=7", "crm.analytics.columnar.enabled=true"})
+@ActiveProfiles("test")
+class CsvImporterTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @Autowired
+    private CsvImporter csvImporter;
+
+    @Autowired
+    private SellerRepository sellerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    @Autowired
+    private TopSellerLeaderboard topSellerLeaderboard;
+
+    @Autowired
+    private ColumnarTransactionStore columnarStore;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    private Seller seller1;
+    private Seller seller2;
+    private Path rejectsFile;
+
+    @BeforeEach
+    void setUp() {
+        seller1 = sellerRepository.save(new Seller("Иван Петров", "ivan@mail.com"));
+        seller2 = sellerRepository.save(new Seller("ООО \"Ромашка\", филиал", "romashka@mail.com"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        transactionRepository.deleteAllInBatch();
+        sellerDailyTotalRepository.deleteAllInBatch();
+        sellerRepository.deleteAllInBatch();
+        sellerCache.invalidateAll();
+        if (rejectsFile != null) {
+            Files.deleteIfExists(rejectsFile);
+        }
+    }
+
+    @Test
+    void importCsv_ShouldLoadRowsBySellerIdAndName() throws IOException {
+
+        TransactionImportResultDto result = importCsv("seller,amount,payment_type,transaction_date\n"
+                + seller1.getId() + ",100.50,CARD,2024-03-01T10:00:00\n"
+                + "\"ООО \"\"Ромашка\"\", филиал\",200.00,CASH,2024-03-02 11:30:00\n"
+                + "Иван Петров,10.005,TRANSFER,2024-03-02T12:00\n");
+
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertNull(result.getRejectsFile());
+        assertEquals(2L, transactionRepository.countBySellerId(seller1.getId()));
+
+        List<TransactionDto> rows = transactionRepository.findDtosBySellerIdAndPeriod(seller2.getId(), BASE, BASE.plusDays(3));
+        assertEquals(1, rows.size());
+        TransactionDto named = rows.get(0);
+        assertEquals(0, new BigDecimal("200.00").compareTo(named.getAmount()));
+        assertEquals("CASH", named.getPaymentType());
+        assertEquals(LocalDateTime.of(2024, 3, 2, 11, 30), named.getTransactionDate());
+
+        // Сумма округлена до копеек, итоги совпадают с записанными строками
+        assertEquals(0, new BigDecimal("110.51").compareTo(salesRollupService.getTotalForSeller(
+                seller1.getId(), BASE, BASE.plusDays(3))));
+    }
+
+    @Test
+    void importCsv_ShouldWriteRejectedRowsToSeparateFile() throws IOException {
+
+        TransactionImportResultDto result = importCsv(seller1.getId() + ",100.00,CARD,2024-03-01T10:00:00\n"
+                + seller1.getId() + ",0,CARD,2024-03-01T10:00:00\n"
+                + seller1.getId() + ",2000000,CARD,2024-03-01T10:00:00\n"
+                + seller1.getId() + ",abc,CARD,2024-03-01T10:00:00\n"
+                + seller1.getId() + ",10.00,BITCOIN,2024-03-01T10:00:00\n"
+                + seller1.getId() + ",10.00,CARD,01.03.2024\n"
+                + ",10.00,CARD,2024-03-01T10:00:00\n"
+                + "999999,10.00,CARD,2024-03-01T10:00:00\n"
+                + "Неизвестный продавец,10.00,CARD,2024-03-01T10:00:00\n"
+                + seller1.getId() + ",10.00,CARD\n"
+                + seller1.getId() + ",50.00,CASH,2024-03-05T09:00:00\n");
+
+        assertEquals(2, result.getImported());
+        assertEquals(9, result.getRejected());
+        assertEquals(2L, transactionRepository.countBySellerId(seller1.getId()));
+
+        rejectsFile = Paths.get(result.getRejectsFile());
+        List<String> lines = Files.readAllLines(rejectsFile, StandardCharsets.UTF_8);
+        assertEquals(CsvImporter.REJECTS_HEADER.trim(), lines.get(0));
+        assertEquals(10, lines.size());
+        assertEquals("2,Сумма транзакции должна быть положительной," + seller1.getId() + ",0,CARD,2024-03-01T10:00:00",
+                lines.get(1));
+        assertTrue(lines.get(3).startsWith("4,Сумма транзакции должна быть положительной"));
+        assertTrue(lines.get(4).startsWith("5,\"Недопустимый тип оплаты"));
+        assertTrue(lines.get(5).startsWith("6,Некорректная дата транзакции"));
+        assertTrue(lines.get(6).startsWith("7,ID продавца обязателен"));
+        assertTrue(lines.get(7).startsWith("8,Продавец с ID '999999' не найден"));
+        assertTrue(lines.get(8).startsWith("9,Продавец с именем 'Неизвестный продавец' не найден"));
+        assertTrue(lines.get(9).startsWith("10,Строка CSV должна содержать 4 поля"));
+    }
+
+    @Test
+    void importCsv_ShouldKeepDailyTotalsConsistentAcrossChunks() throws IOException {
+
+        Random random = new Random(7L);
+        Map<Long, BigDecimal> expected = new HashMap<>();
+        StringBuilder csv = new StringBuilder("seller,amount,payment_type,transaction_date\n");
+        for (int i = 0; i < 500; i++) {
+            Seller seller = random.nextBoolean() ? seller1 : seller2;
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+            LocalDateTime date = BASE.plusDays(random.nextInt(30)).plusMinutes(random.nextInt(24 * 60));
+            csv.append(seller.getId()).append(',').append(amount).append(',')
+                    .append(PaymentType.values()[random.nextInt(3)]).append(',').append(date).append('\n');
+            expected.merge(seller.getId(), amount, BigDecimal::add);
+        }
+
+        TransactionImportResultDto result = importCsv(csv.toString());
+
+        assertEquals(500, result.getImported());
+        Map<Long, BigDecimal> totals = salesRollupService.getTotalsBySeller(BASE, BASE.plusDays(30));
+        assertEquals(0, expected.get(seller1.getId()).compareTo(totals.get(seller1.getId())));
+        assertEquals(0, expected.get(seller2.getId()).compareTo(totals.get(seller2.getId())));
+    }
+
+    @Test
+    void importCsv_WithRowsDatedBeforeLoad_ShouldApplyEachChunkToLeaderboardAndColumnarStore() throws IOException {
+
+        // Строки сегодняшнего дня, но раньше загрузки рейтинга и хранилища при старте; две порции по chunk-size
+        LocalDateTime date = LocalDate.now().atStartOfDay();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 9; i++) {
+            csv.append(seller2.getId()).append(",50.00,CASH,").append(date.plusSeconds(i)).append('\n');
+        }
+        csv.append(seller1.getId()).append(",100.00,CARD,").append(date).append('\n');
+        // Хранилище в памяти сохраняет строки других тестов этого контекста
+        BigDecimal totalBefore = analyticsService.getTotalSales();
+
+        TransactionImportResultDto result = importCsv(csv.toString());
+
+        assertEquals(10, result.getImported());
+        assertTrue(topSellerLeaderboard.isReady());
+        assertTrue(columnarStore.isReady());
+        assertEquals(0, new BigDecimal("550.00").compareTo(analyticsService.getTotalSales().subtract(totalBefore)));
+        assertEquals(0, new BigDecimal("450.00").compareTo(
+                columnarStore.getTotalForSeller(seller2.getId(), date, date.plusMinutes(1))));
+
+        AnalyticsDto.TopSeller top = transactionService.getTopSellerByPeriod("DAY").get();
+        assertEquals(seller2.getId(), top.getSellerId());
+        assertEquals(0, new BigDecimal("450.00").compareTo(top.getTotalAmount()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(
+                topSellerLeaderboard.getTopSellers(AnalyticsPeriod.DAY, 2).get(1).getTotalAmount()));
+    }
+
+    private TransactionImportResultDto importCsv(String csv) throws IOException {
+        return csvImporter.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}
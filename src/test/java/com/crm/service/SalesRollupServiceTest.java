@@ -0,0 +1,425 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.SellerDailyTotal;
+import com.crm.entity.Transaction;
+import com.crm.exception.ValidationException;
+import com.crm.repository.SellerDailyTotalRepository;
+import com.crm.repository.TransactionArchiveChunkRepository;
+import com.crm.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({SalesRollupService.class, SellerService.class, SellerCache.class, ColumnarTransactionStore.class,
+        SnapshotBarrier.class, AnalyticsResultCache.class})
+class SalesRollupServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private SellerService sellerService;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionArchiveChunkRepository archiveChunkRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Seller seller1;
+    private Seller seller2;
+
+    @BeforeEach
+    void setUp() {
+        seller1 = entityManager.persist(new Seller("Иван Петров", "ivan@mail.com"));
+        seller2 = entityManager.persist(new Seller("Петр Сидоров", "petr@mail.com"));
+        entityManager.flush();
+    }
+
+    @Test
+    void record_ShouldAccumulateDailyTotals() {
+
+        save(seller1, "100.00", PaymentType.CARD, BASE.plusHours(1));
+        save(seller1, "50.50", PaymentType.CARD, BASE.plusHours(5));
+        save(seller1, "10.00", PaymentType.CASH, BASE.plusHours(6));
+        entityManager.clear();
+
+        SellerDailyTotal card = sellerDailyTotalRepository.findById(
+                new SellerDailyTotal.Key(seller1.getId(), BASE.toLocalDate(), PaymentType.CARD)).get();
+
+        assertEquals(2L, card.getTransactionCount());
+        assertEquals(new BigDecimal("150.50"), card.getTotalAmount());
+        assertEquals(2, sellerDailyTotalRepository.count());
+    }
+
+    @Test
+    void recordAll_ShouldAddToExistingAndInsertNewKeys() {
+
+        save(seller1, "100.00", PaymentType.CARD, BASE.plusHours(1));
+        entityManager.flush();
+
+        salesRollupService.recordAll(Arrays.asList(
+                new SellerDailyTotal(seller1.getId(), BASE.toLocalDate(), PaymentType.CARD, 3, new BigDecimal("30.00")),
+                new SellerDailyTotal(seller1.getId(), BASE.toLocalDate(), PaymentType.CASH, 1, new BigDecimal("5.00")),
+                new SellerDailyTotal(seller2.getId(), BASE.toLocalDate().plusDays(1), PaymentType.CARD, 2, new BigDecimal("7.50"))));
+        entityManager.clear();
+
+        SellerDailyTotal card = sellerDailyTotalRepository.findById(
+                new SellerDailyTotal.Key(seller1.getId(), BASE.toLocalDate(), PaymentType.CARD)).get();
+        SellerDailyTotal next = sellerDailyTotalRepository.findById(
+                new SellerDailyTotal.Key(seller2.getId(), BASE.toLocalDate().plusDays(1), PaymentType.CARD)).get();
+
+        assertEquals(4L, card.getTransactionCount());
+        assertEquals(new BigDecimal("130.00"), card.getTotalAmount());
+        assertEquals(2L, next.getTransactionCount());
+        assertEquals(new BigDecimal("7.50"), next.getTotalAmount());
+        assertEquals(3, sellerDailyTotalRepository.count());
+    }
+
+    @Test
+    void record_ConcurrentFirstWritesOfSameKey_ShouldCountBoth() throws Exception {
+
+        SellerDailyTotal total = raceFirstWrite(() ->
+                salesRollupService.record(seller1.getId(), BASE.plusHours(2), PaymentType.CARD, 1, new BigDecimal("50.00")));
+
+        assertEquals(2L, total.getTransactionCount());
+        assertEquals(new BigDecimal("150.00"), total.getTotalAmount());
+    }
+
+    @Test
+    void recordAll_ConcurrentFirstWritesOfSameKey_ShouldCountBoth() throws Exception {
+
+        SellerDailyTotal.Key otherKey = new SellerDailyTotal.Key(seller2.getId(), BASE.toLocalDate(), PaymentType.CASH);
+        try {
+            SellerDailyTotal total = raceFirstWrite(() -> salesRollupService.recordAll(Arrays.asList(
+                    new SellerDailyTotal(seller2.getId(), BASE.toLocalDate(), PaymentType.CASH, 2, new BigDecimal("7.50")),
+                    new SellerDailyTotal(seller1.getId(), BASE.toLocalDate(), PaymentType.CARD, 3, new BigDecimal("30.00")))));
+
+            assertEquals(4L, total.getTransactionCount());
+            assertEquals(new BigDecimal("130.00"), total.getTotalAmount());
+            // Ключ без гонки из отката пакета тоже записан один раз
+            assertEquals(2L, committed(otherKey).get().getTransactionCount());
+        } finally {
+            deleteCommitted(otherKey);
+        }
+    }
+
+    @Test
+    void getTotalsBySeller_ShouldMatchRawTransactions() {
+
+        Random random = new Random(11L);
+        for (int i = 0; i < 200; i++) {
+            Seller seller = random.nextBoolean() ? seller1 : seller2;
+            LocalDateTime date = BASE.plusDays(random.nextInt(40)).plusMinutes(random.nextInt(24 * 60));
+            save(seller, BigDecimal.valueOf(1 + random.nextInt(100_000), 2).toPlainString(),
+                    PaymentType.values()[random.nextInt(3)], date);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        List<Transaction> transactions = transactionRepository.findAll();
+
+        for (int i = 0; i < 50; i++) {
+            LocalDateTime start = BASE.plusDays(random.nextInt(40)).plusMinutes(random.nextInt(3) * 720);
+            LocalDateTime end = start.plusDays(random.nextInt(15)).plusMinutes(random.nextInt(24 * 60));
+
+            Map<Long, BigDecimal> expected = new HashMap<>();
+            for (Transaction transaction : transactions) {
+                if (!transaction.getTransactionDate().isBefore(start) && !transaction.getTransactionDate().isAfter(end)) {
+                    expected.merge(transaction.getSeller().getId(), transaction.getAmount(), BigDecimal::add);
+                }
+            }
+
+            assertEquals(expected, salesRollupService.getTotalsBySeller(start, end), start + " - " + end);
+            assertEquals(0, expected.getOrDefault(seller1.getId(), BigDecimal.ZERO)
+                    .compareTo(salesRollupService.getTotalForSeller(seller1.getId(), start, end)));
+        }
+    }
+
+    @Test
+    void getTotalsBySeller_WithInclusiveEndAtMidnight_ShouldCountBoundaryTransaction() {
+
+        save(seller1, "100.00", PaymentType.CARD, BASE.plusDays(1));
+        save(seller1, "20.00", PaymentType.CARD, BASE.plusHours(12));
+        save(seller1, "5.00", PaymentType.CARD, BASE.plusDays(1).plusSeconds(1));
+
+        Map<Long, BigDecimal> totals = salesRollupService.getTotalsBySeller(BASE, BASE.plusDays(1));
+
+        assertEquals(new BigDecimal("120.00"), totals.get(seller1.getId()));
+    }
+
+    @Test
+    void getTotalsBySellerForDays_ShouldCountWholeDaysIncludingArchive() {
+
+        save(seller1, "100.00", PaymentType.CARD, BASE.plusHours(10));
+        save(seller1, "20.00", PaymentType.CASH, BASE.plusDays(1).plusHours(23));
+        save(seller1, "5.00", PaymentType.CARD, BASE.plusDays(2).plusHours(1));
+        save(seller2, "7.00", PaymentType.CARD, BASE.minusDays(1).plusHours(12));
+        // Месяц до BASE в архиве: его дни остаются в итогах
+        archiveChunkRepository.insert(BASE.minusMonths(1), BASE, 0, BigDecimal.ZERO, BASE, new byte[0]);
+
+        Map<Long, BigDecimal> totals = salesRollupService.getTotalsBySellerForDays(
+                BASE.toLocalDate().minusDays(1), BASE.toLocalDate().plusDays(1));
+
+        assertEquals(new BigDecimal("120.00"), totals.get(seller1.getId()));
+        assertEquals(new BigDecimal("7.00"), totals.get(seller2.getId()));
+    }
+
+    @Test
+    void getTotalsBySeller_WithPartialDayInArchive_ShouldReject() {
+
+        save(seller1, "100.00", PaymentType.CARD, BASE.plusDays(1).plusHours(6));
+        save(seller1, "20.00", PaymentType.CARD, BASE.plusDays(2).plusHours(12));
+        save(seller1, "5.00", PaymentType.CARD, BASE.plusDays(3).plusHours(1));
+        // Месяц до BASE перенесен в архив, а первые дни марта еще в оперативной таблице
+        archiveChunkRepository.insert(BASE.minusMonths(1), BASE, 0, BigDecimal.ZERO, BASE, new byte[0]);
+
+        LocalDateTime archivedStart = BASE.minusDays(3).plusHours(12);
+        assertThrows(ValidationException.class,
+                () -> salesRollupService.getTotalsBySeller(archivedStart, BASE.plusDays(3)));
+        assertThrows(ValidationException.class,
+                () -> salesRollupService.getTotalForSeller(seller1.getId(), archivedStart, BASE.plusDays(3)));
+        assertThrows(ValidationException.class,
+                () -> salesRollupService.getTotalsBySeller(BASE.minusDays(3), BASE.minusDays(1).plusHours(6)));
+
+        // Границы в начале дня внутри архива и неполные дни после него считаются как раньше
+        assertEquals(new BigDecimal("120.00"),
+                salesRollupService.getTotalsBySeller(BASE.minusDays(3), BASE.plusDays(2).plusHours(12)).get(seller1.getId()));
+        assertEquals(0, new BigDecimal("125.00").compareTo(
+                salesRollupService.getTotalForSeller(seller1.getId(), BASE.minusDays(3), BASE.plusDays(3).plusHours(1))));
+        assertEquals(new BigDecimal("25.00"),
+                salesRollupService.getTotalsBySeller(BASE.plusDays(1).plusHours(7), BASE.plusDays(4)).get(seller1.getId()));
+        assertTrue(salesRollupService.getTotalsBySeller(BASE.minusDays(3), BASE).isEmpty());
+    }
+
+    @Test
+    void getTotalsBySellerForCurrentPeriods_ShouldMatchSeparatePeriodQueries() {
+
+        LocalDateTime now = LocalDateTime.of(2024, 5, 15, 12, 0);
+        Random random = new Random(13L);
+        for (int i = 0; i < 300; i++) {
+            Seller seller = random.nextBoolean() ? seller1 : seller2;
+            // С конца прошлого года до следующего дня, включая часть текущего дня после now
+            LocalDateTime date = LocalDateTime.of(2023, 12, 20, 0, 0)
+                    .plusDays(random.nextInt(148)).plusMinutes(random.nextInt(24 * 60));
+            save(seller, BigDecimal.valueOf(1 + random.nextInt(100_000), 2).toPlainString(),
+                    PaymentType.values()[random.nextInt(3)], date);
+        }
+        save(seller2, "10.00", PaymentType.CARD, now.minusHours(1));
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<AnalyticsPeriod, Map<Long, BigDecimal>> totals = salesRollupService.getTotalsBySellerForCurrentPeriods(now);
+
+        for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+            assertEquals(salesRollupService.getTotalsBySeller(period.startOf(now), now), totals.get(period), period.name());
+        }
+        assertFalse(totals.get(AnalyticsPeriod.DAY).isEmpty());
+    }
+
+    @Test
+    void getTopSellersForCurrentPeriod_ShouldReturnLimitSellersInDescendingOrder() {
+
+        LocalDateTime now = LocalDateTime.of(2024, 5, 15, 12, 0);
+        Seller seller3 = entityManager.persist(new Seller("Анна Смирнова", "anna@mail.com"));
+        save(seller1, "300.00", PaymentType.CARD, LocalDateTime.of(2024, 5, 2, 10, 0));
+        save(seller2, "200.00", PaymentType.CASH, LocalDateTime.of(2024, 5, 10, 10, 0));
+        save(seller2, "250.00", PaymentType.CARD, now.minusHours(1));
+        save(seller3, "100.00", PaymentType.CARD, LocalDateTime.of(2024, 5, 14, 10, 0));
+        // Прошлый месяц в рейтинг месяца не входит
+        save(seller3, "5000.00", PaymentType.CARD, LocalDateTime.of(2024, 4, 30, 10, 0));
+        entityManager.flush();
+
+        Map<Long, BigDecimal> top = salesRollupService.getTopSellersForCurrentPeriod(AnalyticsPeriod.MONTH, now, 2);
+
+        assertEquals(Arrays.asList(seller2.getId(), seller1.getId()), new ArrayList<>(top.keySet()));
+        assertEquals(new BigDecimal("450.00"), top.get(seller2.getId()));
+        assertEquals(1, salesRollupService.getTopSellersForCurrentPeriod(AnalyticsPeriod.DAY, now, 10).size());
+    }
+
+    @Test
+    void findTopSellersForDays_ShouldReturnTopSeller() {
+
+        LocalDateTime now = LocalDateTime.now();
+        save(seller1, "1000", PaymentType.CARD, now.minusDays(1));
+        save(seller1, "2000", PaymentType.CASH, now.minusDays(2));
+        save(seller2, "1500", PaymentType.TRANSFER, now.minusDays(1));
+        entityManager.flush();
+
+        List<Object[]> results = sellerDailyTotalRepository.findTopSellersForDays(
+                now.minusDays(10).toLocalDate(), now.toLocalDate(), PageRequest.of(0, 10));
+
+        assertEquals(2, results.size()); // Оба продавца, по убыванию суммы
+        assertEquals(seller1.getId(), results.get(0)[0]);
+        assertEquals(new BigDecimal("3000.00"), results.get(0)[1]);
+        assertEquals(seller2.getId(), results.get(1)[0]);
+
+        // Лимит выполняется в базе
+        assertEquals(1, sellerDailyTotalRepository.findTopSellersForDays(
+                now.minusDays(10).toLocalDate(), now.toLocalDate(), PageRequest.of(0, 1)).size());
+    }
+
+    @Test
+    void getSellersWithTotalLessThan_ShouldReturnSellersBelowThreshold() {
+
+        save(seller1, "1000", PaymentType.CARD, LocalDateTime.now().minusDays(1));
+        save(seller2, "3000", PaymentType.CASH, LocalDateTime.now().minusDays(2));
+        entityManager.flush();
+
+        LocalDateTime startDate = LocalDateTime.now().minusDays(10);
+        LocalDateTime endDate = LocalDateTime.now();
+        BigDecimal minAmount = new BigDecimal("2500");
+
+        List<AnalyticsDto.SellerWithTotal> results = sellerService.getSellersWithTotalLessThan(
+                startDate, endDate, minAmount);
+
+        assertEquals(1, results.size());
+        assertEquals(seller1.getId(), results.get(0).getSellerId());
+        assertEquals("Иван Петров", results.get(0).getSellerName());
+        assertEquals(new BigDecimal("1000.00"), results.get(0).getTotalAmount());
+    }
+
+    @Test
+    void getSellersWithTotalLessThan_WhenNoSellersBelowThreshold_ShouldReturnEmpty() {
+
+        save(seller1, "5000", PaymentType.CARD, LocalDateTime.now().minusDays(1));
+        entityManager.flush();
+
+        LocalDateTime startDate = LocalDateTime.now().minusDays(10);
+        LocalDateTime endDate = LocalDateTime.now();
+        BigDecimal minAmount = new BigDecimal("1000");
+
+        List<AnalyticsDto.SellerWithTotal> results = sellerService.getSellersWithTotalLessThan(
+                startDate, endDate, minAmount);
+
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    void rebuild_ShouldRecreateTotalsFromTransactions() {
+
+        Transaction transaction = new Transaction(seller2, new BigDecimal("300.00"), PaymentType.TRANSFER);
+        transaction.setTransactionDate(BASE.plusDays(2).plusHours(3));
+        entityManager.persist(transaction);
+        entityManager.flush();
+
+        salesRollupService.rebuild();
+        entityManager.clear();
+
+        List<SellerDailyTotal> totals = sellerDailyTotalRepository.findAll();
+        assertEquals(1, totals.size());
+        assertEquals(seller2.getId(), totals.get(0).getSellerId());
+        assertEquals(LocalDate.of(2024, 3, 3), totals.get(0).getDay());
+        assertEquals(1L, totals.get(0).getTransactionCount());
+        assertEquals(new BigDecimal("300.00"), totals.get(0).getTotalAmount());
+    }
+
+    private void save(Seller seller, String amount, PaymentType paymentType, LocalDateTime date) {
+        Transaction transaction = new Transaction(seller, new BigDecimal(amount), paymentType);
+        transaction.setTransactionDate(date);
+        entityManager.persist(transaction);
+        salesRollupService.record(seller.getId(), date, paymentType, 1, transaction.getAmount());
+    }
+
+    // Первая транзакция вставляет ключ (seller1, BASE, CARD) на 100.00 и не фиксируется, пока вторая
+    // не упрется в ее строку; возвращает зафиксированный итог по ключу
+    private SellerDailyTotal raceFirstWrite(Runnable secondWrite) throws Exception {
+        SellerDailyTotal.Key key = new SellerDailyTotal.Key(seller1.getId(), BASE.toLocalDate(), PaymentType.CARD);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(() -> writer().executeWithoutResult(status -> {
+                salesRollupService.record(seller1.getId(), BASE.plusHours(1), PaymentType.CARD, 1, new BigDecimal("100.00"));
+                inserted.countDown();
+                awaitUninterruptibly(commit);
+            }));
+            assertTrue(inserted.await(5, TimeUnit.SECONDS));
+
+            // Вторая транзакция не видит незафиксированную строку первой, а вставить ключ повторно не может
+            FutureTask<Void> second = new FutureTask<>(() -> writer().executeWithoutResult(status -> secondWrite.run()), null);
+            Thread secondThread = new Thread(second);
+            secondThread.start();
+            awaitBlocked(secondThread);
+            commit.countDown();
+
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            return committed(key).get();
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+            deleteCommitted(key);
+        }
+    }
+
+    private Optional<SellerDailyTotal> committed(SellerDailyTotal.Key key) {
+        return writer().execute(status -> sellerDailyTotalRepository.findById(key));
+    }
+
+    private void deleteCommitted(SellerDailyTotal.Key key) {
+        writer().executeWithoutResult(status -> sellerDailyTotalRepository.findById(key)
+                .ifPresent(sellerDailyTotalRepository::delete));
+    }
+
+    private TransactionTemplate writer() {
+        TransactionTemplate writer = new TransactionTemplate(transactionManager);
+        writer.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return writer;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitBlocked(Thread thread) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.isAlive() && thread.getState() == Thread.State.RUNNABLE && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.crm.service;
+
+import com.crm.entity.Seller;
+import com.crm.repository.SellerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SellerCacheTest {
+
+    @Mock
+    private SellerRepository sellerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SellerCache sellerCache;
+
+    @BeforeEach
+    void setUp() {
+        sellerCache = new SellerCache(sellerRepository, transactionManager, 100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void getName_ShouldQueryRepositoryOnlyOnce() {
+
+        when(sellerRepository.findById(1L)).thenReturn(Optional.of(seller(1L, "Иван Петров")));
+
+        assertEquals(Optional.of("Иван Петров"), sellerCache.getName(1L));
+        assertTrue(sellerCache.exists(1L));
+        assertEquals(Optional.of("Иван Петров"), sellerCache.getName(1L));
+
+        verify(sellerRepository, times(1)).findById(1L);
+        assertEquals(1, sellerCache.getStats().missCount());
+        assertEquals(2, sellerCache.getStats().hitCount());
+    }
+
+    @Test
+    void exists_WhenSellerMissing_ShouldCacheNegativeResult() {
+
+        when(sellerRepository.findById(999L)).thenReturn(Optional.empty());
+
+        assertFalse(sellerCache.exists(999L));
+        assertFalse(sellerCache.exists(999L));
+
+        verify(sellerRepository, times(1)).findById(999L);
+    }
+
+    @Test
+    void invalidate_ShouldReloadSeller() {
+
+        when(sellerRepository.findById(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(seller(1L, "Иван Петров")));
+
+        assertFalse(sellerCache.exists(1L));
+        sellerCache.invalidate(1L);
+
+        assertTrue(sellerCache.exists(1L));
+        verify(sellerRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void getNames_ShouldLoadMissingSellersWithSingleQuery() {
+
+        when(sellerRepository.findById(1L)).thenReturn(Optional.of(seller(1L, "Иван Петров")));
+        sellerCache.getName(1L);
+        when(sellerRepository.findAllById(any())).thenReturn(Collections.singletonList(seller(2L, "Петр Сидоров")));
+
+        Map<Long, String> names = sellerCache.getNames(Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(2, names.size());
+        assertEquals("Иван Петров", names.get(1L));
+        assertEquals("Петр Сидоров", names.get(2L));
+        verify(sellerRepository, times(1)).findAllById(Arrays.asList(2L, 3L));
+        assertFalse(sellerCache.exists(3L));
+    }
+
+    private Seller seller(Long id, String name) {
+        Seller seller = new Seller(name, null);
+        seller.setId(id);
+        return seller;
+    }
+}
@@ -1,21 +1,30 @@
 package com.crm.service;
 
+import com.crm.dto.AnalyticsDto;
 import com.crm.dto.SellerDto;
 import com.crm.entity.Seller;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.exception.DuplicateResourceException;
 import com.crm.exception.ValidationException;
+import com.crm.repository.ArchivedSellerTotalRepository;
 import com.crm.repository.SellerRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,6 +37,21 @@ class SellerServiceTest {
     @Mock
     private SellerRepository sellerRepository;
 
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private SellerCache sellerCache;
+
+    @Mock
+    private ColumnarTransactionStore columnarStore;
+
+    @Mock
+    private ArchivedSellerTotalRepository archivedTotalRepository;
+
+    @Spy
+    private AnalyticsResultCache analyticsResultCache = new AnalyticsResultCache(100);
+
     @InjectMocks
     private SellerService sellerService;
 
@@ -91,6 +115,7 @@ class SellerServiceTest {
         assertEquals("Иван Петров", result.getName());
         verify(sellerRepository, times(1)).findByName("Иван Петров");
         verify(sellerRepository, times(1)).save(any(Seller.class));
+        verify(sellerCache, times(1)).invalidate(1L);
     }
 
     @Test
@@ -113,6 +138,17 @@ class SellerServiceTest {
         verify(sellerRepository, never()).save(any(Seller.class));
     }
 
+    @Test
+    void createSeller_WhenUniqueIndexRejectsName_ShouldThrowDuplicateResourceException() {
+
+        when(sellerRepository.findByName("Иван Петров")).thenReturn(Optional.empty());
+        when(sellerRepository.save(any(Seller.class))).thenThrow(new DataIntegrityViolationException("uk_sellers_name"));
+
+
+        assertThrows(DuplicateResourceException.class, () -> sellerService.createSeller(sellerDto));
+        verify(sellerCache, never()).invalidate(any());
+    }
+
     @Test
     void deleteSeller_WhenSellerExists_ShouldDeleteSeller() {
 
@@ -122,6 +158,17 @@ class SellerServiceTest {
 
         assertTrue(result);
         verify(sellerRepository, times(1)).delete(seller);
+        verify(sellerCache, times(1)).invalidate(1L);
+    }
+
+    @Test
+    void deleteSeller_WhenSellerHasArchivedTransactions_ShouldThrowValidationException() {
+
+        when(sellerRepository.findById(1L)).thenReturn(Optional.of(seller));
+        when(archivedTotalRepository.existsBySellerId(1L)).thenReturn(true);
+
+        assertThrows(ValidationException.class, () -> sellerService.deleteSeller(1L));
+        verify(sellerRepository, never()).delete(any(Seller.class));
     }
 
     @Test
@@ -134,4 +181,67 @@ class SellerServiceTest {
         verify(sellerRepository, never()).delete(any(Seller.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    void getSellersWithTotalLessThan_ShouldFilterDailyTotals() {
+
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        totals.put(1L, new BigDecimal("500.00"));
+        totals.put(2L, new BigDecimal("5000.00"));
+        LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 9, 30);
+        LocalDateTime endDate = LocalDateTime.of(2024, 1, 31, 18, 0);
+        when(salesRollupService.getTotalsBySellerForDays(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)))
+                .thenReturn(totals);
+        when(sellerCache.getNames(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, "Иван Петров"));
+
+        List<AnalyticsDto.SellerWithTotal> result =
+                sellerService.getSellersWithTotalLessThan(startDate, endDate, new BigDecimal("1000"));
+
+        assertEquals(1, result.size());
+        assertEquals(1L, result.get(0).getSellerId());
+        assertEquals("Иван Петров", result.get(0).getSellerName());
+        assertEquals(new BigDecimal("500.00"), result.get(0).getTotalAmount());
+    }
+
+    @Test
+    void getSellersWithTotalLessThan_WhenColumnarStoreReady_ShouldNotUseDailyTotals() {
+
+        LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 9, 30);
+        LocalDateTime endDate = LocalDateTime.of(2024, 1, 31, 18, 0);
+        LocalDateTime dayStart = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(columnarStore.isReadyFor(dayStart)).thenReturn(true);
+        when(columnarStore.getTotalsBySeller(dayStart, LocalDateTime.of(2024, 2, 1, 0, 0).minusNanos(1)))
+                .thenReturn(Collections.singletonMap(1L, new BigDecimal("500.00")));
+        when(sellerCache.getNames(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, "Иван Петров"));
+
+        List<AnalyticsDto.SellerWithTotal> result =
+                sellerService.getSellersWithTotalLessThan(startDate, endDate, new BigDecimal("1000"));
+
+        assertEquals(1, result.size());
+        verifyNoInteractions(salesRollupService);
+    }
+
+    @Test
+    void getSellersWithTotalLessThan_ShouldReuseCachedResultUntilSellerChanges() {
+
+        LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2024, 1, 31, 12, 0);
+        LocalDate firstDay = LocalDate.of(2024, 1, 1);
+        LocalDate lastDay = LocalDate.of(2024, 1, 31);
+        when(salesRollupService.getTotalsBySellerForDays(firstDay, lastDay))
+                .thenReturn(Collections.singletonMap(1L, new BigDecimal("500.00")));
+        when(sellerCache.getNames(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, "Иван Петров"));
+
+        sellerService.getSellersWithTotalLessThan(startDate, endDate, new BigDecimal("1000"));
+        sellerService.getSellersWithTotalLessThan(startDate, endDate, new BigDecimal("1000.00"));
+        // Скользящая граница внутри того же дня попадает в ту же запись
+        sellerService.getSellersWithTotalLessThan(startDate.plusHours(8), endDate.plusHours(6), new BigDecimal("1000"));
+        verify(salesRollupService, times(1)).getTotalsBySellerForDays(firstDay, lastDay);
+
+        when(sellerRepository.findByName("Иван Петров")).thenReturn(Optional.empty());
+        when(sellerRepository.save(any(Seller.class))).thenReturn(seller);
+        sellerService.createSeller(sellerDto);
+
+        sellerService.getSellersWithTotalLessThan(startDate, endDate, new BigDecimal("1000"));
+        verify(salesRollupService, times(2)).getTotalsBySellerForDays(firstDay, lastDay);
+    }
+}
@@ -0,0 +1,116 @@
+package com.crm.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotBarrierTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SnapshotBarrier barrier;
+    private ExecutorService loader;
+
+    @BeforeEach
+    void setUp() {
+        barrier = new SnapshotBarrier(transactionManager, jdbcTemplate);
+        loader = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        loader.shutdownNow();
+    }
+
+    @Test
+    void afterCommit_WithoutTransaction_ShouldRunImmediately() {
+
+        List<String> applied = new ArrayList<>();
+
+        barrier.afterCommit(() -> applied.add("first"));
+
+        assertEquals(1, applied.size());
+    }
+
+    @Test
+    void afterCommit_InTransaction_ShouldRunOnlyAfterCommit() {
+
+        List<String> applied = new ArrayList<>();
+        TransactionSynchronizationManager.initSynchronization();
+
+        barrier.afterCommit(() -> applied.add("first"));
+        barrier.afterCommit(() -> applied.add("second"));
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+        assertTrue(applied.isEmpty());
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(2, applied.size());
+        assertFalse(TransactionSynchronizationManager.hasResource(barrier));
+    }
+
+    @Test
+    void load_ShouldWaitForTransactionBeingCommitted() throws Exception {
+
+        List<String> applied = new ArrayList<>();
+        CountDownLatch installed = new CountDownLatch(1);
+        TransactionSynchronizationManager.initSynchronization();
+        barrier.afterCommit(() -> applied.add("committed"));
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+        Future<Integer> loaded = loader.submit(() -> barrier.load(installed::countDown, applied::size));
+
+        // Снимок не берется, пока зафиксированная транзакция не применила изменения
+        assertFalse(installed.await(200, TimeUnit.MILLISECONDS));
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(1, loaded.get(5, TimeUnit.SECONDS));
+        assertEquals(0, installed.getCount());
+    }
+
+    @Test
+    void afterCommit_OnRollback_ShouldSkipActionsAndReleaseBarrier() throws Exception {
+
+        List<String> applied = new ArrayList<>();
+        TransactionSynchronizationManager.initSynchronization();
+        barrier.afterCommit(() -> applied.add("rolled back"));
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        Future<Integer> loaded = loader.submit(() -> barrier.load(() -> { }, applied::size));
+
+        assertEquals(0, loaded.get(5, TimeUnit.SECONDS));
+        assertFalse(TransactionSynchronizationManager.hasResource(barrier));
+    }
+}
@@ -0,0 +1,203 @@
+package com.crm.service;
+
+import com.crm.dto.AnalyticsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopSellerLeaderboardTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 15, 12, 0);
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private SellerCache sellerCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private MutableClock clock;
+    private TopSellerLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(NOW);
+        leaderboard = new TopSellerLeaderboard(salesRollupService, sellerCache,
+                new SnapshotBarrier(transactionManager, jdbcTemplate), clock);
+    }
+
+    @Test
+    void record_BeforeRebuild_ShouldBeIgnored() {
+
+        leaderboard.record(1L, new BigDecimal("100.00"), NOW);
+
+        assertFalse(leaderboard.isReady());
+        assertFalse(leaderboard.getTopSeller(AnalyticsPeriod.DAY).isPresent());
+    }
+
+    @Test
+    void rebuild_ShouldLoadTotalsFromRepository() {
+
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        totals.put(2L, new BigDecimal("3000.00"));
+        totals.put(1L, new BigDecimal("1000.00"));
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(NOW)).thenReturn(allPeriods(totals));
+        when(sellerCache.getName(2L)).thenReturn(Optional.of("Петр Сидоров"));
+
+        leaderboard.rebuild();
+
+        AnalyticsDto.TopSeller top = leaderboard.getTopSeller(AnalyticsPeriod.YEAR).get();
+        assertTrue(leaderboard.isReady());
+        assertEquals(2L, top.getSellerId());
+        assertEquals("Петр Сидоров", top.getSellerName());
+        assertEquals(new BigDecimal("3000.00"), top.getTotalAmount());
+        verify(salesRollupService, times(1)).getTotalsBySellerForCurrentPeriods(NOW);
+    }
+
+    @Test
+    void record_ShouldUpdateLeader() {
+
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(NOW)).thenReturn(allPeriods(Collections.singletonMap(2L, new BigDecimal("300.00"))));
+        when(sellerCache.getName(1L)).thenReturn(Optional.of("Иван Петров"));
+        leaderboard.rebuild();
+
+        leaderboard.record(1L, new BigDecimal("200.00"), NOW.plusMinutes(1));
+        leaderboard.record(1L, new BigDecimal("150.00"), NOW.plusMinutes(2));
+
+        AnalyticsDto.TopSeller top = leaderboard.getTopSeller(AnalyticsPeriod.DAY).get();
+        assertEquals(1L, top.getSellerId());
+        assertEquals(new BigDecimal("350.00"), top.getTotalAmount());
+    }
+
+    @Test
+    void record_AfterRebuild_ShouldCountEarlierDatesOfCurrentPeriod() {
+
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(NOW)).thenReturn(allPeriods(Collections.singletonMap(1L, new BigDecimal("100.00"))));
+        when(sellerCache.getName(any())).thenReturn(Optional.of("Продавец"));
+        leaderboard.rebuild();
+
+        // Зафиксированы после загрузки, поэтому в ее итогах их нет, как бы рано они ни были датированы
+        leaderboard.record(2L, new BigDecimal("80.00"), NOW.minusMinutes(5));
+        leaderboard.record(2L, new BigDecimal("40.00"), NOW.minusDays(1));
+
+        assertEquals(1L, leaderboard.getTopSeller(AnalyticsPeriod.DAY).get().getSellerId());
+        assertEquals(2L, leaderboard.getTopSeller(AnalyticsPeriod.MONTH).get().getSellerId());
+        assertEquals(new BigDecimal("120.00"), leaderboard.getTopSeller(AnalyticsPeriod.MONTH).get().getTotalAmount());
+    }
+
+    @Test
+    void record_DuringRebuild_ShouldCountTransactionsCommittedAfterSnapshotOnce() {
+
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(NOW)).thenAnswer(invocation -> {
+            assertFalse(leaderboard.isReady());
+            // Зафиксирована после снимка загрузки: в итогах запроса ее нет
+            leaderboard.record(1L, new BigDecimal("50.00"), NOW.minusSeconds(1));
+            return allPeriods(Collections.singletonMap(1L, new BigDecimal("100.00")));
+        });
+        when(sellerCache.getName(1L)).thenReturn(Optional.of("Иван Петров"));
+
+        leaderboard.rebuild();
+
+        assertTrue(leaderboard.isReady());
+        assertEquals(new BigDecimal("150.00"), leaderboard.getTopSeller(AnalyticsPeriod.DAY).get().getTotalAmount());
+        assertEquals(new BigDecimal("150.00"), leaderboard.getTopSeller(AnalyticsPeriod.YEAR).get().getTotalAmount());
+    }
+
+    @Test
+    void getTopSeller_AfterPeriodBoundary_ShouldStartNewBucket() {
+
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(NOW)).thenReturn(allPeriods(Collections.singletonMap(1L, new BigDecimal("100.00"))));
+        when(sellerCache.getName(any())).thenReturn(Optional.of("Продавец"));
+        leaderboard.rebuild();
+
+        clock.set(NOW.plusDays(1));
+        leaderboard.record(2L, new BigDecimal("10.00"), NOW.plusDays(1));
+
+        assertEquals(2L, leaderboard.getTopSeller(AnalyticsPeriod.DAY).get().getSellerId());
+        assertEquals(1L, leaderboard.getTopSeller(AnalyticsPeriod.MONTH).get().getSellerId());
+        assertEquals(new BigDecimal("10.00"), leaderboard.getTopSeller(AnalyticsPeriod.DAY).get().getTotalAmount());
+    }
+
+    @Test
+    void getTopSellers_ShouldReturnFirstEntriesInRankingOrder() {
+
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        totals.put(1L, new BigDecimal("100.00"));
+        totals.put(2L, new BigDecimal("300.00"));
+        totals.put(3L, new BigDecimal("200.00"));
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(NOW)).thenReturn(allPeriods(totals));
+        when(sellerCache.getNames(Arrays.asList(2L, 3L))).thenReturn(Collections.singletonMap(2L, "Петр Сидоров"));
+        leaderboard.rebuild();
+
+        List<AnalyticsDto.TopSeller> top = leaderboard.getTopSellers(AnalyticsPeriod.MONTH, 2);
+
+        assertEquals(2, top.size());
+        assertEquals(2L, top.get(0).getSellerId());
+        assertEquals("Петр Сидоров", top.get(0).getSellerName());
+        assertEquals(new BigDecimal("200.00"), top.get(1).getTotalAmount());
+        assertEquals("MONTH", top.get(1).getPeriod());
+    }
+
+    private static Map<AnalyticsPeriod, Map<Long, BigDecimal>> allPeriods(Map<Long, BigDecimal> totals) {
+        Map<AnalyticsPeriod, Map<Long, BigDecimal>> result = new EnumMap<>(AnalyticsPeriod.class);
+        for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+            result.put(period, totals);
+        }
+        return result;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(LocalDateTime dateTime) {
+            set(dateTime);
+        }
+
+        void set(LocalDateTime dateTime) {
+            this.instant = dateTime.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
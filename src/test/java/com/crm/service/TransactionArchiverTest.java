@@ -0,0 +1,171 @@
+package com.crm.service;
+
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.entity.Transaction;
+import com.crm.entity.TransactionArchiveChunk;
+import com.crm.repository.ArchivedSellerTotalRepository;
+import com.crm.repository.TransactionArchiveChunkRepository;
+import com.crm.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+class TransactionArchiverTest {
+
+    // Хранится 3 месяца: граница архива - 1 марта 2024
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-06-15T12:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionArchiveChunkRepository archiveChunkRepository;
+
+    @Autowired
+    private ArchivedSellerTotalRepository archivedTotalRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final TransactionPartitionMaintenance partitionMaintenance = mock(TransactionPartitionMaintenance.class);
+    private final ColumnarTransactionStore columnarStore = mock(ColumnarTransactionStore.class);
+
+    private TransactionArchiver archiver;
+    private AnalyticsService analyticsService;
+    private Seller seller1;
+    private Seller seller2;
+
+    @BeforeEach
+    void setUp() {
+        archiver = new TransactionArchiver(transactionRepository, archiveChunkRepository, archivedTotalRepository,
+                columnarStore, partitionMaintenance, new AnalyticsResultCache(100), transactionManager,
+                true, 3, 7, Duration.ofDays(1), CLOCK);
+        analyticsService = new AnalyticsService(transactionRepository, null, columnarStore, archivedTotalRepository);
+
+        seller1 = entityManager.persist(new Seller("Иван Петров", "ivan@mail.com"));
+        seller2 = entityManager.persist(new Seller("Петр Сидоров", "petr@mail.com"));
+
+        // С середины декабря по конец апреля: архивными должны стать декабрь, январь и февраль
+        Random random = new Random(11L);
+        LocalDateTime start = LocalDateTime.of(2023, 12, 15, 0, 0);
+        for (int i = 0; i < 200; i++) {
+            Transaction transaction = new Transaction(random.nextBoolean() ? seller1 : seller2,
+                    BigDecimal.valueOf(1 + random.nextInt(100_000), 2), PaymentType.values()[random.nextInt(3)]);
+            transaction.setTransactionDate(start.plusSeconds(random.nextInt(137 * 24 * 3600)));
+            entityManager.persist(transaction);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void archive_ShouldMoveOldTransactionsAndKeepTotals() throws IOException {
+
+        BigDecimal totalSales = analyticsService.getTotalSales();
+        long transactionCount = analyticsService.getTransactionCount();
+        Long seller1Count = analyticsService.getTransactionCountBySeller(seller1.getId());
+        BigDecimal cashSales = analyticsService.getTotalSalesByPaymentType("CASH");
+        BigDecimal average = analyticsService.getAverageTransactionAmount();
+        long oldRows = transactionRepository.findAll().stream()
+                .filter(t -> t.getTransactionDate().isBefore(CUTOFF))
+                .count();
+        assertTrue(oldRows > 0);
+
+        long archived = archiver.archive();
+
+        assertEquals(oldRows, archived);
+        assertFalse(transactionRepository.findMinTransactionDate().isBefore(CUTOFF));
+        assertEquals(totalSales, analyticsService.getTotalSales());
+        assertEquals(transactionCount, analyticsService.getTransactionCount());
+        assertEquals(seller1Count, analyticsService.getTransactionCountBySeller(seller1.getId()));
+        assertEquals(cashSales, analyticsService.getTotalSalesByPaymentType("CASH"));
+        assertEquals(average, analyticsService.getAverageTransactionAmount());
+
+        // Порции не больше chunk-size строк, а сжатый CSV содержит каждую архивную строку
+        List<TransactionArchiveChunk> chunks = archiveChunkRepository.findAll();
+        List<String> lines = new ArrayList<>();
+        for (TransactionArchiveChunk chunk : chunks) {
+            List<String> chunkLines = readCsv(chunk.getData());
+            assertEquals(TransactionArchiver.CSV_HEADER.trim(), chunkLines.get(0));
+            assertEquals(chunk.getRowCount(), chunkLines.size() - 1);
+            assertTrue(chunk.getRowCount() <= 7);
+            lines.addAll(chunkLines.subList(1, chunkLines.size()));
+        }
+        assertEquals(oldRows, lines.size());
+        assertEquals(CUTOFF, archiveChunkRepository.findArchivedUntil());
+
+        verify(columnarStore).removeBefore(LocalDateTime.of(2024, 1, 1, 0, 0));
+        verify(columnarStore).removeBefore(CUTOFF);
+        verify(partitionMaintenance).dropEmptyPartition(YearMonth.of(2024, 2));
+    }
+
+    @Test
+    void archive_WhenNothingIsOldEnough_ShouldDoNothing() {
+
+        archiver.archive();
+
+        assertEquals(0, archiver.archive());
+        assertEquals(0, transactionRepository.findAll().stream()
+                .filter(t -> t.getTransactionDate().isBefore(CUTOFF))
+                .count());
+    }
+
+    @Test
+    void archive_ShouldAddToExistingTotals() {
+
+        archiver.archive();
+        long archivedCount = archivedTotalRepository.sumTransactionCount();
+
+        Transaction late = new Transaction(entityManager.find(Seller.class, seller1.getId()),
+                new BigDecimal("10.00"), PaymentType.CARD);
+        late.setTransactionDate(LocalDateTime.of(2024, 1, 10, 12, 0));
+        entityManager.persist(late);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, archiver.archive());
+        assertEquals(archivedCount + 1, archivedTotalRepository.sumTransactionCount());
+        assertTrue(archivedTotalRepository.existsBySellerId(seller1.getId()));
+    }
+
+    private static List<String> readCsv(byte[] data) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
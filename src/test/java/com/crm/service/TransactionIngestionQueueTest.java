@@ -0,0 +1,172 @@
+package com.crm.service;
+
+import com.crm.dto.IngestionStatsDto;
+import com.crm.dto.TransactionDto;
+import com.crm.entity.PaymentType;
+import com.crm.entity.Seller;
+import com.crm.exception.ServiceOverloadedException;
+import com.crm.exception.ServiceUnavailableException;
+import com.crm.repository.SellerDailyTotalRepository;
+import com.crm.repository.SellerRepository;
+import com.crm.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "crm.ingestion.batch-size=50",
+        "crm.ingestion.max-delay=50ms"
+})
+@ActiveProfiles("test")
+class TransactionIngestionQueueTest {
+
+    @Autowired
+    private TransactionIngestionQueue transactionIngestionQueue;
+
+    @Autowired
+    private SellerRepository sellerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SellerDailyTotalRepository sellerDailyTotalRepository;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private TopSellerLeaderboard topSellerLeaderboard;
+
+    @Autowired
+    private ColumnarTransactionStore columnarStore;
+
+    @Autowired
+    private AnalyticsResultCache analyticsResultCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SellerCache sellerCache;
+
+    private Seller seller;
+
+    @BeforeEach
+    void setUp() {
+        seller = sellerRepository.save(new Seller("Иван Петров", "ivan@mail.com"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAllInBatch();
+        sellerDailyTotalRepository.deleteAllInBatch();
+        sellerRepository.deleteAllInBatch();
+        sellerCache.invalidateAll();
+    }
+
+    @Test
+    void submit_ShouldWriteAcceptedTransactionsInGroups() throws InterruptedException {
+
+        IngestionStatsDto before = transactionIngestionQueue.getStats();
+        List<TransactionDto> accepted = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            accepted.add(transactionIngestionQueue.submit(seller.getId(), seller.getName(),
+                    new BigDecimal("10.00"), i % 2 == 0 ? PaymentType.CARD : PaymentType.CASH));
+        }
+
+        assertTrue(transactionIngestionQueue.awaitDrained(Duration.ofSeconds(10)));
+
+        assertEquals(200, accepted.stream().map(TransactionDto::getId).collect(Collectors.toSet()).size());
+        assertEquals(200L, transactionRepository.countBySellerId(seller.getId()));
+        TransactionDto first = transactionRepository.findDtoById(accepted.get(0).getId()).get();
+        assertEquals(seller.getId(), first.getSellerId());
+        assertEquals("CARD", first.getPaymentType());
+
+        // Итоги обновлены в той же транзакции, что и строки
+        assertEquals(0, new BigDecimal("2000.00").compareTo(salesRollupService.getTotalForSeller(seller.getId(),
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1))));
+
+        IngestionStatsDto stats = transactionIngestionQueue.getStats();
+        long groups = stats.getGroupCommits() - before.getGroupCommits();
+        assertEquals(200L, stats.getCommitted() - before.getCommitted());
+        assertTrue(groups >= 4 && groups < 200, "groups: " + groups);
+        assertEquals(0, stats.getQueueDepth());
+        assertTrue(stats.getMaxCommitMillis() > 0);
+    }
+
+    @Test
+    void submit_WhenSellerIsDeletedBeforeWrite_ShouldWriteRestOfGroup() throws InterruptedException {
+
+        Seller removed = sellerRepository.save(new Seller("Петр Сидоров", "petr@mail.com"));
+        IngestionStatsDto before = transactionIngestionQueue.getStats();
+        sellerRepository.delete(removed);
+
+        transactionIngestionQueue.submit(seller.getId(), seller.getName(), new BigDecimal("10.00"), PaymentType.CARD);
+        transactionIngestionQueue.submit(removed.getId(), removed.getName(), new BigDecimal("10.00"), PaymentType.CARD);
+        transactionIngestionQueue.submit(seller.getId(), seller.getName(), new BigDecimal("10.00"), PaymentType.CARD);
+
+        assertTrue(transactionIngestionQueue.awaitDrained(Duration.ofSeconds(10)));
+
+        assertEquals(2L, transactionRepository.countBySellerId(seller.getId()));
+        assertEquals(1L, transactionIngestionQueue.getStats().getFailed() - before.getFailed());
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_ShouldRejectWithoutBlocking() {
+
+        // Поток записи не запущен, поэтому очередь не разгружается
+        AtomicLong ids = new AtomicLong();
+        TransactionIngestionQueue queue = new TransactionIngestionQueue(jdbcTemplate, transactionManager,
+                salesRollupService, topSellerLeaderboard, columnarStore, analyticsResultCache, ids::incrementAndGet, 2, 10, Duration.ofMillis(10));
+
+        queue.submit(seller.getId(), seller.getName(), BigDecimal.ONE, PaymentType.CARD);
+        queue.submit(seller.getId(), seller.getName(), BigDecimal.ONE, PaymentType.CARD);
+
+        assertThrows(ServiceOverloadedException.class,
+                () -> queue.submit(seller.getId(), seller.getName(), BigDecimal.ONE, PaymentType.CARD));
+        IngestionStatsDto stats = queue.getStats();
+        assertEquals(2, stats.getQueueDepth());
+        assertEquals(2L, stats.getAccepted());
+        assertEquals(1L, stats.getRejected());
+    }
+
+    @Test
+    void stop_ShouldRejectNewSubmitsAndCountUnwrittenTransactions() throws InterruptedException {
+
+        // Поток записи не запущен, поэтому принятые транзакции остаются в очереди до остановки
+        AtomicLong ids = new AtomicLong();
+        TransactionIngestionQueue queue = new TransactionIngestionQueue(jdbcTemplate, transactionManager,
+                salesRollupService, topSellerLeaderboard, columnarStore, analyticsResultCache, ids::incrementAndGet, 10, 10, Duration.ofMillis(10));
+        queue.submit(seller.getId(), seller.getName(), BigDecimal.ONE, PaymentType.CARD);
+        queue.submit(seller.getId(), seller.getName(), BigDecimal.ONE, PaymentType.CARD);
+
+        queue.stop();
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> queue.submit(seller.getId(), seller.getName(), BigDecimal.ONE, PaymentType.CARD));
+        IngestionStatsDto stats = queue.getStats();
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(2L, stats.getAccepted());
+        assertEquals(1L, stats.getRejected());
+        assertEquals(2L, stats.getDropped());
+    }
+}
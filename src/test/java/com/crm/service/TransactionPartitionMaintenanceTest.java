@@ -0,0 +1,145 @@
+package com.crm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionPartitionMaintenanceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T12:00:00Z"), ZoneOffset.UTC);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionPartitionMaintenance maintenance;
+
+    @BeforeEach
+    void setUp() {
+        maintenance = new TransactionPartitionMaintenance(jdbcTemplate, transactionManager, 2, Duration.ofDays(1), CLOCK);
+    }
+
+    @Test
+    void createFuturePartitions_ShouldCreateMissingMonthsAcrossYearBoundary() {
+        postgres(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(0);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq("transactions_p202411"))).thenReturn(1);
+
+        List<String> created = maintenance.createFuturePartitions();
+
+        assertEquals(Arrays.asList("transactions_p202412", "transactions_p202501"), created);
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS transactions_p202412 PARTITION OF transactions "
+                + "FOR VALUES FROM ('2024-12-01') TO ('2025-01-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS transactions_p202501 PARTITION OF transactions "
+                + "FOR VALUES FROM ('2025-01-01') TO ('2025-02-01')");
+        verify(jdbcTemplate, never()).execute(contains("transactions_p202411 PARTITION OF"));
+    }
+
+    @Test
+    void createFuturePartitions_WhenOneMonthFails_ShouldCreateOthers() {
+        postgres(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(0);
+        doThrow(new RuntimeException("updated partition constraint for default partition would be violated"))
+                .when(jdbcTemplate).execute(contains("transactions_p202411 PARTITION OF"));
+
+        List<String> created = maintenance.createFuturePartitions();
+
+        assertEquals(Arrays.asList("transactions_p202412", "transactions_p202501"), created);
+    }
+
+    @Test
+    void createFuturePartitions_WhenRowsAreInDefaultPartition_ShouldMoveThemIntoNewPartition() {
+        postgres(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq("transactions_p202412"))).thenReturn(0);
+        when(jdbcTemplate.queryForObject(contains("transactions_default"), eq(Boolean.class), any(), any())).thenReturn(true);
+        when(jdbcTemplate.update(contains("DELETE FROM transactions_default"), any(Timestamp.class), any(Timestamp.class))).thenReturn(5);
+
+        List<String> created = maintenance.createFuturePartitions();
+
+        assertEquals(Collections.singletonList("transactions_p202412"), created);
+        verify(jdbcTemplate).execute("CREATE TABLE transactions_p202412 (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        verify(jdbcTemplate).update(contains("INSERT INTO transactions_p202412"),
+                eq(Timestamp.valueOf("2024-12-01 00:00:00")), eq(Timestamp.valueOf("2025-01-01 00:00:00")));
+        verify(jdbcTemplate).execute("ALTER TABLE transactions ATTACH PARTITION transactions_p202412 "
+                + "FOR VALUES FROM ('2024-12-01') TO ('2025-01-01')");
+        verify(jdbcTemplate, never()).execute(contains("transactions_p202412 PARTITION OF"));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void createFuturePartitions_WhenNotPostgres_ShouldDoNothing() {
+        postgres(false);
+
+        assertEquals(Collections.emptyList(), maintenance.createFuturePartitions());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void detachPartition_ShouldDetachWithoutRewrite() {
+        postgres(true);
+
+        maintenance.detachPartition(YearMonth.of(2023, 1));
+
+        verify(jdbcTemplate).execute("ALTER TABLE transactions DETACH PARTITION transactions_p202301");
+    }
+
+    @Test
+    void detachPartition_CurrentMonth_ShouldThrowException() {
+
+        assertThrows(IllegalArgumentException.class, () -> maintenance.detachPartition(YearMonth.of(2024, 11)));
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void dropEmptyPartition_ShouldDetachAndDropOnlyEmptyPartition() {
+        postgres(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(1);
+        when(jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM transactions_p202301)", Boolean.class))
+                .thenReturn(true);
+        when(jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM transactions_p202302)", Boolean.class))
+                .thenReturn(false);
+
+        assertTrue(maintenance.dropEmptyPartition(YearMonth.of(2023, 1)));
+        assertFalse(maintenance.dropEmptyPartition(YearMonth.of(2023, 2)));
+
+        verify(jdbcTemplate).execute("ALTER TABLE transactions DETACH PARTITION transactions_p202301");
+        verify(jdbcTemplate).execute("DROP TABLE transactions_p202301");
+        verify(jdbcTemplate, never()).execute(contains("transactions_p202302"));
+    }
+
+    @Test
+    void partitionName_ShouldUseYearAndMonth() {
+
+        assertEquals("transactions_p202403", TransactionPartitionMaintenance.partitionName(YearMonth.of(2024, 3)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void postgres(boolean value) {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(value);
+    }
+}
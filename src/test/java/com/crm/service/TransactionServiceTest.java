@@ -1,9 +1,13 @@
 package com.crm.service;
 
+import com.crm.dto.AnalyticsDto;
 import com.crm.dto.TransactionDto;
+import com.crm.dto.TransactionBatchResultDto;
+import com.crm.dto.TransactionPageDto;
 import com.crm.entity.PaymentType;
 import com.crm.entity.Seller;
 import com.crm.entity.Transaction;
+import com.crm.exception.AnalyticsException;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.exception.ValidationException;
 import com.crm.repository.SellerRepository;
@@ -13,15 +17,28 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +50,24 @@ class TransactionServiceTest {
     @Mock
     private SellerRepository sellerRepository;
 
+    @Mock
+    private TopSellerLeaderboard topSellerLeaderboard;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private SellerCache sellerCache;
+
+    @Mock
+    private TransactionIngestionQueue transactionIngestionQueue;
+
+    @Mock
+    private ColumnarTransactionStore columnarStore;
+
+    @Spy
+    private AnalyticsResultCache analyticsResultCache = new AnalyticsResultCache(100);
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -52,45 +87,98 @@ class TransactionServiceTest {
     }
 
     @Test
-    void getAllTransactions_ShouldReturnListOfTransactions() {
+    void getTransactionsPage_WhenMoreRowsExist_ShouldReturnNextCursor() {
+
+        LocalDateTime date = LocalDateTime.of(2024, 5, 10, 12, 0);
+        List<TransactionDto> rows = Arrays.asList(
+                new TransactionDto(1L, 1L, "Иван Петров", new BigDecimal("100"), "CARD", date),
+                new TransactionDto(2L, 1L, "Иван Петров", new BigDecimal("200"), "CASH", date),
+                new TransactionDto(3L, 1L, "Иван Петров", new BigDecimal("300"), "CARD", date.plusHours(1))
+        );
+        when(transactionRepository.findFirstPage(PageRequest.of(0, 3))).thenReturn(rows);
+        when(transactionRepository.findPageAfter(date, 2L, PageRequest.of(0, 3))).thenReturn(rows.subList(2, 3));
+
+        TransactionPageDto first = transactionService.getTransactionsPage(2, null);
+        TransactionPageDto second = transactionService.getTransactionsPage(2, first.getNextCursor());
+
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNextCursor());
+        assertEquals(1, second.getItems().size());
+        assertEquals(3L, second.getItems().get(0).getId());
+        assertNull(second.getNextCursor());
+    }
 
-        when(transactionRepository.findAll()).thenReturn(Arrays.asList(transaction));
+    @Test
+    void getTransactionsPage_WithInvalidLimit_ShouldThrowValidationException() {
 
-        List<TransactionDto> result = transactionService.getAllTransactions();
+        assertThrows(ValidationException.class, () -> transactionService.getTransactionsPage(0, null));
+        assertThrows(ValidationException.class,
+                () -> transactionService.getTransactionsPage(TransactionService.MAX_PAGE_SIZE + 1, null));
+        verifyNoInteractions(transactionRepository);
+    }
 
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        verify(transactionRepository, times(1)).findAll();
+    @Test
+    void getTransactionsPage_WithInvalidCursor_ShouldThrowValidationException() {
+
+        assertThrows(ValidationException.class, () -> transactionService.getTransactionsPage(10, "не-курсор"));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void getTransactionsPageBySellerId_WhenSellerNotExists_ShouldThrowException() {
+
+        when(sellerCache.exists(999L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> transactionService.getTransactionsPageBySellerId(999L, 10, null));
+    }
+
+    @Test
+    void streamAllTransactions_ShouldPassEveryRowToConsumer() {
+
+        TransactionDto row = new TransactionDto(1L, 1L, "Иван Петров",
+                new BigDecimal("100"), "CARD", LocalDateTime.now());
+        when(transactionRepository.streamAll()).thenReturn(Stream.of(row, row));
+
+        List<TransactionDto> received = new ArrayList<>();
+        transactionService.streamAllTransactions(received::add);
+
+        assertEquals(2, received.size());
     }
 
     @Test
     void getTransactionById_WhenTransactionExists_ShouldReturnTransaction() {
 
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(transaction));
+        when(transactionRepository.findDtoById(1L)).thenReturn(Optional.of(toDto(transaction)));
 
         Optional<TransactionDto> result = transactionService.getTransactionById(1L);
 
         assertTrue(result.isPresent());
-        verify(transactionRepository, times(1)).findById(1L);
+        assertEquals("Иван Петров", result.get().getSellerName());
+        verify(transactionRepository, times(1)).findDtoById(1L);
     }
 
     @Test
     void createTransaction_WithValidData_ShouldCreateTransaction() {
 
-        when(sellerRepository.findById(1L)).thenReturn(Optional.of(seller));
+        when(sellerCache.getName(1L)).thenReturn(Optional.of("Иван Петров"));
+        when(sellerRepository.getById(1L)).thenReturn(seller);
         when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
 
         TransactionDto result = transactionService.createTransaction(transactionDto);
 
         assertNotNull(result);
-        verify(sellerRepository, times(1)).findById(1L);
+        assertEquals("Иван Петров", result.getSellerName());
+        // Продавец не загружается: используется ссылка getById и имя из кэша
+        verify(sellerRepository, never()).findById(any());
+        verify(sellerRepository, times(1)).getById(1L);
         verify(transactionRepository, times(1)).save(any(Transaction.class));
     }
 
     @Test
     void createTransaction_WithInvalidSeller_ShouldThrowResourceNotFoundException() {
 
-        when(sellerRepository.findById(999L)).thenReturn(Optional.empty());
+        when(sellerCache.getName(999L)).thenReturn(Optional.empty());
 
         TransactionDto invalidDto = new TransactionDto(999L, new BigDecimal("100"), "CARD");
         assertThrows(ResourceNotFoundException.class, () -> transactionService.createTransaction(invalidDto));
@@ -118,25 +206,299 @@ class TransactionServiceTest {
     }
 
     @Test
-    void getTransactionsBySellerId_ShouldReturnTransactions() {
+    void enqueueTransaction_ShouldSubmitWithoutWriting() {
 
-        when(sellerRepository.existsById(1L)).thenReturn(true);
-        when(transactionRepository.findBySellerId(1L)).thenReturn(Arrays.asList(transaction));
+        TransactionDto accepted = new TransactionDto(51L, 1L, "Иван Петров",
+                new BigDecimal("1000.50"), PaymentType.CARD, LocalDateTime.now());
+        when(sellerCache.getName(1L)).thenReturn(Optional.of("Иван Петров"));
+        when(transactionIngestionQueue.submit(1L, "Иван Петров", new BigDecimal("1000.50"), PaymentType.CARD))
+                .thenReturn(accepted);
 
-        List<TransactionDto> result = transactionService.getTransactionsBySellerId(1L);
+        TransactionDto result = transactionService.enqueueTransaction(transactionDto);
 
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        verify(transactionRepository, times(1)).findBySellerId(1L);
+        assertEquals(51L, result.getId());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+        verifyNoInteractions(salesRollupService, topSellerLeaderboard);
+    }
+
+    @Test
+    void enqueueTransaction_WithInvalidSeller_ShouldNotSubmit() {
+
+        when(sellerCache.getName(999L)).thenReturn(Optional.empty());
+
+        TransactionDto invalidDto = new TransactionDto(999L, new BigDecimal("100"), "CARD");
+        assertThrows(ResourceNotFoundException.class, () -> transactionService.enqueueTransaction(invalidDto));
+        verifyNoInteractions(transactionIngestionQueue);
+    }
+
+    @Test
+    void createTransactions_ShouldSaveValidItemsAndReportRejected() {
+
+        List<TransactionDto> batch = Arrays.asList(
+                new TransactionDto(1L, new BigDecimal("100.00"), "CARD"),
+                new TransactionDto(1L, new BigDecimal("-5"), "CARD"),
+                new TransactionDto(999L, new BigDecimal("10.00"), "CASH"),
+                new TransactionDto(1L, new BigDecimal("50.00"), "CARD")
+        );
+        when(sellerCache.getNames(any())).thenReturn(Collections.singletonMap(1L, "Иван Петров"));
+        when(sellerRepository.getById(1L)).thenReturn(seller);
+        when(transactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Transaction> transactions = invocation.getArgument(0);
+            long id = 100;
+            for (Transaction t : transactions) {
+                t.setId(id++);
+            }
+            return transactions;
+        });
+
+        TransactionBatchResultDto result = transactionService.createTransactions(batch);
+
+        assertEquals(2, result.getCreated());
+        assertEquals(2, result.getRejected());
+        assertEquals(100L, result.getItems().get(0).getTransaction().getId());
+        assertNotNull(result.getItems().get(1).getError());
+        assertNotNull(result.getItems().get(2).getError());
+        assertEquals(101L, result.getItems().get(3).getTransaction().getId());
+        verify(sellerCache, times(1)).getNames(any());
+        verify(sellerRepository, never()).findById(any());
+        // Две карточные транзакции одного продавца дают одно обновление дневных итогов
+        verify(salesRollupService, times(1)).record(eq(1L), any(LocalDateTime.class), eq(PaymentType.CARD),
+                eq(2L), eq(new BigDecimal("150.00")));
+    }
+
+    @Test
+    void createTransactions_WithEmptyBatch_ShouldThrowValidationException() {
+
+        assertThrows(ValidationException.class, () -> transactionService.createTransactions(Arrays.asList()));
+        verify(transactionRepository, never()).saveAll(any());
     }
 
     @Test
-    void getTransactionsBySellerId_WhenSellerNotExists_ShouldThrowException() {
+    void getBestPeriodForSeller_ShouldAnalyzeStreamedRows() {
 
-        when(sellerRepository.existsById(999L)).thenReturn(false);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 10, 0);
+        when(sellerCache.exists(1L)).thenReturn(true);
+        when(transactionRepository.streamDatesAndAmountsBySellerId(1L)).thenReturn(Stream.of(
+                new Object[]{start, new BigDecimal("100.00")},
+                new Object[]{start.plusHours(2), new BigDecimal("200.00")},
+                new Object[]{start.plusDays(5), new BigDecimal("50.00")}
+        ));
 
-        assertThrows(ResourceNotFoundException.class, () -> transactionService.getTransactionsBySellerId(999L));
-        verify(transactionRepository, never()).findBySellerId(any());
+        Optional<AnalyticsDto.BestPeriod> result = transactionService.getBestPeriodForSeller(1L);
+
+        assertTrue(result.isPresent());
+        assertEquals(start, result.get().getStartDate());
+        assertEquals(2L, result.get().getTransactionCount());
+        assertEquals(new BigDecimal("300.00"), result.get().getTotalAmount());
     }
 
-}
\ No newline at end of file
+    @Test
+    void getBestPeriodForSeller_WhenColumnarStoreReady_ShouldNotQueryRepository() {
+
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 10, 0);
+        BestPeriodFinder finder = new BestPeriodFinder();
+        finder.accept(start, new BigDecimal("100.00"));
+        finder.accept(start.plusHours(2), new BigDecimal("200.00"));
+        when(sellerCache.exists(1L)).thenReturn(true);
+        when(columnarStore.isReady()).thenReturn(true);
+        when(columnarStore.findBestPeriod(1L)).thenReturn(finder);
+
+        Optional<AnalyticsDto.BestPeriod> result = transactionService.getBestPeriodForSeller(1L);
+
+        assertTrue(result.isPresent());
+        assertEquals(new BigDecimal("300.00"), result.get().getTotalAmount());
+        verify(transactionRepository, never()).streamDatesAndAmountsBySellerId(any());
+    }
+
+    @Test
+    void getBestPeriodForSeller_WithSingleTransaction_ShouldThrowAnalyticsException() {
+
+        when(sellerCache.exists(1L)).thenReturn(true);
+        when(transactionRepository.streamDatesAndAmountsBySellerId(1L)).thenReturn(Stream.<Object[]>of(
+                new Object[]{LocalDateTime.now(), new BigDecimal("100.00")}
+        ));
+
+        assertThrows(AnalyticsException.class, () -> transactionService.getBestPeriodForSeller(1L));
+    }
+
+    @Test
+    void getTopSellerByPeriod_WhenLeaderboardReady_ShouldNotQueryRepository() {
+
+        when(topSellerLeaderboard.isReady()).thenReturn(true);
+        when(topSellerLeaderboard.getTopSeller(AnalyticsPeriod.MONTH)).thenReturn(Optional.of(
+                new AnalyticsDto.TopSeller(1L, "Иван Петров", new BigDecimal("5000.00"), "MONTH")));
+
+        Optional<AnalyticsDto.TopSeller> result = transactionService.getTopSellerByPeriod("month");
+
+        assertTrue(result.isPresent());
+        assertEquals(1L, result.get().getSellerId());
+        assertEquals("month", result.get().getPeriod());
+        verify(salesRollupService, never()).getTotalsBySeller(any(), any());
+    }
+
+    @Test
+    void getTopSellerByPeriod_ShouldReuseCachedResultUntilWrite() {
+
+        when(topSellerLeaderboard.isReady()).thenReturn(true);
+        when(topSellerLeaderboard.getTopSeller(AnalyticsPeriod.MONTH)).thenReturn(Optional.of(
+                new AnalyticsDto.TopSeller(1L, "Иван Петров", new BigDecimal("5000.00"), null)));
+
+        assertEquals("MONTH", transactionService.getTopSellerByPeriod("MONTH").get().getPeriod());
+        assertEquals("month", transactionService.getTopSellerByPeriod("month").get().getPeriod());
+        verify(topSellerLeaderboard, times(1)).getTopSeller(AnalyticsPeriod.MONTH);
+
+        analyticsResultCache.invalidate();
+        transactionService.getTopSellerByPeriod("MONTH");
+        verify(topSellerLeaderboard, times(2)).getTopSeller(AnalyticsPeriod.MONTH);
+    }
+
+    @Test
+    void getTopSellersForAllPeriods_WhenLeaderboardNotReady_ShouldQueryTotalsOnce() {
+
+        when(topSellerLeaderboard.isReady()).thenReturn(false);
+        Map<AnalyticsPeriod, Map<Long, BigDecimal>> totals = new EnumMap<>(AnalyticsPeriod.class);
+        totals.put(AnalyticsPeriod.DAY, new HashMap<>());
+        totals.put(AnalyticsPeriod.MONTH, Collections.singletonMap(1L, new BigDecimal("700.00")));
+        Map<Long, BigDecimal> year = new HashMap<>();
+        year.put(1L, new BigDecimal("700.00"));
+        year.put(2L, new BigDecimal("900.00"));
+        totals.put(AnalyticsPeriod.QUARTER, year);
+        totals.put(AnalyticsPeriod.YEAR, year);
+        when(salesRollupService.getTotalsBySellerForCurrentPeriods(any())).thenReturn(totals);
+        when(sellerCache.getName(1L)).thenReturn(Optional.of("Иван Петров"));
+        when(sellerCache.getName(2L)).thenReturn(Optional.of("Петр Сидоров"));
+
+        Map<AnalyticsPeriod, AnalyticsDto.TopSeller> result = transactionService.getTopSellersForAllPeriods();
+
+        assertFalse(result.containsKey(AnalyticsPeriod.DAY));
+        assertEquals(1L, result.get(AnalyticsPeriod.MONTH).getSellerId());
+        assertEquals("MONTH", result.get(AnalyticsPeriod.MONTH).getPeriod());
+        assertEquals(2L, result.get(AnalyticsPeriod.YEAR).getSellerId());
+        assertEquals(new BigDecimal("900.00"), result.get(AnalyticsPeriod.QUARTER).getTotalAmount());
+        verify(salesRollupService, times(1)).getTotalsBySellerForCurrentPeriods(any());
+        verify(salesRollupService, never()).getTotalsBySeller(any(), any());
+    }
+
+    @Test
+    void getTopSellersForAllPeriods_WhenLeaderboardReady_ShouldNotQueryTotals() {
+
+        when(topSellerLeaderboard.isReady()).thenReturn(true);
+        for (AnalyticsPeriod period : AnalyticsPeriod.values()) {
+            when(topSellerLeaderboard.getTopSeller(period)).thenReturn(Optional.of(
+                    new AnalyticsDto.TopSeller(1L, "Иван Петров", new BigDecimal("5000.00"), period.name())));
+        }
+
+        Map<AnalyticsPeriod, AnalyticsDto.TopSeller> result = transactionService.getTopSellersForAllPeriods();
+
+        assertEquals(AnalyticsPeriod.values().length, result.size());
+        assertEquals("QUARTER", result.get(AnalyticsPeriod.QUARTER).getPeriod());
+        verifyNoInteractions(salesRollupService);
+    }
+
+    @Test
+    void getTopSellersByPeriod_WhenLeaderboardReady_ShouldTakeFirstEntries() {
+
+        when(topSellerLeaderboard.isReady()).thenReturn(true);
+        when(topSellerLeaderboard.getTopSellers(AnalyticsPeriod.MONTH, 2)).thenReturn(Arrays.asList(
+                new AnalyticsDto.TopSeller(2L, "Петр Сидоров", new BigDecimal("9000.00"), "MONTH"),
+                new AnalyticsDto.TopSeller(1L, "Иван Петров", new BigDecimal("5000.00"), "MONTH")));
+
+        List<AnalyticsDto.TopSeller> result = transactionService.getTopSellersByPeriod("month", 2);
+
+        assertEquals(2, result.size());
+        assertEquals(2L, result.get(0).getSellerId());
+        assertEquals("month", result.get(1).getPeriod());
+        verifyNoInteractions(salesRollupService);
+    }
+
+    @Test
+    void getTopSellersByPeriod_WhenColumnarStoreReady_ShouldKeepOnlyLimitSellers() {
+
+        when(columnarStore.isReadyFor(any())).thenReturn(true);
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        totals.put(1L, new BigDecimal("700.00"));
+        totals.put(2L, new BigDecimal("900.00"));
+        totals.put(3L, new BigDecimal("100.00"));
+        totals.put(4L, new BigDecimal("900.00"));
+        when(columnarStore.getTotalsBySeller(any(), any())).thenReturn(totals);
+        when(sellerCache.getNames(Arrays.asList(2L, 4L))).thenReturn(Collections.singletonMap(2L, "Петр Сидоров"));
+
+        List<AnalyticsDto.TopSeller> result = transactionService.getTopSellersByPeriod("YEAR", 2);
+
+        assertEquals(2, result.size());
+        assertEquals(2L, result.get(0).getSellerId());
+        assertEquals("Петр Сидоров", result.get(0).getSellerName());
+        assertEquals(4L, result.get(1).getSellerId());
+        verifyNoInteractions(salesRollupService);
+    }
+
+    @Test
+    void getTopSellersByPeriod_WhenNothingReady_ShouldUseLimitedRollupQuery() {
+
+        Map<Long, BigDecimal> top = new LinkedHashMap<>();
+        top.put(2L, new BigDecimal("900.00"));
+        top.put(1L, new BigDecimal("700.00"));
+        when(salesRollupService.getTopSellersForCurrentPeriod(eq(AnalyticsPeriod.MONTH), any(), eq(2))).thenReturn(top);
+        when(sellerCache.getNames(Arrays.asList(2L, 1L))).thenReturn(Collections.singletonMap(1L, "Иван Петров"));
+
+        List<AnalyticsDto.TopSeller> result = transactionService.getTopSellersByPeriod("MONTH", 2);
+
+        assertEquals(Arrays.asList(2L, 1L), result.stream()
+                .map(AnalyticsDto.TopSeller::getSellerId)
+                .collect(Collectors.toList()));
+        assertEquals("Иван Петров", result.get(1).getSellerName());
+        verify(salesRollupService, never()).getTotalsBySeller(any(), any());
+    }
+
+    @Test
+    void getTopSellersByPeriod_WithInvalidLimit_ShouldThrowValidationException() {
+
+        assertThrows(ValidationException.class, () -> transactionService.getTopSellersByPeriod("MONTH", 0));
+        assertThrows(ValidationException.class,
+                () -> transactionService.getTopSellersByPeriod("MONTH", TransactionService.MAX_TOP_SELLERS + 1));
+    }
+
+    @Test
+    void getTopSellerByPeriod_WithInvalidPeriod_ShouldThrowAnalyticsException() {
+
+        assertThrows(AnalyticsException.class, () -> transactionService.getTopSellerByPeriod("WEEK"));
+    }
+
+    @Test
+    void createTransaction_ShouldUpdateDailyTotals() {
+
+        when(sellerCache.getName(1L)).thenReturn(Optional.of("Иван Петров"));
+        when(sellerRepository.getById(1L)).thenReturn(seller);
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+
+        transactionService.createTransaction(transactionDto);
+
+        verify(salesRollupService, times(1)).record(eq(1L), eq(transaction.getTransactionDate()),
+                eq(PaymentType.CARD), eq(1L), eq(new BigDecimal("1000.50")));
+        verify(topSellerLeaderboard, times(1)).record(1L, new BigDecimal("1000.50"), transaction.getTransactionDate());
+        verify(analyticsResultCache, times(1)).invalidate();
+    }
+
+    @Test
+    void getTopSellerByPeriod_WhenLeaderboardNotReady_ShouldUseDailyTotals() {
+
+        when(topSellerLeaderboard.isReady()).thenReturn(false);
+        when(salesRollupService.getTopSellersForCurrentPeriod(eq(AnalyticsPeriod.YEAR), any(), eq(1)))
+                .thenReturn(Collections.singletonMap(1L, new BigDecimal("700.00")));
+        when(sellerCache.getNames(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, "Иван Петров"));
+
+        Optional<AnalyticsDto.TopSeller> result = transactionService.getTopSellerByPeriod("YEAR");
+
+        // Лидер берется запросом с LIMIT 1, а не выбором максимума из итогов всех продавцов
+        assertTrue(result.isPresent());
+        assertEquals(1L, result.get().getSellerId());
+        assertEquals("Иван Петров", result.get().getSellerName());
+        assertEquals(new BigDecimal("700.00"), result.get().getTotalAmount());
+        verify(salesRollupService, never()).getTotalsBySeller(any(), any());
+    }
+
+    private TransactionDto toDto(Transaction transaction) {
+        return new TransactionDto(transaction.getId(), transaction.getSeller().getId(), transaction.getSeller().getName(),
+                transaction.getAmount(), transaction.getPaymentType(), transaction.getTransactionDate());
+    }
+}
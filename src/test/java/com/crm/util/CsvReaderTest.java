@@ -0,0 +1,55 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void readRecord_ShouldSplitFieldsAndTrackLines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("1,100.50,CARD\r\n\n2,,CASH"));
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("1", "100.50", "CARD"), fields);
+        assertEquals(1, reader.getRecordLine());
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Collections.singletonList(""), fields);
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("2", "", "CASH"), fields);
+        assertEquals(3, reader.getRecordLine());
+
+        assertFalse(reader.readRecord(fields));
+    }
+
+    @Test
+    void readRecord_WithQuotedFields_ShouldReadWhatCsvUtilsWrites() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+                "\"ООО \"\"Ромашка\"\", филиал\",10\n\"строка\nвторая\",20\nпоследняя,30\n"));
+        List<String> fields = new ArrayList<>();
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("ООО \"Ромашка\", филиал", "10"), fields);
+
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("строка\nвторая", "20"), fields);
+        assertEquals(2, reader.getRecordLine());
+
+        // Перевод строки внутри кавычек учитывается в номере следующей строки
+        assertTrue(reader.readRecord(fields));
+        assertEquals(Arrays.asList("последняя", "30"), fields);
+        assertEquals(4, reader.getRecordLine());
+
+        assertFalse(reader.readRecord(fields));
+    }
+}
@@ -0,0 +1,36 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvUtilsTest {
+
+    @Test
+    void writeField_PlainValue_ShouldWriteAsIs() throws IOException {
+
+        assertEquals("Иван Петров", write("Иван Петров"));
+    }
+
+    @Test
+    void writeField_WithSeparatorOrQuotes_ShouldQuoteAndEscape() throws IOException {
+
+        assertEquals("\"ООО \"\"Ромашка\"\", филиал\"", write("ООО \"Ромашка\", филиал"));
+        assertEquals("\"строка\nвторая\"", write("строка\nвторая"));
+    }
+
+    @Test
+    void writeField_Null_ShouldWriteNothing() throws IOException {
+
+        assertEquals("", write(null));
+    }
+
+    private static String write(String value) throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvUtils.writeField(writer, value);
+        return writer.toString();
+    }
+}
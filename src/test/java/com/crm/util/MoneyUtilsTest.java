@@ -0,0 +1,64 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyUtilsTest {
+
+    @Test
+    void toCents_ShouldRoundToColumnScale() {
+
+        assertEquals(100050L, MoneyUtils.toCents(new BigDecimal("1000.50")));
+        assertEquals(100L, MoneyUtils.toCents(new BigDecimal("1")));
+        assertEquals(1001L, MoneyUtils.toCents(new BigDecimal("10.005")));
+        assertEquals(-250L, MoneyUtils.toCents(new BigDecimal("-2.5")));
+    }
+
+    @Test
+    void toCents_WhenAmountDoesNotFitInLong_ShouldThrowArithmeticException() {
+
+        assertThrows(ArithmeticException.class, () -> MoneyUtils.toCents(new BigDecimal("1e30")));
+    }
+
+    @Test
+    void toAmount_ShouldKeepScaleOfTwo() {
+
+        assertEquals(new BigDecimal("1000.50"), MoneyUtils.toAmount(100050L));
+        assertEquals(new BigDecimal("0.00"), MoneyUtils.toAmount(0L));
+    }
+
+    @Test
+    void add_WhenSumOverflows_ShouldThrowArithmeticException() {
+
+        assertEquals(Long.MAX_VALUE, MoneyUtils.add(Long.MAX_VALUE - 1, 1));
+        assertThrows(ArithmeticException.class, () -> MoneyUtils.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> MoneyUtils.add(Long.MIN_VALUE, -1));
+    }
+
+    @Test
+    void average_ShouldMatchBigDecimalDivision() {
+
+        Random random = new Random(3L);
+        for (int i = 0; i < 10_000; i++) {
+            long total = random.nextLong() / 1000;
+            long count = 1 + random.nextInt(1000);
+
+            BigDecimal expected = MoneyUtils.toAmount(total)
+                    .divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+            assertEquals(expected, MoneyUtils.average(total, count), total + " / " + count);
+        }
+        assertEquals(new BigDecimal("0.01"), MoneyUtils.average(1, 2));
+        assertEquals(new BigDecimal("-0.01"), MoneyUtils.average(-1, 2));
+    }
+
+    @Test
+    void average_WithNonPositiveCount_ShouldThrowArithmeticException() {
+
+        assertThrows(ArithmeticException.class, () -> MoneyUtils.average(100, 0));
+    }
+}
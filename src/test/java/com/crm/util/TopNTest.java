@@ -0,0 +1,48 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopNTest {
+
+    @Test
+    void toList_ShouldMatchSortedPrefix() {
+
+        Random random = new Random(3L);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(random.nextInt(1000));
+        }
+
+        TopN<Integer> top = new TopN<>(10, Comparator.reverseOrder());
+        values.forEach(top::offer);
+
+        values.sort(Comparator.reverseOrder());
+        assertEquals(values.subList(0, 10), top.toList());
+        assertEquals(10, top.size());
+    }
+
+    @Test
+    void toList_WhenFewerElementsThanLimit_ShouldReturnAllSorted() {
+
+        TopN<Integer> top = new TopN<>(5, Comparator.naturalOrder());
+        Arrays.asList(3, 1, 2).forEach(top::offer);
+
+        assertEquals(Arrays.asList(1, 2, 3), top.toList());
+        assertEquals(Collections.emptyList(), new TopN<Integer>(5, Comparator.naturalOrder()).toList());
+    }
+
+    @Test
+    void constructor_WithNonPositiveLimit_ShouldThrowIllegalArgumentException() {
+
+        assertThrows(IllegalArgumentException.class, () -> new TopN<Integer>(0, Comparator.naturalOrder()));
+    }
+}